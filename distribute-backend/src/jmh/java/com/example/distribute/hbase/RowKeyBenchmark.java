@@ -0,0 +1,49 @@
+package com.example.distribute.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VehicleService.getLocationHistory 中从行键取时间戳：直接解析字节 vs 旧实现的转字符串再 split
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowKeyBenchmark {
+
+    private byte[][] rows;
+    private int i;
+
+    @Setup
+    public void setUp() {
+        rows = new byte[1024][];
+        for (int k = 0; k < rows.length; k++) {
+            rows[k] = TrackingRowKey.of("V" + (1000 + k % 200), 1718000000L + k * 7L);
+        }
+    }
+
+    private byte[] next() {
+        return rows[i++ & (rows.length - 1)];
+    }
+
+    @Benchmark
+    public long timestamp() {
+        return TrackingRowKey.timestamp(next());
+    }
+
+    @Benchmark
+    public String vehicleId() {
+        return TrackingRowKey.vehicleId(next());
+    }
+
+    @Benchmark
+    public long timestampSplit() {
+        String rk = Bytes.toString(next());
+        return Long.parseLong(rk.split("_")[1]);
+    }
+}
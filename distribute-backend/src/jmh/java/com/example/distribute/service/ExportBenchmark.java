@@ -0,0 +1,104 @@
+package com.example.distribute.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导出 10 万行订单：流式 CSV / 列式写出器 vs 旧实现在内存中拼出整个 CSV 再转 byte[]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    private static final String[] COLUMNS = {"order_id", "vehicle_id", "event_time", "status", "temperature"};
+    private static final byte[] TYPES = {ExportWriter.STRING, ExportWriter.STRING, ExportWriter.TIME,
+            ExportWriter.STRING, ExportWriter.DOUBLE};
+    private static final String[] STATUSES = {"in_transit", "delivered", "delayed", "pending"};
+
+    @Param({"100000"})
+    public int rows;
+
+    private List<Object[]> data;
+    private List<Map<String, Object>> maps;
+
+    @Setup
+    public void setUp() {
+        data = new ArrayList<>(rows);
+        maps = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Object[] row = {"O" + (10_000_000 + i), "V" + (1000 + i % 500), 1718000000L + i,
+                    STATUSES[i & 3], 2.0 + (i % 100) / 10.0};
+            data.add(row);
+            Map<String, Object> m = new LinkedHashMap<>();
+            for (int c = 0; c < COLUMNS.length; c++) {
+                m.put(COLUMNS[c], row[c]);
+            }
+            maps.add(m);
+        }
+    }
+
+    @Benchmark
+    public long csvStreaming() throws IOException {
+        return write("csv");
+    }
+
+    @Benchmark
+    public long columnarStreaming() throws IOException {
+        return write("bin");
+    }
+
+    private long write(String format) throws IOException {
+        CountingStream out = new CountingStream();
+        ExportWriter writer = ExportWriter.of(format, out);
+        writer.header(COLUMNS, TYPES);
+        Object[] row = new Object[COLUMNS.length];
+        for (Object[] r : data) {
+            System.arraycopy(r, 0, row, 0, row.length);
+            writer.row(row);
+        }
+        writer.finish();
+        return out.count;
+    }
+
+    @Benchmark
+    public void csvStringBuilder(Blackhole bh) {
+        StringBuilder sb = new StringBuilder();
+        maps.get(0).keySet().forEach(k -> sb.append(k).append(","));
+        sb.append("\n");
+        for (Map<String, Object> row : maps) {
+            row.values().forEach(v -> sb.append(v).append(","));
+            sb.append("\n");
+        }
+        bh.consume(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 只统计字节数，代替 HTTP 响应流
+     */
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.distribute.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapService 中单个子扫描的点聚合：热力网格计数与按车辆分组轨迹，以及子扫描结果的合并。
+ * 输入为预先生成的点，不含 HBase 读取与行解码。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapAggregationBenchmark {
+
+    @Param({"100000"})
+    public int points;
+
+    @Param({"500"})
+    public int vehicles;
+
+    private String[] vehicleIds;
+    private int[] vid;
+    private long[] ts;
+    private double[] lat;
+    private double[] lon;
+    private int scale;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        vehicleIds = new String[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            vehicleIds[i] = "V" + (1000 + i);
+        }
+        vid = new int[points];
+        ts = new long[points];
+        lat = new double[points];
+        lon = new double[points];
+        for (int i = 0; i < points; i++) {
+            vid[i] = random.nextInt(vehicles);
+            ts[i] = 1718000000L + i / vehicles;
+            lat[i] = 30.0 + random.nextDouble() * 2;
+            lon[i] = 120.0 + random.nextDouble() * 2;
+        }
+        scale = HeatmapTileStore.SCALES[HeatmapTileStore.levelForZoom(null)];
+    }
+
+    @Benchmark
+    public Object heatmapGrid() {
+        MapService.HeatCounter a = new MapService.HeatCounter(scale);
+        MapService.HeatCounter b = new MapService.HeatCounter(scale);
+        int half = points / 2;
+        for (int i = 0; i < half; i++) {
+            a.visit(vehicleIds[vid[i]], ts[i], lat[i], lon[i]);
+        }
+        for (int i = half; i < points; i++) {
+            b.visit(vehicleIds[vid[i]], ts[i], lat[i], lon[i]);
+        }
+        return a.mergeFrom(b);
+    }
+
+    @Benchmark
+    public Object pathGrouping() {
+        MapService.PathCollector a = new MapService.PathCollector();
+        MapService.PathCollector b = new MapService.PathCollector();
+        int half = points / 2;
+        for (int i = 0; i < half; i++) {
+            a.visit(vehicleIds[vid[i]], ts[i], lat[i], lon[i]);
+        }
+        for (int i = half; i < points; i++) {
+            b.visit(vehicleIds[vid[i]], ts[i], lat[i], lon[i]);
+        }
+        return a.mergeFrom(b);
+    }
+
+    /**
+     * 旧实现的做法：以 "lat_lng" 字符串作为网格 key 计数
+     */
+    @Benchmark
+    public void heatmapGridStringKeys(Blackhole bh) {
+        Map<String, Integer> grid = new HashMap<>();
+        for (int i = 0; i < points; i++) {
+            String key = String.format("%.2f_%.2f", Math.floor(lat[i] * 100) / 100, Math.floor(lon[i] * 100) / 100);
+            grid.merge(key, 1, Integer::sum);
+        }
+        bh.consume(List.copyOf(grid.keySet()));
+    }
+}
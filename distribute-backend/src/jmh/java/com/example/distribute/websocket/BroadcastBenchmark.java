@@ -0,0 +1,63 @@
+package com.example.distribute.websocket;
+
+import com.example.distribute.service.MetricsRegistry;
+import com.example.distribute.service.VehicleStateStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka 消费线程上一次广播的开销：序列化一次后投递到 N 个会话的发送队列，实际发送由扇出线程池完成
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int sessions;
+
+    private final String message = "{\"vehicle_id\": \"V0042\", \"latitude\": 30.421337, \"longitude\": 120.187654, " +
+            "\"speed\": 63.25, \"status\": \"in_transit\", \"load\": 57, \"timestamp\": 1718000000.123456}";
+    private final byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+
+    private WebSocketFanout fanout;
+    private LocationConflator conflator;
+    private VehicleWebSocketHandler handler;
+    private int seq;
+
+    @Setup
+    public void setUp() throws Exception {
+        fanout = new WebSocketFanout(256, SlowConsumerPolicy.DROP_OLDEST, 4, new MetricsRegistry());
+        SubscriptionIndex subscriptions = new SubscriptionIndex(1.0);
+        conflator = new LocationConflator(new VehicleStateStore(), fanout, subscriptions, 200);
+        handler = new VehicleWebSocketHandler(fanout, subscriptions, conflator);
+        for (int i = 0; i < sessions; i++) {
+            handler.afterConnectionEstablished(new NoopWebSocketSession("s" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        conflator.shutdown();
+        fanout.shutdown();
+    }
+
+    @Benchmark
+    public void broadcast() {
+        handler.broadcast(message);
+    }
+
+    /**
+     * 按订阅路由的位置推送（默认订阅全部），车辆 ID 轮换以模拟 CONFLATE 下不同的合并 key
+     */
+    @Benchmark
+    public void broadcastLocation() {
+        int v = seq++ & 1023;
+        handler.broadcastLocation("V" + v, 30.0 + v * 0.001, 120.0 + v * 0.001, messageBytes);
+    }
+}
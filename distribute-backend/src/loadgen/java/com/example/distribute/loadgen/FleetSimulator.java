@@ -0,0 +1,151 @@
+package com.example.distribute.loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * 按种子生成车队的位置、物流和告警消息，字段与 setup/Kafka-Producer.py 相同。
+ * 每辆车有独立的随机序列，路线只取决于种子和车辆序号，与发送速率、线程调度无关；
+ * 位置消息按车辆轮转产生，每条代表车辆前进 {@link #SECONDS_PER_REPORT} 秒。
+ * 每条消息末尾追加 lg_step / lg_ts_us 两个字段，供接收端计算延迟，后端按普通字段忽略。
+ * 非线程安全，由发送线程独占使用。
+ */
+final class FleetSimulator {
+
+    static final int SECONDS_PER_REPORT = 10;
+
+    private static final String[] VEHICLE_STATUS = {
+            "in_transit", "loading", "unloading", "delayed", "parked", "maintenance", "idle"};
+    private static final String[] ORDER_STATUS = {"in_transit", "delivered", "delayed", "picked_up"};
+    private static final String[] ALERT_TYPES = {
+            "temperature_high", "temperature_low", "humidity_high", "shock_detected", "power_outage", "tampering"};
+    private static final String[] SEVERITY = {"low", "medium", "high"};
+    private static final String[] PROVINCES = {
+            "北京", "上海", "广东", "浙江", "江苏", "山东", "河南", "四川", "湖北", "湖南", "福建", "安徽"};
+
+    // 车辆活动范围
+    private static final double MIN_LAT = 22.0, MAX_LAT = 40.0, MIN_LON = 105.0, MAX_LON = 122.0;
+
+    private static final class Vehicle {
+        final String deviceId;
+        final String vehicleId;
+        final SplittableRandom random;
+        double lat;
+        double lon;
+        double heading;
+        String status = "in_transit";
+
+        Vehicle(int index, long seed) {
+            deviceId = String.format("D%04d", index);
+            vehicleId = "V" + (100 + index);
+            random = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (index + 1)));
+            lat = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+            lon = MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON);
+            heading = random.nextDouble() * 360;
+        }
+    }
+
+    private final Vehicle[] fleet;
+    private final SplittableRandom orderRandom;
+    private final SplittableRandom alertRandom;
+    private final StringBuilder sb = new StringBuilder(320);
+    private int cursor;
+    private String key;
+
+    FleetSimulator(int vehicles, long seed) {
+        fleet = new Vehicle[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            fleet[i] = new Vehicle(i, seed);
+        }
+        orderRandom = new SplittableRandom(seed + 1);
+        alertRandom = new SplittableRandom(seed + 2);
+    }
+
+    /**
+     * 上一条消息的分区 key（设备 ID）
+     */
+    String key() {
+        return key;
+    }
+
+    String nextLocation(int step, long stampMicros) {
+        Vehicle v = fleet[cursor];
+        cursor = cursor + 1 == fleet.length ? 0 : cursor + 1;
+        SplittableRandom r = v.random;
+        // 状态大多保持不变，偶尔切换
+        if (r.nextInt(20) == 0) {
+            v.status = r.nextInt(3) == 0 ? VEHICLE_STATUS[r.nextInt(VEHICLE_STATUS.length)] : "in_transit";
+        }
+        double speed = switch (v.status) {
+            case "loading", "unloading", "maintenance", "idle", "parked" -> 0.0;
+            case "delayed" -> r.nextDouble() * 10.0;
+            default -> 40.0 + r.nextDouble() * 40.0;
+        };
+        if (speed > 0) {
+            v.heading = (v.heading + (r.nextDouble() - 0.5) * 30 + 360) % 360;
+            double km = speed * SECONDS_PER_REPORT / 3600;
+            double rad = Math.toRadians(v.heading);
+            v.lat += km * Math.cos(rad) / 111.0;
+            v.lon += km * Math.sin(rad) / (111.0 * Math.cos(Math.toRadians(v.lat)));
+            // 越界时掉头
+            if (v.lat < MIN_LAT || v.lat > MAX_LAT || v.lon < MIN_LON || v.lon > MAX_LON) {
+                v.lat = Math.max(MIN_LAT, Math.min(MAX_LAT, v.lat));
+                v.lon = Math.max(MIN_LON, Math.min(MAX_LON, v.lon));
+                v.heading = (v.heading + 180) % 360;
+            }
+        }
+        key = v.deviceId;
+        sb.setLength(0);
+        sb.append("{\"device_id\": \"").append(v.deviceId)
+                .append("\", \"vehicle_id\": \"").append(v.vehicleId)
+                .append("\", \"latitude\": ").append(round(v.lat, 1e6))
+                .append(", \"longitude\": ").append(round(v.lon, 1e6))
+                .append(", \"speed\": ").append(round(speed, 100))
+                .append(", \"direction\": ").append((int) v.heading)
+                .append(", \"status\": \"").append(v.status)
+                .append("\", \"load\": ").append(1 + r.nextInt(100))
+                .append(", \"timestamp\": ").append(nowSeconds());
+        return stamp(step, stampMicros);
+    }
+
+    String nextOrder(int step, long stampMicros) {
+        SplittableRandom r = orderRandom;
+        Vehicle v = fleet[r.nextInt(fleet.length)];
+        key = v.deviceId;
+        sb.setLength(0);
+        sb.append("{\"device_id\": \"").append(v.deviceId)
+                .append("\", \"package_id\": \"P").append(100000 + r.nextInt(900000))
+                .append("\", \"temperature\": ").append(round(-20.0 + r.nextDouble() * 50.0, 100))
+                .append(", \"humidity\": ").append(r.nextInt(101))
+                .append(", \"status\": \"").append(ORDER_STATUS[r.nextInt(ORDER_STATUS.length)])
+                .append("\", \"province\": \"").append(PROVINCES[r.nextInt(PROVINCES.length)])
+                .append("\", \"timestamp\": ").append(nowSeconds());
+        return stamp(step, stampMicros);
+    }
+
+    String nextAlert(int step, long stampMicros) {
+        SplittableRandom r = alertRandom;
+        Vehicle v = fleet[r.nextInt(fleet.length)];
+        key = v.deviceId;
+        sb.setLength(0);
+        sb.append("{\"device_id\": \"").append(v.deviceId)
+                .append("\", \"alert_type\": \"").append(ALERT_TYPES[r.nextInt(ALERT_TYPES.length)])
+                .append("\", \"severity\": \"").append(SEVERITY[r.nextInt(SEVERITY.length)])
+                .append("\", \"timestamp\": ").append(nowSeconds())
+                .append(", \"details\": \"Alert triggered by device ").append(v.deviceId).append('"');
+        return stamp(step, stampMicros);
+    }
+
+    private String stamp(int step, long stampMicros) {
+        sb.append(", \"lg_step\": ").append(step)
+                .append(", \"lg_ts_us\": ").append(stampMicros).append('}');
+        return sb.toString();
+    }
+
+    private static double round(double v, double scale) {
+        return Math.round(v * scale) / scale;
+    }
+
+    private static double nowSeconds() {
+        return System.currentTimeMillis() / 1000.0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.distribute.loadgen;
+
+import com.example.distribute.DistributeBackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+/**
+ * 内嵌 Kafka（KRaft 单节点）加同进程内启动的后端，单机上不依赖外部 Kafka 即可压测。
+ * 后端使用随机端口，不持久化 Kafka 告警；Redis / HBase / MySQL 不可用时相应的写入失败只打日志，不影响推送链路。
+ */
+final class InProcessBackend implements AutoCloseable {
+
+    static final String[] TOPICS = {"vehicle-location", "logistics-data", "alerts"};
+
+    private final EmbeddedKafkaKraftBroker broker;
+    private final ConfigurableApplicationContext context;
+
+    InProcessBackend(int partitions, boolean batch) throws InterruptedException {
+        broker = new EmbeddedKafkaKraftBroker(1, partitions, TOPICS);
+        broker.afterPropertiesSet();
+        // devtools 在类路径上时会在新线程里重新执行 main，这里只需要普通启动
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(DistributeBackendApplication.class)
+                .run(
+                        // 以命令行参数传入，优先于 application.properties
+                        "--server.port=0",
+                        "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--alerts.persist-from-kafka=false",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--kafka.batch.enabled=" + batch);
+        awaitAssignment(30_000);
+    }
+
+    String bootstrapServers() {
+        return broker.getBrokersAsString();
+    }
+
+    String webSocketUrl() {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        return "ws://localhost:" + port + "/ws/vehicle";
+    }
+
+    /**
+     * 监听器默认从最新位点开始消费，等分区分配完成后再发送，避免开头的消息被跳过
+     */
+    private void awaitAssignment(long timeoutMs) throws InterruptedException {
+        KafkaListenerEndpointRegistry registry = context.getBean(KafkaListenerEndpointRegistry.class);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            boolean assigned = true;
+            for (MessageListenerContainer container : registry.getListenerContainers()) {
+                // 逐条和批量两组监听只启动其中一组
+                if (!container.isRunning()) {
+                    continue;
+                }
+                if (container.getAssignedPartitions() == null || container.getAssignedPartitions().isEmpty()) {
+                    assigned = false;
+                    break;
+                }
+            }
+            if (assigned) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Kafka listeners not assigned within " + timeoutMs + " ms");
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        broker.destroy();
+    }
+}
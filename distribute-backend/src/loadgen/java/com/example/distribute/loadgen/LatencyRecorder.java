@@ -0,0 +1,75 @@
+package com.example.distribute.loadgen;
+
+import java.util.Arrays;
+
+/**
+ * 按档位收集端到端延迟（微秒）。保存全部样本而不是分桶，尾部分位数不受桶宽影响；
+ * 接收线程并发写入，每档一把锁。
+ */
+final class LatencyRecorder {
+
+    private static final class Samples {
+        long[] values = new long[4096];
+        int size;
+        long late;
+    }
+
+    private final Samples[] steps;
+    private volatile int closedBefore;
+
+    LatencyRecorder(int stepCount) {
+        steps = new Samples[stepCount];
+        for (int i = 0; i < stepCount; i++) {
+            steps[i] = new Samples();
+        }
+    }
+
+    void record(int step, long micros) {
+        if (step < 0 || step >= steps.length) {
+            return;
+        }
+        Samples s = steps[step];
+        synchronized (s) {
+            if (step < closedBefore) {
+                // 该档已出报告，只计数
+                s.late++;
+                return;
+            }
+            if (s.size == s.values.length) {
+                s.values = Arrays.copyOf(s.values, s.size * 2);
+            }
+            s.values[s.size++] = micros;
+        }
+    }
+
+    /**
+     * 结束一档并返回其样本的有序副本；此后到达的该档消息只计入 late
+     */
+    long[] close(int step) {
+        Samples s = steps[step];
+        synchronized (s) {
+            closedBefore = step + 1;
+            long[] sorted = Arrays.copyOf(s.values, s.size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    long late(int step) {
+        Samples s = steps[step];
+        synchronized (s) {
+            return s.late;
+        }
+    }
+
+    /**
+     * 最近秩法取分位数，样本为空时返回 NaN
+     */
+    static double percentileMillis(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1000.0;
+    }
+}
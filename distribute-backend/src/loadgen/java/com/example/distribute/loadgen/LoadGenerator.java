@@ -0,0 +1,203 @@
+package com.example.distribute.loadgen;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 确定性负载生成与端到端延迟测量：按固定节奏向 vehicle-location / logistics-data / alerts 发送模拟车队消息，
+ * 同时以 WebSocket 客户端连接 /ws/vehicle，测量从发送到收到推送的延迟。
+ * 速率按 --rates 逐档爬升，每档结束后输出分位数，最后给出首个饱和档位。
+ */
+public final class LoadGenerator {
+
+    private record StepResult(int rate, double seconds, long locations, long orders, long alerts, long errors,
+                              long[] latencies, long expected) {
+
+        double delivery() {
+            return expected == 0 ? 1.0 : (double) latencies.length / expected;
+        }
+
+        double sentRate() {
+            return locations / seconds;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        InProcessBackend backend = null;
+        String bootstrap = options.bootstrap;
+        String ws = options.ws;
+        if (options.inProcess) {
+            backend = new InProcessBackend(options.partitions, options.batch);
+            bootstrap = backend.bootstrapServers();
+            ws = backend.webSocketUrl();
+        }
+        System.out.printf("loadgen: vehicles=%d rates=%s step=%ds seed=%d clients=%d kafka=%s ws=%s%n",
+                options.vehicles, Arrays.toString(options.rates), options.stepSeconds, options.seed,
+                options.clients, bootstrap, ws);
+
+        LatencyRecorder recorder = new LatencyRecorder(options.rates.length);
+        HttpClient http = HttpClient.newHttpClient();
+        List<WsLatencyClient> clients = new ArrayList<>(options.clients);
+        List<StepResult> results = new ArrayList<>(options.rates.length);
+        try (KafkaProducer<String, String> producer = producer(bootstrap, options.acks)) {
+            for (int i = 0; i < options.clients; i++) {
+                clients.add(WsLatencyClient.connect(http, ws, recorder));
+            }
+            FleetSimulator fleet = new FleetSimulator(options.vehicles, options.seed);
+            printHeader();
+            for (int step = 0; step < options.rates.length; step++) {
+                StepResult result = runStep(step, options, fleet, producer, recorder);
+                results.add(result);
+                printStep(step, result);
+            }
+        } finally {
+            for (WsLatencyClient client : clients) {
+                client.close();
+            }
+            if (backend != null) {
+                backend.close();
+            }
+        }
+        printSummary(results, options);
+        System.exit(0);
+    }
+
+    private static KafkaProducer<String, String> producer(String bootstrap, String acks) {
+        return new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap,
+                ProducerConfig.CLIENT_ID_CONFIG, "loadgen",
+                ProducerConfig.ACKS_CONFIG, acks,
+                ProducerConfig.LINGER_MS_CONFIG, 5,
+                ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024,
+                ProducerConfig.MAX_BLOCK_MS_CONFIG, 10_000,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class));
+    }
+
+    /**
+     * 单线程按目标速率均匀发送：每轮计算到当前时刻应发出的条数并补齐，三个主题交替发送；
+     * 生产者阻塞导致落后时，实际速率会低于目标，作为饱和的依据之一
+     */
+    private static StepResult runStep(int step, LoadOptions options, FleetSimulator fleet,
+                                      KafkaProducer<String, String> producer, LatencyRecorder recorder)
+            throws InterruptedException {
+        int rate = options.rates[step];
+        double orderRate = rate * options.orderRatio;
+        double alertRate = rate * options.alertRatio;
+        LongAdder errors = new LongAdder();
+        long locations = 0, orders = 0, alerts = 0;
+        long start = System.nanoTime();
+        long end = start + options.stepSeconds * 1_000_000_000L;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            double elapsed = (now - start) / 1e9;
+            long dueLocations = (long) (rate * elapsed);
+            long dueOrders = (long) (orderRate * elapsed);
+            long dueAlerts = (long) (alertRate * elapsed);
+            if (locations >= dueLocations && orders >= dueOrders && alerts >= dueAlerts) {
+                LockSupport.parkNanos(100_000);
+                continue;
+            }
+            while (locations < dueLocations || orders < dueOrders || alerts < dueAlerts) {
+                if (locations < dueLocations) {
+                    String value = fleet.nextLocation(step, WsLatencyClient.nowMicros());
+                    send(producer, "vehicle-location", fleet.key(), value, errors);
+                    locations++;
+                }
+                if (orders < dueOrders) {
+                    String value = fleet.nextOrder(step, WsLatencyClient.nowMicros());
+                    send(producer, "logistics-data", fleet.key(), value, errors);
+                    orders++;
+                }
+                if (alerts < dueAlerts) {
+                    String value = fleet.nextAlert(step, WsLatencyClient.nowMicros());
+                    send(producer, "alerts", fleet.key(), value, errors);
+                    alerts++;
+                }
+            }
+        }
+        producer.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        // 等待在途消息推送完成后再结算本档
+        Thread.sleep(options.drainMs);
+        long[] latencies = recorder.close(step);
+        long expected = (locations + alerts) * options.clients;
+        return new StepResult(rate, seconds, locations, orders, alerts, errors.sum(), latencies, expected);
+    }
+
+    private static void send(KafkaProducer<String, String> producer, String topic, String key, String value,
+                             LongAdder errors) {
+        producer.send(new ProducerRecord<>(topic, key, value), (metadata, e) -> {
+            if (e != null) {
+                errors.increment();
+            }
+        });
+    }
+
+    private static void printHeader() {
+        System.out.printf("%4s %8s %9s %9s %9s %6s %9s %9s %9s %9s %9s %9s%n",
+                "step", "target/s", "loc/s", "order/s", "alert/s", "errors",
+                "delivered", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+    }
+
+    private static void printStep(int step, StepResult r) {
+        long[] l = r.latencies;
+        System.out.printf("%4d %8d %9.0f %9.0f %9.0f %6d %8.2f%% %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                step, r.rate, r.sentRate(), r.orders / r.seconds, r.alerts / r.seconds, r.errors,
+                r.delivery() * 100,
+                LatencyRecorder.percentileMillis(l, 0.50), LatencyRecorder.percentileMillis(l, 0.90),
+                LatencyRecorder.percentileMillis(l, 0.99), LatencyRecorder.percentileMillis(l, 0.999),
+                LatencyRecorder.percentileMillis(l, 1.0));
+    }
+
+    private static void printSummary(List<StepResult> results, LoadOptions options) {
+        int lastGood = -1;
+        for (int i = 0; i < results.size(); i++) {
+            StepResult r = results.get(i);
+            String reason = saturation(r, options);
+            if (reason != null) {
+                System.out.printf("饱和：第 %d 档（%d 条/秒）%s；", i, r.rate, reason);
+                System.out.println(lastGood < 0 ? "没有未饱和的档位"
+                        : "最高未饱和速率 " + results.get(lastGood).rate + " 条/秒");
+                return;
+            }
+            lastGood = i;
+        }
+        System.out.printf("所有档位均未饱和，最高速率 %d 条/秒%n", results.get(results.size() - 1).rate);
+    }
+
+    private static String saturation(StepResult r, LoadOptions options) {
+        double p99 = LatencyRecorder.percentileMillis(r.latencies, 0.99);
+        if (r.errors > 0) {
+            return "发送失败 " + r.errors + " 条";
+        }
+        if (r.sentRate() < r.rate * 0.95) {
+            return String.format("实际发送 %.0f 条/秒，低于目标", r.sentRate());
+        }
+        if (r.delivery() < options.minDelivery) {
+            return String.format("送达率 %.2f%%", r.delivery() * 100);
+        }
+        if (p99 > options.sloMs) {
+            return String.format("p99 %.2f ms 超过 %.0f ms", p99, options.sloMs);
+        }
+        return null;
+    }
+}
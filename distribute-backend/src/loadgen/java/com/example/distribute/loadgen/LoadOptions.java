@@ -0,0 +1,92 @@
+package com.example.distribute.loadgen;
+
+import java.util.Arrays;
+
+/**
+ * 命令行参数，均为 --name value 形式（--in-process、--batch 除外）
+ */
+final class LoadOptions {
+
+    int vehicles = 1000;
+    // 每一档的 vehicle-location 速率（条/秒），依次爬升
+    int[] rates = {1000};
+    int stepSeconds = 30;
+    long drainMs = 2000;
+    // logistics-data 与 alerts 的速率相对位置速率的比例，默认与 setup/Kafka-Producer.py 的 0.8 : 0.6 : 0.1 一致
+    double orderRatio = 0.8 / 0.6;
+    double alertRatio = 0.1 / 0.6;
+    long seed = 42;
+    int clients = 1;
+    String bootstrap = "localhost:29092";
+    String ws = "ws://localhost:5793/ws/vehicle";
+    boolean inProcess;
+    boolean batch;
+    int partitions = 8;
+    String acks = "1";
+    // 判定饱和：p99 超过该值（毫秒）、送达率低于 minDelivery 或实际发送速率不足目标的 95%
+    double sloMs = 1000;
+    double minDelivery = 0.99;
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions o = new LoadOptions();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if ("--in-process".equals(name)) {
+                o.inProcess = true;
+                continue;
+            }
+            if ("--batch".equals(name)) {
+                o.batch = true;
+                continue;
+            }
+            if (!name.startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("bad argument: " + name + "\n" + usage());
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--vehicles" -> o.vehicles = Integer.parseInt(value);
+                case "--rates" -> o.rates = Arrays.stream(value.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+                case "--step-seconds" -> o.stepSeconds = Integer.parseInt(value);
+                case "--drain-ms" -> o.drainMs = Long.parseLong(value);
+                case "--order-ratio" -> o.orderRatio = Double.parseDouble(value);
+                case "--alert-ratio" -> o.alertRatio = Double.parseDouble(value);
+                case "--seed" -> o.seed = Long.parseLong(value);
+                case "--clients" -> o.clients = Integer.parseInt(value);
+                case "--bootstrap" -> o.bootstrap = value;
+                case "--ws" -> o.ws = value;
+                case "--partitions" -> o.partitions = Integer.parseInt(value);
+                case "--acks" -> o.acks = value;
+                case "--slo-ms" -> o.sloMs = Double.parseDouble(value);
+                case "--min-delivery" -> o.minDelivery = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("unknown option: " + name + "\n" + usage());
+            }
+        }
+        if (o.vehicles <= 0 || o.clients <= 0 || o.stepSeconds <= 0 || o.rates.length == 0
+                || Arrays.stream(o.rates).anyMatch(r -> r <= 0)) {
+            throw new IllegalArgumentException("vehicles, clients, step-seconds and rates must be positive\n" + usage());
+        }
+        return o;
+    }
+
+    static String usage() {
+        return """
+                usage: LoadGenerator [options]
+                  --vehicles N        模拟车辆数（默认 1000）
+                  --rates R1,R2,...   每档位置消息速率（条/秒），逐档爬升（默认 1000）
+                  --step-seconds S    每档持续秒数（默认 30）
+                  --drain-ms MS       每档结束后等待在途消息的时间（默认 2000）
+                  --order-ratio X     logistics-data 速率 = 位置速率 * X（默认 1.33）
+                  --alert-ratio X     alerts 速率 = 位置速率 * X（默认 0.17）
+                  --seed N            路线与消息内容的随机种子（默认 42）
+                  --clients N         WebSocket 接收端数量（默认 1）
+                  --bootstrap HOSTS   Kafka 地址（默认 localhost:29092）
+                  --ws URL            后端 WebSocket 地址（默认 ws://localhost:5793/ws/vehicle）
+                  --in-process        启动内嵌 Kafka 并在本进程内运行后端，忽略 --bootstrap / --ws
+                  --batch             内嵌后端使用批量消费模式（kafka.batch.enabled=true）
+                  --partitions N      内嵌 Kafka 的主题分区数（默认 8）
+                  --acks A            生产者 acks（默认 1）
+                  --slo-ms MS         饱和判定的 p99 上限（默认 1000）
+                  --min-delivery X    饱和判定的最低送达率（默认 0.99）
+                """;
+    }
+}
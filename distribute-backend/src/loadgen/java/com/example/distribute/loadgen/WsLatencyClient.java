@@ -0,0 +1,102 @@
+package com.example.distribute.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * /ws/vehicle 的接收端，保持默认订阅（全部消息、逐条推送），
+ * 从收到的文本中取出 lg_step / lg_ts_us，以本进程的单调时钟计算延迟
+ */
+final class WsLatencyClient implements WebSocket.Listener {
+
+    private static final String STEP_FIELD = "\"lg_step\":";
+    private static final String STAMP_FIELD = "\"lg_ts_us\":";
+
+    private final LatencyRecorder recorder;
+    private final StringBuilder partial = new StringBuilder();
+    final LongAdder received = new LongAdder();
+    private WebSocket socket;
+
+    private WsLatencyClient(LatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    static WsLatencyClient connect(HttpClient http, String url, LatencyRecorder recorder) {
+        WsLatencyClient client = new WsLatencyClient(recorder);
+        client.socket = http.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(URI.create(url), client)
+                .orTimeout(15, TimeUnit.SECONDS)
+                .join();
+        return client;
+    }
+
+    /**
+     * 发送端打时间戳用的时钟，与接收端在同一进程内
+     */
+    static long nowMicros() {
+        return System.nanoTime() / 1000;
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        long now = nowMicros();
+        String text;
+        if (last && partial.isEmpty()) {
+            text = data.toString();
+        } else {
+            partial.append(data);
+            if (!last) {
+                webSocket.request(1);
+                return null;
+            }
+            text = partial.toString();
+            partial.setLength(0);
+        }
+        long stamp = field(text, STAMP_FIELD);
+        if (stamp >= 0) {
+            received.increment();
+            recorder.record((int) field(text, STEP_FIELD), now - stamp);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    /**
+     * 读取非负整数字段，字段不存在时返回 -1
+     */
+    private static long field(String text, String name) {
+        int i = text.lastIndexOf(name);
+        if (i < 0) {
+            return -1;
+        }
+        i += name.length();
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        long v = 0;
+        int start = i;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return i == start ? -1 : v;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        System.err.println("WebSocket error: " + error);
+    }
+
+    void close() {
+        socket.sendClose(WebSocket.NORMAL_CLOSURE, "done").orTimeout(5, TimeUnit.SECONDS).exceptionally(e -> null).join();
+    }
+}
@@ -12,6 +12,7 @@ public class CorsConfig implements WebMvcConfigurer {
         registry.addMapping("/**") // 对所有接口生效
                 .allowedOrigins("http://localhost:3000") // 允许跨域访问的前端地址
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS") // 允许的请求方法
+                .exposedHeaders("X-Next-Cursor") // 分页游标响应头
                 .allowCredentials(true) // 允许携带cookie
                 .maxAge(3600); // 预检请求缓存时间（秒）
     }
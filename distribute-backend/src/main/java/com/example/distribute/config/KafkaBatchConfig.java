@@ -0,0 +1,54 @@
+package com.example.distribute.config;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+/**
+ * 批量消费模式（kafka.batch.enabled=true）使用的监听容器工厂。
+ * 每个主题起 concurrency 个消费者，应与主题分区数一致；批内副作用落地后由监听方法手动确认位点。
+ * 下游不可用时整批按指数退避无限重试，不会越过未写入的数据提交位点，下游恢复前消费积压；
+ * 监听方法定位到坏记录时抛出带下标的 BatchListenerFailedException，坏记录有限次重试后发到 {topic}.DLT。
+ */
+@Configuration
+public class KafkaBatchConfig {
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> kafkaConsumerFactory,
+            KafkaTemplate<Object, Object> kafkaTemplate,
+            @Value("${kafka.batch.concurrency:8}") int concurrency,
+            @Value("${kafka.batch.retry-max-interval-ms:10000}") long retryMaxIntervalMs,
+            @Value("${kafka.batch.record-retries:3}") int recordRetries) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        ExponentialBackOff backOff = new ExponentialBackOff(200, 2.0);
+        backOff.setMaxInterval(retryMaxIntervalMs);
+        // 死信主题的分区交给 Kafka 选择，不要求与源主题分区数一致
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, e) -> new TopicPartition(record.topic() + ".DLT", -1));
+        DefaultErrorHandler handler = new DefaultErrorHandler(recoverer, backOff);
+        handler.setBackOffFunction((record, e) -> {
+            ExponentialBackOffWithMaxRetries limited = new ExponentialBackOffWithMaxRetries(recordRetries);
+            limited.setInitialInterval(200);
+            limited.setMaxInterval(retryMaxIntervalMs);
+            return limited;
+        });
+        factory.setCommonErrorHandler(handler);
+        return factory;
+    }
+}
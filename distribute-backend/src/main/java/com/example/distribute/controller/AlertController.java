@@ -2,8 +2,11 @@ package com.example.distribute.controller;
 
 import com.example.distribute.service.AlertService;
 import com.example.distribute.websocket.VehicleWebSocketHandler;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.Map;
@@ -14,16 +17,43 @@ public class AlertController {
     @Autowired
     private AlertService alertService;
 
+    /**
+     * 按时间倒序分页，下一页游标通过响应头 X-Next-Cursor 返回，没有更多数据时不带该头
+     */
     @GetMapping
     public List<Map<String, Object>> listAlerts(
             @RequestParam(required = false) Long from,
-            @RequestParam(required = false) Long to) {
-        return alertService.listAlerts(from, to);
+            @RequestParam(required = false) Long to,
+            @RequestParam(required = false) String vehicleId,
+            @RequestParam(required = false) String severity,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletResponse response) {
+        AlertService.AlertPage page;
+        try {
+            page = alertService.listAlerts(from, to, vehicleId, severity, status, limit, cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (page.nextCursor() != null) {
+            response.setHeader("X-Next-Cursor", page.nextCursor());
+        }
+        return page.items();
     }
 
     @PostMapping
     public String postAlert(@RequestBody Map<String, Object> alert) {
-        alertService.saveAlert(alert);
+        boolean accepted;
+        try {
+            accepted = alertService.saveAlert(alert);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (!accepted) {
+            // 写入队列已满，让客户端稍后重试
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "alert queue full");
+        }
         return "ok";
     }
 
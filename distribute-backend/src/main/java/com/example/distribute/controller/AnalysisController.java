@@ -2,7 +2,13 @@ package com.example.distribute.controller;
 
 import com.example.distribute.service.AnalysisService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -13,9 +19,13 @@ public class AnalysisController {
     @Autowired
     private AnalysisService analysisService;
 
+    /**
+     * source=raw 时直接查询原始月表，默认读预聚合
+     */
     @GetMapping("/summary")
-    public Map<String, Object> getSummary(@RequestParam Long from, @RequestParam Long to) {
-        return analysisService.getSummary(from, to);
+    public Map<String, Object> getSummary(@RequestParam Long from, @RequestParam Long to,
+                                          @RequestParam(defaultValue = "rollup") String source) {
+        return analysisService.getSummary(from, to, "raw".equals(source));
     }
 
     @GetMapping("/trends")
@@ -23,24 +33,52 @@ public class AnalysisController {
             @RequestParam String metric,
             @RequestParam String interval,
             @RequestParam Long from,
-            @RequestParam Long to) {
-        return analysisService.getTrends(metric, interval, from, to);
+            @RequestParam Long to,
+            @RequestParam(defaultValue = "rollup") String source) {
+        try {
+            return analysisService.getTrends(metric, interval, from, to, "raw".equals(source));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping("/regions")
     public List<Map<String, Object>> getRegionAnalysis(
             @RequestParam String metric,
             @RequestParam Long from,
-            @RequestParam Long to) {
-        return analysisService.getRegionData(metric, from, to);
+            @RequestParam Long to,
+            @RequestParam(defaultValue = "rollup") String source) {
+        try {
+            return analysisService.getRegionData(metric, from, to, "raw".equals(source));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
+    /**
+     * 流式下载，边查边写；type=orders 导出原始订单，format=csv|bin，gzip=true 时返回 .gz
+     */
     @GetMapping("/export")
-    public byte[] exportData(
+    public ResponseEntity<StreamingResponseBody> exportData(
             @RequestParam String format,
             @RequestParam String type,
             @RequestParam Long from,
-            @RequestParam Long to) {
-        return analysisService.export(format, type, from, to);
+            @RequestParam Long to,
+            @RequestParam(required = false) String metric,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        String fileName;
+        try {
+            fileName = AnalysisService.exportFileName(format, type, gzip);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : "csv".equalsIgnoreCase(format) ? MediaType.parseMediaType("text/csv; charset=UTF-8")
+                : MediaType.APPLICATION_OCTET_STREAM;
+        StreamingResponseBody body = out -> analysisService.export(format, type, metric, from, to, gzip, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(contentType)
+                .body(body);
     }
-}
\ No newline at end of file
+}
@@ -12,8 +12,16 @@ public class HealthController {
     @Autowired
     private HealthService healthService;
 
+    /**
+     * 返回后台探测的最新快照，不会阻塞在依赖上
+     */
     @GetMapping
     public Map<String, String> health() {
         return healthService.checkAll();
     }
+
+    @GetMapping("/details")
+    public Map<String, Object> details() {
+        return healthService.details();
+    }
 }
\ No newline at end of file
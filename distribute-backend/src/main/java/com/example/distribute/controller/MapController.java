@@ -2,24 +2,66 @@ package com.example.distribute.controller;
 
 import com.example.distribute.service.MapService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/map")
 public class MapController {
     @Autowired
     private MapService mapService;
+    @Value("${map.query.timeout-ms:30000}")
+    private long queryTimeoutMs;
 
+    /**
+     * stream=true 时以 NDJSON 分块返回；zoom 或 tolerance（度）用于轨迹抽稀，tolerance 优先
+     */
     @GetMapping("/paths")
-    public Object getPaths(@RequestParam Long from, @RequestParam Long to) throws IOException {
-        return mapService.getVehiclePaths(from, to);
+    public Object getPaths(@RequestParam Long from, @RequestParam Long to,
+                           @RequestParam(required = false) Integer zoom,
+                           @RequestParam(required = false) Double tolerance,
+                           @RequestParam(defaultValue = "false") boolean stream) throws IOException {
+        double tol = tolerance != null ? tolerance : zoom != null ? MapService.toleranceForZoom(zoom) : 0;
+        if (stream) {
+            StreamingResponseBody body = out -> mapService.streamVehiclePaths(from, to, tol, out);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .body(body);
+        }
+        return deferred(mapService.getVehiclePathsAsync(from, to, tol));
     }
 
     @GetMapping("/heatmap")
-    public Object getHeatmap(@RequestParam Long from, @RequestParam Long to) throws IOException {
-        return mapService.getHeatmapData(from, to);
+    public DeferredResult<List<Map<String, Object>>> getHeatmap(@RequestParam Long from, @RequestParam Long to,
+                                                                @RequestParam(required = false) Integer zoom) {
+        return deferred(mapService.getHeatmapDataAsync(from, to, zoom));
+    }
+
+    /**
+     * 并行扫描在后台线程完成，不占用请求线程；客户端断开、超时或请求结束时取消仍在进行的扫描
+     */
+    private <T> DeferredResult<T> deferred(CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>(queryTimeoutMs);
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                result.setErrorResult(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                result.setResult(value);
+            }
+        });
+        result.onTimeout(() -> future.cancel(true));
+        result.onError(e -> future.cancel(true));
+        result.onCompletion(() -> future.cancel(true));
+        return result;
     }
 }
\ No newline at end of file
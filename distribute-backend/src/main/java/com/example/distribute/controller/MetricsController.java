@@ -1,10 +1,25 @@
 package com.example.distribute.controller;
 
+import com.example.distribute.hbase.RegionScanExecutor;
+import com.example.distribute.service.AlertBatchWriter;
+import com.example.distribute.service.MetricsRegistry;
 import com.example.distribute.service.MetricsService;
+import com.example.distribute.service.OrderCube;
+import com.example.distribute.service.OrderRollupStore;
+import com.example.distribute.service.OrderTableRouter;
+import com.example.distribute.service.ResultCache;
+import com.example.distribute.service.VehicleRedisWriter;
+import com.example.distribute.websocket.LocationConflator;
+import com.example.distribute.websocket.WebSocketFanout;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -12,14 +27,36 @@ import java.util.Map;
 public class MetricsController {
     @Autowired
     private MetricsService metricsService;
+    @Autowired
+    private VehicleRedisWriter vehicleRedisWriter;
+    @Autowired
+    private WebSocketFanout webSocketFanout;
+    @Autowired
+    private LocationConflator locationConflator;
+    @Autowired
+    private RegionScanExecutor regionScanExecutor;
+    @Autowired
+    private AlertBatchWriter alertBatchWriter;
+    @Autowired
+    private OrderRollupStore orderRollupStore;
+    @Autowired
+    private OrderCube orderCube;
+    @Autowired
+    private OrderTableRouter orderTableRouter;
+    @Autowired
+    private ResultCache resultCache;
+    @Autowired
+    private MetricsRegistry metricsRegistry;
 
     @GetMapping("/overview")
     public Map<String, Object> getOverview(
             @RequestParam(required = false)
             @DateTimeFormat(pattern = "yyyy-MM-dd") Long from,
             @RequestParam(required = false)
-            @DateTimeFormat(pattern = "yyyy-MM-dd") Long to) {
-        return metricsService.computeOverview(from, to);
+            @DateTimeFormat(pattern = "yyyy-MM-dd") Long to,
+            @RequestParam(defaultValue = "rollup") String source) {
+        return "raw".equals(source) ? metricsService.computeOverviewFromOrders(from, to)
+                : metricsService.computeOverview(from, to);
     }
 
     @GetMapping("/alerts/count")
@@ -27,4 +64,69 @@ public class MetricsController {
         int count = metricsService.countAlertsSince(since);
         return Map.of("alertCount", count);
     }
+
+    @GetMapping("/redis-writer")
+    public Map<String, Object> getRedisWriterStats() {
+        return vehicleRedisWriter.stats();
+    }
+
+    @GetMapping("/websocket")
+    public List<Map<String, Object>> getWebSocketStats() {
+        return webSocketFanout.stats();
+    }
+
+    @GetMapping("/websocket/conflation")
+    public Map<String, Object> getConflationStats() {
+        return locationConflator.stats();
+    }
+
+    @GetMapping("/hbase-scan")
+    public Map<String, Object> getHBaseScanStats() {
+        return regionScanExecutor.stats();
+    }
+
+    @GetMapping("/alert-writer")
+    public Map<String, Object> getAlertWriterStats() {
+        return alertBatchWriter.stats();
+    }
+
+    @GetMapping("/order-rollup")
+    public Map<String, Object> getOrderRollupStats() {
+        return orderRollupStore.stats();
+    }
+
+    @GetMapping("/order-cube")
+    public Map<String, Object> getOrderCubeStats() {
+        return orderCube.stats();
+    }
+
+    @GetMapping("/order-router")
+    public Map<String, Object> getOrderRouterStats() {
+        return orderTableRouter.stats();
+    }
+
+    /**
+     * Prometheus 文本格式：热路径上登记的计数器和直方图，加上各组件 stats() 中的数值项
+     */
+    @GetMapping("/prometheus")
+    public ResponseEntity<String> prometheus() throws IOException {
+        StringWriter out = new StringWriter(16 * 1024);
+        metricsRegistry.writePrometheus(out);
+        MetricsRegistry.writeStats(out, "redis_writer", vehicleRedisWriter.stats());
+        MetricsRegistry.writeStats(out, "ws_conflation", locationConflator.stats());
+        MetricsRegistry.writeStats(out, "hbase_region_scan", regionScanExecutor.stats());
+        MetricsRegistry.writeStats(out, "alert_writer", alertBatchWriter.stats());
+        MetricsRegistry.writeStats(out, "order_rollup", orderRollupStore.stats());
+        MetricsRegistry.writeStats(out, "order_cube", orderCube.stats());
+        MetricsRegistry.writeStats(out, "order_router", orderTableRouter.stats());
+        MetricsRegistry.writeStats(out, "result_cache", resultCache.stats());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8"))
+                .body(out.toString());
+    }
+
+    @GetMapping("/result-cache")
+    public Map<String, Object> getResultCacheStats() {
+        return resultCache.stats();
+    }
 }
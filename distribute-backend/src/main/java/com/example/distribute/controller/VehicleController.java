@@ -1,8 +1,11 @@
 package com.example.distribute.controller;
 
 import com.example.distribute.service.VehicleService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import java.util.List;
 import java.util.Map;
 
@@ -17,9 +20,28 @@ public class VehicleController {
 		return vehicleService.getCurrentLocation(vehicleId);
 	}
 	
+	/**
+	 * 分页查询历史轨迹，下一页游标通过响应头 X-Next-Cursor 返回，没有更多数据时不带该头
+	 */
 	@GetMapping("/{id}/history")
-	public List<Map<String, Object>> getVehicleHistory(@PathVariable("id") String vehicleId, @RequestParam("from") long fromTimestamp) {
-		return vehicleService.getLocationHistory(vehicleId, fromTimestamp);
+	public List<Map<String, Object>> getVehicleHistory(@PathVariable("id") String vehicleId,
+			@RequestParam("from") long fromTimestamp,
+			@RequestParam(value = "to", required = false) Long toTimestamp,
+			@RequestParam(value = "limit", required = false) Integer limit,
+			@RequestParam(value = "order", defaultValue = "asc") String order,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			HttpServletResponse response) {
+		VehicleService.HistoryPage page;
+		try {
+			page = vehicleService.getLocationHistory(
+					vehicleId, fromTimestamp, toTimestamp, limit, "desc".equalsIgnoreCase(order), cursor);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+		}
+		if (page.nextCursor() != null) {
+			response.setHeader("X-Next-Cursor", page.nextCursor());
+		}
+		return page.items();
 	}
 	
 	@GetMapping("/status")
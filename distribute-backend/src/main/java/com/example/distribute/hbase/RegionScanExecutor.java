@@ -0,0 +1,204 @@
+package com.example.distribute.hbase;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import com.example.distribute.service.LatencyHistogram;
+import com.example.distribute.service.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * 按 Region 边界切分扫描并在有界线程池上并行执行。
+ * 每个子扫描用自己的聚合器在本地汇总，全部完成后按 Region 顺序依次 merge，
+ * 因此同一行键前缀的数据合并后仍保持行键顺序。
+ * 返回的 future 被取消时，仍在运行的子扫描会在下一行处停止并关闭各自的扫描器。
+ */
+@Component
+public class RegionScanExecutor {
+
+    /**
+     * 单个子扫描的本地聚合器，只在一个线程内使用
+     */
+    public interface RowAggregator<A> {
+        void accept(Result row) throws IOException;
+
+        A result();
+    }
+
+    private final Connection hbaseConn;
+    private final ThreadPoolExecutor pool;
+
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong subScans = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final MetricsRegistry.Counter rowsScanned;
+    private final LatencyHistogram scanTime;
+
+    public RegionScanExecutor(Connection hbaseConn,
+                              @Value("${hbase.scan.threads:8}") int threads,
+                              @Value("${hbase.scan.queue-capacity:256}") int queueCapacity,
+                              MetricsRegistry metrics) {
+        this.hbaseConn = hbaseConn;
+        this.rowsScanned = metrics.counter("hbase_rows_scanned_total", "HBase rows read", "source", "region_scan");
+        this.scanTime = metrics.histogram("hbase_scan_seconds", "Time to drain one HBase scanner", "source", "region_scan");
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "hbase-scan-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * 并行执行 scan。scan 不能设置 limit 或反向扫描，起止行以外的属性（列、caching 等）会复制到每个子扫描。
+     */
+    public <A> CompletableFuture<A> submit(String table, Scan scan,
+                                           Supplier<? extends RowAggregator<A>> aggregators,
+                                           BinaryOperator<A> merge) {
+        scans.incrementAndGet();
+        List<Scan> parts;
+        try {
+            parts = split(TableName.valueOf(table), scan);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (parts.isEmpty()) {
+            return CompletableFuture.completedFuture(aggregators.get().result());
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        List<CompletableFuture<A>> tasks = new ArrayList<>(parts.size());
+        try {
+            for (Scan part : parts) {
+                RowAggregator<A> aggregator = aggregators.get();
+                tasks.add(CompletableFuture.supplyAsync(() -> run(table, part, aggregator, stop), pool));
+            }
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            stop.set(true);
+            return CompletableFuture.failedFuture(e);
+        }
+        subScans.addAndGet(parts.size());
+
+        CompletableFuture<A> merged = tasks.get(0);
+        for (int i = 1; i < tasks.size(); i++) {
+            merged = merged.thenCombine(tasks.get(i), merge);
+        }
+        CompletableFuture<A> result = new CompletableFuture<>();
+        merged.whenComplete((value, error) -> {
+            if (error != null) {
+                // 任一子扫描失败时其余的也没有必要继续
+                stop.set(true);
+                result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                result.complete(value);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                cancelled.incrementAndGet();
+                stop.set(true);
+                tasks.forEach(t -> t.cancel(false));
+            }
+        });
+        return result;
+    }
+
+    private <A> A run(String table, Scan part, RowAggregator<A> aggregator, AtomicBoolean stop) {
+        long start = System.nanoTime();
+        long rows = 0;
+        try (Table t = hbaseConn.getTable(TableName.valueOf(table));
+             ResultScanner scanner = t.getScanner(part)) {
+            for (Result row : scanner) {
+                if (stop.get()) {
+                    throw new CancellationException("scan cancelled");
+                }
+                rows++;
+                aggregator.accept(row);
+            }
+            return aggregator.result();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            rowsScanned.add(rows);
+            scanTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 把 scan 的行键区间与各 Region 的 [startKey, endKey) 求交，空字节数组表示无界
+     */
+    List<Scan> split(TableName table, Scan scan) throws IOException {
+        byte[] start = scan.getStartRow();
+        byte[] stop = scan.getStopRow();
+        Pair<byte[][], byte[][]> keys;
+        try (RegionLocator locator = hbaseConn.getRegionLocator(table)) {
+            keys = locator.getStartEndKeys();
+        }
+        List<Scan> parts = new ArrayList<>(keys.getFirst().length);
+        for (int i = 0; i < keys.getFirst().length; i++) {
+            byte[] regionStart = keys.getFirst()[i];
+            byte[] regionEnd = keys.getSecond()[i];
+            boolean ownStart = regionStart.length == 0 || Bytes.compareTo(start, regionStart) >= 0;
+            boolean ownStop = regionEnd.length == 0 || (stop.length > 0 && Bytes.compareTo(stop, regionEnd) <= 0);
+            byte[] s = ownStart ? start : regionStart;
+            byte[] e = ownStop ? stop : regionEnd;
+            if (e.length > 0 && Bytes.compareTo(s, e) > 0) {
+                continue;
+            }
+            if (e.length > 0 && Bytes.compareTo(s, e) == 0 && !(ownStart && ownStop && scan.includeStopRow())) {
+                continue;
+            }
+            Scan part = new Scan(scan)
+                    .withStartRow(s, !ownStart || scan.includeStartRow())
+                    .withStopRow(e, ownStop && scan.includeStopRow());
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("threads", pool.getMaximumPoolSize());
+        m.put("active", pool.getActiveCount());
+        m.put("queued", pool.getQueue().size());
+        m.put("scans", scans.get());
+        m.put("subScans", subScans.get());
+        m.put("cancelled", cancelled.get());
+        m.put("rejected", rejected.get());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.distribute.hbase;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 按时间桶组织的轨迹二级索引表 vehicle_tracking_ts。
+ * 行键为 {10 位桶起始秒}_{vehicleId}，每个桶一小时；列族 p 下每个点一列，
+ * 列名为 8 字节秒级时间戳，值为 16 字节的 lat、lon（double）。
+ * 全车队的轨迹/热力查询只需扫描窗口覆盖的若干个桶，开销与窗口大小成正比而与历史总量无关。
+ */
+public final class TrackingIndex {
+
+    public static final String TABLE = "vehicle_tracking_ts";
+    public static final byte[] POINTS = Bytes.toBytes("p");
+    public static final long BUCKET_SECONDS = 3600;
+
+    private TrackingIndex() {
+    }
+
+    public static long bucketOf(long ts) {
+        return Math.floorDiv(ts, BUCKET_SECONDS) * BUCKET_SECONDS;
+    }
+
+    public static byte[] rowKey(long bucket, String vehicleId) {
+        return Bytes.toBytes(pad(bucket) + "_" + vehicleId);
+    }
+
+    /**
+     * 窗口 [from, to] 覆盖的第一个桶的行键下界（含）
+     */
+    public static byte[] startRow(long from) {
+        return Bytes.toBytes(pad(bucketOf(from)) + "_");
+    }
+
+    /**
+     * 窗口 [from, to] 覆盖的最后一个桶之后的行键（不含）
+     */
+    public static byte[] stopRow(long to) {
+        return Bytes.toBytes(pad(bucketOf(to) + BUCKET_SECONDS) + "_");
+    }
+
+    public static Put put(String vehicleId, long ts, double lat, double lon) {
+        byte[] value = new byte[16];
+        Bytes.putDouble(value, 0, lat);
+        Bytes.putDouble(value, 8, lon);
+        return new Put(rowKey(bucketOf(ts), vehicleId))
+                .addColumn(POINTS, Bytes.toBytes(ts), value);
+    }
+
+    public static String vehicleId(byte[] row) {
+        // 桶前缀固定 10 位 + 分隔符
+        return Bytes.toString(row, 11, row.length - 11);
+    }
+
+    private static String pad(long bucket) {
+        String s = Long.toString(bucket);
+        return s.length() >= 10 ? s : "0".repeat(10 - s.length()) + s;
+    }
+}
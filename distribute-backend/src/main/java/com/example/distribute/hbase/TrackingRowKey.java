@@ -0,0 +1,57 @@
+package com.example.distribute.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * vehicle_tracking 表的行键工具，行键格式为 {vehicleId}_{秒级时间戳}。
+ * 当前时间戳均为 10 位十进制（2001~2286 年），同一车辆内字典序即时间序，
+ * 因此时间范围可以直接换算成服务端的 startRow / stopRow。
+ */
+public final class TrackingRowKey {
+
+    public static final byte SEPARATOR = '_';
+
+    private TrackingRowKey() {
+    }
+
+    public static byte[] of(String vehicleId, long ts) {
+        return Bytes.toBytes(vehicleId + "_" + ts);
+    }
+
+    /**
+     * 该车辆所有行键的下界（含）
+     */
+    public static byte[] first(String vehicleId) {
+        return Bytes.toBytes(vehicleId + "_");
+    }
+
+    /**
+     * 该车辆所有行键的上界（不含）：'_' 的下一个字符是 '`'
+     */
+    public static byte[] afterLast(String vehicleId) {
+        return Bytes.toBytes(vehicleId + "`");
+    }
+
+    /**
+     * 直接从行键字节解析时间戳，不创建中间字符串
+     */
+    public static long timestamp(byte[] row) {
+        int i = row.length - 1;
+        while (i >= 0 && row[i] != SEPARATOR) {
+            i--;
+        }
+        long ts = 0;
+        for (int j = i + 1; j < row.length; j++) {
+            ts = ts * 10 + (row[j] - '0');
+        }
+        return ts;
+    }
+
+    public static String vehicleId(byte[] row) {
+        int i = row.length - 1;
+        while (i >= 0 && row[i] != SEPARATOR) {
+            i--;
+        }
+        return Bytes.toString(row, 0, Math.max(i, 0));
+    }
+}
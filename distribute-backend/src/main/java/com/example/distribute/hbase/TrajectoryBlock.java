@@ -0,0 +1,246 @@
+package com.example.distribute.hbase;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.util.Arrays;
+
+/**
+ * 按列压缩的轨迹块：一辆车一小时内的所有定位点打包成一个单元格。
+ * 时间戳、纬度、经度、速度各占一列，列内第一个值为绝对值，其余为与前一个值的差，
+ * 经纬度按 1e-6 度、速度按 0.01 定点化后统一做 zigzag varint 编码。
+ *
+ * 格式：版本(1字节) 点数 时间戳列长度 纬度列长度 经度列长度 速度列长度（均为 varint），随后依次为四列数据。
+ *
+ * 实例是可复用的解码/编码缓冲区，decode 之后通过 ts()/lat()/lon()/speed() 按下标读取，
+ * 稳定状态下不为单个点分配对象；非线程安全。
+ */
+public final class TrajectoryBlock {
+
+    /** 独立的块表，行键 {vehicleId}_{10 位小时桶}，供单车历史查询 */
+    public static final String TABLE = "vehicle_tracking_block";
+    public static final byte[] FAMILY = Bytes.toBytes("b");
+    public static final byte[] QUALIFIER = Bytes.toBytes("d");
+
+    private static final byte VERSION = 1;
+
+    private long[] ts = new long[64];
+    private int[] lat = new int[64];
+    private int[] lon = new int[64];
+    private int[] speed = new int[64];
+    private int size;
+
+    private byte[] buf = new byte[256];
+    private int pos;
+    // 解码时复用的临时变量
+    private final long[] varint = new long[1];
+    private final int[] lens = new int[4];
+
+    public static byte[] rowKey(String vehicleId, long bucket) {
+        String b = Long.toString(bucket);
+        return Bytes.toBytes(vehicleId + "_" + (b.length() >= 10 ? b : "0".repeat(10 - b.length()) + b));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long ts(int i) {
+        return ts[i];
+    }
+
+    public double lat(int i) {
+        return lat[i] / 1e6;
+    }
+
+    public double lon(int i) {
+        return lon[i] / 1e6;
+    }
+
+    public double speed(int i) {
+        return speed[i] / 100.0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 追加一个点，要求时间戳递增；与最后一个点时间戳相同时覆盖
+     */
+    public void add(long t, double la, double lo, double sp) {
+        if (size > 0 && ts[size - 1] == t) {
+            size--;
+        }
+        if (size == ts.length) {
+            int cap = size << 1;
+            ts = Arrays.copyOf(ts, cap);
+            lat = Arrays.copyOf(lat, cap);
+            lon = Arrays.copyOf(lon, cap);
+            speed = Arrays.copyOf(speed, cap);
+        }
+        ts[size] = t;
+        lat[size] = (int) Math.round(la * 1e6);
+        lon[size] = (int) Math.round(lo * 1e6);
+        speed[size] = (int) Math.round(sp * 100);
+        size++;
+    }
+
+    /**
+     * 把另一个已解码的块合并进来（按时间戳归并，相同时间戳以 other 为准）
+     */
+    public void mergeFrom(TrajectoryBlock other) {
+        if (other.size == 0) {
+            return;
+        }
+        long[] t0 = Arrays.copyOf(ts, size);
+        int[] la0 = Arrays.copyOf(lat, size);
+        int[] lo0 = Arrays.copyOf(lon, size);
+        int[] sp0 = Arrays.copyOf(speed, size);
+        int n0 = size;
+        size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < n0 || j < other.size) {
+            if (j >= other.size || (i < n0 && t0[i] < other.ts[j])) {
+                add(t0[i], la0[i] / 1e6, lo0[i] / 1e6, sp0[i] / 100.0);
+                i++;
+            } else {
+                if (i < n0 && t0[i] == other.ts[j]) {
+                    i++;
+                }
+                add(other.ts[j], other.lat(j), other.lon(j), other.speed(j));
+                j++;
+            }
+        }
+    }
+
+    public byte[] encode() {
+        byte[][] cols = new byte[4][];
+        pos = 0;
+        long prev = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(zigzag(ts[i] - prev));
+            prev = ts[i];
+        }
+        cols[0] = Arrays.copyOf(buf, pos);
+        cols[1] = encodeColumn(lat);
+        cols[2] = encodeColumn(lon);
+        cols[3] = encodeColumn(speed);
+
+        pos = 0;
+        writeByte(VERSION);
+        writeVarint(size);
+        for (byte[] c : cols) {
+            writeVarint(c.length);
+        }
+        for (byte[] c : cols) {
+            ensure(c.length);
+            System.arraycopy(c, 0, buf, pos, c.length);
+            pos += c.length;
+        }
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private byte[] encodeColumn(int[] col) {
+        pos = 0;
+        long prev = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(zigzag(col[i] - prev));
+            prev = col[i];
+        }
+        return Arrays.copyOf(buf, pos);
+    }
+
+    /**
+     * 解码到本实例的缓冲数组中，覆盖之前的内容
+     */
+    public void decode(byte[] b, int off, int len) {
+        int end = off + len;
+        int p = off;
+        if (b[p++] != VERSION) {
+            throw new IllegalArgumentException("unsupported trajectory block version " + b[off]);
+        }
+        long[] v = varint;
+        p = readVarint(b, p, v);
+        int n = (int) v[0];
+        for (int c = 0; c < 4; c++) {
+            p = readVarint(b, p, v);
+            lens[c] = (int) v[0];
+        }
+        if (p + lens[0] + lens[1] + lens[2] + lens[3] > end) {
+            throw new IllegalArgumentException("truncated trajectory block");
+        }
+        if (ts.length < n) {
+            ts = new long[n];
+            lat = new int[n];
+            lon = new int[n];
+            speed = new int[n];
+        }
+        int pt = p;
+        int pla = pt + lens[0];
+        int plo = pla + lens[1];
+        int psp = plo + lens[2];
+        long t = 0;
+        long la = 0;
+        long lo = 0;
+        long sp = 0;
+        for (int i = 0; i < n; i++) {
+            pt = readVarint(b, pt, v);
+            t += unzigzag(v[0]);
+            pla = readVarint(b, pla, v);
+            la += unzigzag(v[0]);
+            plo = readVarint(b, plo, v);
+            lo += unzigzag(v[0]);
+            psp = readVarint(b, psp, v);
+            sp += unzigzag(v[0]);
+            ts[i] = t;
+            lat[i] = (int) la;
+            lon[i] = (int) lo;
+            speed[i] = (int) sp;
+        }
+        size = n;
+    }
+
+    private static int readVarint(byte[] b, int p, long[] out) {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            byte x = b[p++];
+            v |= (long) (x & 0x7F) << shift;
+            if ((x & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+        }
+        out[0] = v;
+        return p;
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private void writeVarint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void writeByte(byte b) {
+        ensure(1);
+        buf[pos++] = b;
+    }
+
+    private void ensure(int n) {
+        if (pos + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.distribute.hbase;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把 vehicle_tracking 中每个点一行的原始数据按（车辆, 小时）压成 TrajectoryBlock。
+ * 块同时写入 vehicle_tracking_block（单车历史用）和 vehicle_tracking_ts 对应行的 b:d 列（全车队查询用），
+ * 然后删除已压缩的原始行和索引中的逐点列。删除总是在对应的块写入并 flush 之后才发出，中途退出不会丢点；
+ * 只删除本次扫描到的那些点，且只删除扫描开始前写入的版本，压缩期间新写入同一小时的点保留到下次压缩。
+ * 启动参数 --tracking.compact=true 运行；只处理 --tracking.compact.before（秒，默认两小时前）之前的完整小时，
+ * --tracking.compact.delete-raw=false 可保留原始行。已有块会与新数据合并，重复执行是安全的。
+ */
+@Component
+@ConditionalOnProperty(name = "tracking.compact", havingValue = "true")
+public class TrajectoryCompactor implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(TrajectoryCompactor.class);
+    private static final byte[] LOC = Bytes.toBytes("loc");
+    private static final byte[] STAT = Bytes.toBytes("stat");
+    private static final byte[] LAT = Bytes.toBytes("lat");
+    private static final byte[] LON = Bytes.toBytes("lon");
+    private static final byte[] SPEED = Bytes.toBytes("speed");
+    private static final int DELETE_BATCH = 10_000;
+
+    private final Connection hbaseConn;
+    private final long before;
+    private final boolean deleteRaw;
+
+    private final TrajectoryBlock block = new TrajectoryBlock();
+    private final TrajectoryBlock existing = new TrajectoryBlock();
+    private final List<byte[]> rawRows = new ArrayList<>();
+    // 块写入 flush 之后才发出的删除
+    private final List<Delete> indexDeletes = new ArrayList<>();
+    private final List<Delete> rawDeletes = new ArrayList<>();
+    private long scanStartMillis;
+    private long blocks;
+    private long points;
+
+    public TrajectoryCompactor(Connection hbaseConn,
+                               @Value("${tracking.compact.before:0}") long before,
+                               @Value("${tracking.compact.delete-raw:true}") boolean deleteRaw) {
+        this.hbaseConn = hbaseConn;
+        long limit = before > 0 ? before : System.currentTimeMillis() / 1000 - 2 * TrackingIndex.BUCKET_SECONDS;
+        this.before = TrackingIndex.bucketOf(limit);
+        this.deleteRaw = deleteRaw;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        ensureTable(TrajectoryBlock.TABLE, TrajectoryBlock.FAMILY);
+        ensureFamily(TrackingIndex.TABLE, TrajectoryBlock.FAMILY);
+        long start = System.currentTimeMillis();
+        scanStartMillis = start;
+        Scan scan = new Scan()
+                .addColumn(LOC, LAT)
+                .addColumn(LOC, LON)
+                .addColumn(STAT, SPEED)
+                .setCaching(1000)
+                .setCacheBlocks(false);
+        try (Table raw = hbaseConn.getTable(TableName.valueOf("vehicle_tracking"));
+             Table blockTable = hbaseConn.getTable(TableName.valueOf(TrajectoryBlock.TABLE));
+             ResultScanner scanner = raw.getScanner(scan);
+             BufferedMutator blockOut = hbaseConn.getBufferedMutator(TableName.valueOf(TrajectoryBlock.TABLE));
+             BufferedMutator indexOut = hbaseConn.getBufferedMutator(TableName.valueOf(TrackingIndex.TABLE));
+             BufferedMutator rawOut = hbaseConn.getBufferedMutator(TableName.valueOf("vehicle_tracking"))) {
+            String vid = null;
+            long bucket = -1;
+            for (Result r : scanner) {
+                byte[] row = r.getRow();
+                long ts = TrackingRowKey.timestamp(row);
+                long b = TrackingIndex.bucketOf(ts);
+                if (b >= before) {
+                    continue;
+                }
+                String v = TrackingRowKey.vehicleId(row);
+                if (!v.equals(vid) || b != bucket) {
+                    flush(vid, bucket, blockTable, blockOut, indexOut, rawOut);
+                    vid = v;
+                    bucket = b;
+                }
+                byte[] lat = r.getValue(LOC, LAT);
+                byte[] lon = r.getValue(LOC, LON);
+                byte[] speed = r.getValue(STAT, SPEED);
+                if (lat != null && lon != null) {
+                    block.add(ts, Double.parseDouble(Bytes.toString(lat)), Double.parseDouble(Bytes.toString(lon)),
+                            speed != null ? Double.parseDouble(Bytes.toString(speed)) : 0);
+                }
+                rawRows.add(row);
+            }
+            flush(vid, bucket, blockTable, blockOut, indexOut, rawOut);
+            applyDeletes(blockOut, indexOut, rawOut);
+        }
+        log.info("trajectory compaction done: blocks={} points={} before={} in {} ms",
+                blocks, points, before, System.currentTimeMillis() - start);
+    }
+
+    private void flush(String vid, long bucket, Table blockTable, BufferedMutator blockOut,
+                       BufferedMutator indexOut, BufferedMutator rawOut) throws IOException {
+        if (vid == null || (block.size() == 0 && rawRows.isEmpty())) {
+            block.clear();
+            rawRows.clear();
+            return;
+        }
+        byte[] blockRow = TrajectoryBlock.rowKey(vid, bucket);
+        // 与之前压缩过的块合并，保证重复执行或迟到数据不丢点
+        Result old = blockTable.get(new Get(blockRow).addColumn(TrajectoryBlock.FAMILY, TrajectoryBlock.QUALIFIER));
+        byte[] oldValue = old.getValue(TrajectoryBlock.FAMILY, TrajectoryBlock.QUALIFIER);
+        if (oldValue != null) {
+            existing.decode(oldValue, 0, oldValue.length);
+            existing.mergeFrom(block);
+            swap();
+        }
+        if (block.size() > 0) {
+            byte[] encoded = block.encode();
+            blockOut.mutate(new Put(blockRow).addColumn(TrajectoryBlock.FAMILY, TrajectoryBlock.QUALIFIER, encoded));
+            byte[] indexRow = TrackingIndex.rowKey(bucket, vid);
+            indexOut.mutate(new Put(indexRow).addColumn(TrajectoryBlock.FAMILY, TrajectoryBlock.QUALIFIER, encoded));
+            // 只删除已压进块的点列
+            Delete compacted = new Delete(indexRow);
+            for (byte[] row : rawRows) {
+                compacted.addColumns(TrackingIndex.POINTS, Bytes.toBytes(TrackingRowKey.timestamp(row)), scanStartMillis);
+            }
+            indexDeletes.add(compacted);
+            blocks++;
+            points += block.size();
+            if (blocks % 1000 == 0) {
+                log.info("trajectory compaction: blocks={} points={}", blocks, points);
+            }
+        }
+        if (deleteRaw) {
+            for (byte[] row : rawRows) {
+                rawDeletes.add(new Delete(row, scanStartMillis));
+            }
+        }
+        block.clear();
+        rawRows.clear();
+        if (indexDeletes.size() + rawDeletes.size() >= DELETE_BATCH) {
+            applyDeletes(blockOut, indexOut, rawOut);
+        }
+    }
+
+    /**
+     * 先把已缓冲的块写入 flush 落盘，再发出对应的删除
+     */
+    private void applyDeletes(BufferedMutator blockOut, BufferedMutator indexOut, BufferedMutator rawOut)
+            throws IOException {
+        blockOut.flush();
+        indexOut.flush();
+        indexOut.mutate(indexDeletes);
+        rawOut.mutate(rawDeletes);
+        indexOut.flush();
+        rawOut.flush();
+        indexDeletes.clear();
+        rawDeletes.clear();
+    }
+
+    /**
+     * 合并结果在 existing 中，把它编码回 block
+     */
+    private void swap() {
+        block.clear();
+        for (int i = 0; i < existing.size(); i++) {
+            block.add(existing.ts(i), existing.lat(i), existing.lon(i), existing.speed(i));
+        }
+    }
+
+    private void ensureTable(String table, byte[] family) throws IOException {
+        TableName name = TableName.valueOf(table);
+        try (Admin admin = hbaseConn.getAdmin()) {
+            if (!admin.tableExists(name)) {
+                admin.createTable(TableDescriptorBuilder.newBuilder(name)
+                        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(family))
+                        .build());
+                log.info("created table {}", name);
+            }
+        }
+    }
+
+    private void ensureFamily(String table, byte[] family) throws IOException {
+        TableName name = TableName.valueOf(table);
+        try (Admin admin = hbaseConn.getAdmin()) {
+            if (!admin.getDescriptor(name).hasColumnFamily(family)) {
+                admin.addColumnFamily(name, ColumnFamilyDescriptorBuilder.of(family));
+                log.info("added family {} to {}", Bytes.toString(family), name);
+            }
+        }
+    }
+}
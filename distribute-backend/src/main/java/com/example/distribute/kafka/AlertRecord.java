@@ -0,0 +1,32 @@
+package com.example.distribute.kafka;
+
+/**
+ * alerts 消息的解码结果，由同一消费线程反复填充复用。
+ * 车辆、类型、详情兼容 vehicle_id / device_id、alert_type / type、details / detail 两种写法
+ */
+final class AlertRecord {
+
+    byte[] raw;
+    // 解析成功；失败时 raw 仍会转发给 WebSocket，但不持久化
+    boolean parsed;
+    String vehicleId;
+    String alertType;
+    String severity;
+    // 缺失时为 NaN
+    double timestamp;
+    // 只在需要持久化时解码
+    String details;
+    // 消息位置 {topic}-{partition}@{offset}，持久化时作为去重键
+    String source;
+
+    void reset(byte[] raw) {
+        this.raw = raw;
+        parsed = false;
+        vehicleId = null;
+        alertType = null;
+        severity = null;
+        timestamp = Double.NaN;
+        details = null;
+        source = null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.distribute.kafka;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 批量消费的工作通道：每个通道一个线程，记录按 key（车辆 ID）哈希到固定通道，
+ * 同一车辆的记录在同一线程内按到达顺序处理，不同车辆分散到多个核上并行。
+ * 各消费线程共用这组通道；通道线程空闲一段时间后退出，未启用批量模式时不占线程。
+ */
+@Component
+public class IngestLanes {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    public IngestLanes(@Value("${kafka.batch.lanes:0}") int lanes) {
+        int n = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ThreadPoolExecutor[n];
+        for (int i = 0; i < n; i++) {
+            String name = "ingest-lane-" + i;
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            this.lanes[i] = executor;
+        }
+    }
+
+    public int size() {
+        return lanes.length;
+    }
+
+    int laneOf(String key) {
+        if (key == null) {
+            return 0;
+        }
+        // 打散 String.hashCode 低位的规律，避免 V100、V101... 集中在少数通道
+        int h = key.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    /**
+     * 按 key 分组后在各通道上执行 handler，组内保持 items 中的顺序；全部完成后返回，
+     * 任一记录处理失败时抛出第一个异常
+     */
+    <T> void dispatch(List<T> items, Function<T, String> key, Consumer<T> handler) throws InterruptedException {
+        List<List<T>> groups = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            groups.add(null);
+        }
+        int used = 0;
+        for (T item : items) {
+            int lane = laneOf(key.apply(item));
+            List<T> group = groups.get(lane);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.set(lane, group);
+                used++;
+            }
+            group.add(item);
+        }
+        CountDownLatch done = new CountDownLatch(used);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (int i = 0; i < lanes.length; i++) {
+            List<T> group = groups.get(i);
+            if (group == null) {
+                continue;
+            }
+            lanes[i].execute(() -> {
+                try {
+                    for (T item : group) {
+                        handler.accept(item);
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
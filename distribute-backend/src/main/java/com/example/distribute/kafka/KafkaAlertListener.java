@@ -1,49 +1,383 @@
 package com.example.distribute.kafka;
 
+import com.example.distribute.service.AlertBatchWriter;
+import com.example.distribute.service.HeatmapTileStore;
+import com.example.distribute.service.LatencyHistogram;
+import com.example.distribute.service.MetricsRegistry;
+import com.example.distribute.service.OrderCube;
+import com.example.distribute.service.OrderRollupStore;
+import com.example.distribute.service.ResultCache;
+import com.example.distribute.service.VehicleRedisWriter;
+import com.example.distribute.service.VehicleStateStore;
 import com.example.distribute.websocket.VehicleWebSocketHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 @Component
 public class KafkaAlertListener {
 
+    private static final Logger log = LoggerFactory.getLogger(KafkaAlertListener.class);
+
+    // ObjectMapper 线程安全，全局复用
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // 位置和告警按原始字节消费，由 RecordDecoder 解码，原字节直接转发给 WebSocket
+    private static final String BYTE_VALUES =
+            "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer";
+    private static final String BATCH_MAX_RECORDS = "max.poll.records=${kafka.batch.max-records:500}";
+    // kafka.batch.enabled=true 时启动批量监听，逐条监听不启动；两组监听同属 logistics-group
+    private static final String RECORD_MODE = "#{!${kafka.batch.enabled:false}}";
+    private static final String BATCH_MODE = "${kafka.batch.enabled:false}";
+
+    /**
+     * 每个消费线程一份的解码器和复用的记录对象；批量模式下按批内序号复用
+     */
+    private static final class DecodeState {
+        final RecordDecoder decoder = new RecordDecoder();
+        final LocationRecord location = new LocationRecord();
+        final AlertRecord alert = new AlertRecord();
+        final List<LocationRecord> locationPool = new ArrayList<>();
+        final List<AlertRecord> alertPool = new ArrayList<>();
+        final List<LocationRecord> locationBatch = new ArrayList<>();
+        final List<AlertRecord> alertBatch = new ArrayList<>();
+
+        LocationRecord pooledLocation(int i) {
+            if (i == locationPool.size()) {
+                locationPool.add(new LocationRecord());
+            }
+            return locationPool.get(i);
+        }
+
+        AlertRecord pooledAlert(int i) {
+            if (i == alertPool.size()) {
+                alertPool.add(new AlertRecord());
+            }
+            return alertPool.get(i);
+        }
+    }
+
+    private final ThreadLocal<DecodeState> decodeState = ThreadLocal.withInitial(DecodeState::new);
+
     private final VehicleWebSocketHandler webSocketHandler;
-    private final JedisPool jedisPool;
+    private final VehicleStateStore stateStore;
+    private final VehicleRedisWriter redisWriter;
+    private final HeatmapTileStore tileStore;
+    private final AlertBatchWriter alertWriter;
+    private final OrderRollupStore rollupStore;
+    private final OrderCube orderCube;
+    private final ResultCache resultCache;
+    private final boolean persistAlerts;
+    private final ObjectProvider<KafkaListenerEndpointRegistry> endpointRegistry;
+    private final IngestLanes lanes;
+    private final TopicMetrics alertsTopic;
+    private final TopicMetrics locationTopic;
+    private final TopicMetrics logisticsTopic;
     
-    public KafkaAlertListener(VehicleWebSocketHandler webSocketHandler, JedisPool jedisPool) {
+    public KafkaAlertListener(VehicleWebSocketHandler webSocketHandler, VehicleStateStore stateStore,
+                              VehicleRedisWriter redisWriter, HeatmapTileStore tileStore,
+                              AlertBatchWriter alertWriter, OrderRollupStore rollupStore, OrderCube orderCube,
+                              ResultCache resultCache, MetricsRegistry metrics,
+                              ObjectProvider<KafkaListenerEndpointRegistry> endpointRegistry, IngestLanes lanes,
+                              @Value("${alerts.persist-from-kafka:true}") boolean persistAlerts) {
     	this.webSocketHandler = webSocketHandler;
-        this.jedisPool = jedisPool;
-    }
-
-    @KafkaListener(topics = "alerts", groupId = "logistics-group")
-    public void onMessage(ConsumerRecord<String, String> record) {
-        String alertJson = record.value();
-        webSocketHandler.broadcast(alertJson);
-    }
-
-    @KafkaListener(topics = "vehicle-location", groupId = "logistics-group")
-    public void onVehicleLocation(ConsumerRecord<String, String> record) {
-        String locationJson = record.value();
-        webSocketHandler.broadcast(locationJson);
-
-        // 同步更新 Redis
-        try (Jedis jedis = jedisPool.getResource()) {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            java.util.Map<String, Object> data = mapper.readValue(locationJson, java.util.Map.class);
-            String vehicleId = (String) data.get("vehicle_id");
-            jedis.hset("vehicle:" + vehicleId, new java.util.HashMap<String, String>() {{
-                put("lat", data.get("latitude").toString());
-                put("lon", data.get("longitude").toString());
-                put("speed", data.get("speed").toString());
-                put("timestamp", data.get("timestamp").toString());
-            }});
+        this.stateStore = stateStore;
+        this.redisWriter = redisWriter;
+        this.tileStore = tileStore;
+        this.alertWriter = alertWriter;
+        this.rollupStore = rollupStore;
+        this.orderCube = orderCube;
+        this.resultCache = resultCache;
+        this.persistAlerts = persistAlerts;
+        this.endpointRegistry = endpointRegistry;
+        this.lanes = lanes;
+        this.alertsTopic = new TopicMetrics(metrics, "alerts");
+        this.locationTopic = new TopicMetrics(metrics, "vehicle-location");
+        this.logisticsTopic = new TopicMetrics(metrics, "logistics-data");
+    }
+
+    /**
+     * 单个主题的消费指标，构造时登记，记录时不分配对象
+     */
+    private final class TopicMetrics {
+        final MetricsRegistry.Counter records;
+        final LatencyHistogram processing;
+        final LatencyHistogram delay;
+        final LatencyHistogram batch;
+
+        TopicMetrics(MetricsRegistry metrics, String topic) {
+            records = metrics.counter("kafka_records_total", "Records consumed", "topic", topic);
+            processing = metrics.histogram("kafka_processing_seconds", "Per-record handler time", "topic", topic);
+            batch = metrics.histogram("kafka_batch_seconds",
+                    "Batch handler time until offsets are acknowledged", "topic", topic);
+            delay = metrics.histogram("kafka_record_delay_seconds",
+                    "Time from record timestamp to processing", "topic", topic);
+            metrics.gauge("kafka_consumer_lag", "Sum of records-lag over assigned partitions",
+                    () -> consumerLag(topic), "topic", topic);
+        }
+
+        void record(ConsumerRecord<?, ?> record, long startNanos) {
+            records.inc();
+            processing.recordNanos(System.nanoTime() - startNanos);
+            recordDelay(record, System.currentTimeMillis());
+        }
+
+        void recordBatch(List<? extends ConsumerRecord<?, ?>> batchRecords, long startNanos) {
+            records.add(batchRecords.size());
+            batch.recordNanos(System.nanoTime() - startNanos);
+            long now = System.currentTimeMillis();
+            for (ConsumerRecord<?, ?> record : batchRecords) {
+                recordDelay(record, now);
+            }
+        }
+
+        private void recordDelay(ConsumerRecord<?, ?> record, long nowMillis) {
+            long ts = record.timestamp();
+            if (ts > 0) {
+                delay.recordNanos(Math.max(0, nowMillis - ts) * 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * 从监听容器内的消费者指标读取某主题各分区的 records-lag 之和
+     */
+    private double consumerLag(String topic) {
+        KafkaListenerEndpointRegistry registry = endpointRegistry.getIfAvailable();
+        if (registry == null) {
+            return Double.NaN;
+        }
+        double lag = 0;
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            for (Map<MetricName, ? extends Metric> clientMetrics : container.metrics().values()) {
+                for (Map.Entry<MetricName, ? extends Metric> e : clientMetrics.entrySet()) {
+                    MetricName name = e.getKey();
+                    if ("records-lag".equals(name.name()) && topic.equals(name.tags().get("topic"))
+                            && e.getValue().metricValue() instanceof Number n && !Double.isNaN(n.doubleValue())) {
+                        lag += n.doubleValue();
+                    }
+                }
+            }
+        }
+        return lag;
+    }
+
+    @KafkaListener(topics = "alerts", groupId = "logistics-group", autoStartup = RECORD_MODE, properties = BYTE_VALUES)
+    public void onMessage(ConsumerRecord<String, byte[]> record) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            if (record.value() != null) {
+                DecodeState state = decodeState.get();
+                decodeAlert(state.decoder, record, state.alert);
+                handleAlert(state.alert);
+            }
+        } finally {
+            alertsTopic.record(record, start);
+        }
+    }
+
+    /**
+     * 批量模式：消费线程解码整批，按车辆哈希到工作通道推送并入队，
+     * 需要持久化时等数据库写线程提交到本批之后再确认位点
+     */
+    @KafkaListener(id = "alerts-batch", topics = "alerts", groupId = "logistics-group",
+            containerFactory = "batchKafkaListenerContainerFactory", autoStartup = BATCH_MODE,
+            properties = {BYTE_VALUES, BATCH_MAX_RECORDS})
+    public void onAlertBatch(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) throws Exception {
+        long start = System.nanoTime();
+        DecodeState state = decodeState.get();
+        List<AlertRecord> batch = state.alertBatch;
+        batch.clear();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (record.value() != null) {
+                AlertRecord alert = state.pooledAlert(batch.size());
+                decodeAlert(state.decoder, record, alert);
+                batch.add(alert);
+            }
+        }
+        lanes.dispatch(batch, alert -> alert.vehicleId, this::broadcastAlert);
+        if (persistAlerts && !batch.isEmpty()) {
+            // 在消费线程上入队，屏障只等待本线程入队的告警；写入失败时抛出，整批重试，已写入的按 source_key 去重
+            for (AlertRecord alert : batch) {
+                persistAlert(alert, true);
+            }
+            try {
+                alertWriter.barrier().get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof DataIntegrityViolationException)) {
+                    throw e;
+                }
+                persistOneByOne(records, batch);
+            }
+        }
+        ack.acknowledge();
+        alertsTopic.recordBatch(records, start);
+    }
+
+    /**
+     * 写线程因数据错误拒绝了本批中的告警时逐条重写（已写入的按 source_key 去重），
+     * 找出第一条坏记录以 BatchListenerFailedException 抛出，
+     * 之前的记录照常提交，坏记录由错误处理器有限次重试后转入死信主题。batch 与非空的 records 一一对应
+     */
+    private void persistOneByOne(List<ConsumerRecord<String, byte[]>> records, List<AlertRecord> batch)
+            throws Exception {
+        int j = 0;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (record.value() == null) {
+                continue;
+            }
+            persistAlert(batch.get(j++), true);
+            try {
+                alertWriter.barrier().get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof DataIntegrityViolationException bad) {
+                    throw new BatchListenerFailedException("bad alert", bad, record);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void decodeAlert(RecordDecoder decoder, ConsumerRecord<String, byte[]> record, AlertRecord alert) {
+        if (!decoder.decode(record.value(), alert, persistAlerts)) {
+            log.warn("Unparsable alert at {}-{}@{}", record.topic(), record.partition(), record.offset());
+        } else if (persistAlerts) {
+            alert.source = record.topic() + "-" + record.partition() + "@" + record.offset();
+        }
+    }
+
+    private void handleAlert(AlertRecord alert) throws InterruptedException {
+        broadcastAlert(alert);
+        persistAlert(alert, false);
+    }
+
+    private void broadcastAlert(AlertRecord alert) {
+        // 解析失败的告警同样转发，级别未知时只有订阅全部级别的会话收到
+        webSocketHandler.broadcastAlert(alert.severity, alert.raw);
+    }
+
+    /**
+     * awaited 为 true 时调用方随后会等待屏障，逐条消费的模式不等待
+     */
+    private void persistAlert(AlertRecord alert, boolean awaited) throws InterruptedException {
+        if (persistAlerts && alert.parsed) {
+            try {
+                // 队列满时阻塞，消费速度随之降下来
+                alertWriter.put(alert.vehicleId, alert.alertType, alert.severity, alert.timestamp, alert.details,
+                        alert.source, awaited);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skip invalid alert: {}", e.getMessage());
+            }
+        }
+    }
+
+    @KafkaListener(topics = "vehicle-location", groupId = "logistics-group", autoStartup = RECORD_MODE,
+            properties = BYTE_VALUES)
+    public void onVehicleLocation(ConsumerRecord<String, byte[]> record) {
+        long start = System.nanoTime();
+        try {
+            DecodeState state = decodeState.get();
+            if (decodeLocation(state.decoder, record, state.location)) {
+                handleLocation(state.location);
+            }
+        } finally {
+            locationTopic.record(record, start);
+        }
+    }
+
+    /**
+     * 批量模式：消费线程解码整批，按车辆哈希到工作通道并行处理，同一车辆保持顺序；
+     * 全部处理完并把 Redis 镜像同步刷新后才确认位点，刷新失败时抛出，整批重试
+     */
+    @KafkaListener(id = "vehicle-location-batch", topics = "vehicle-location", groupId = "logistics-group",
+            containerFactory = "batchKafkaListenerContainerFactory", autoStartup = BATCH_MODE,
+            properties = {BYTE_VALUES, BATCH_MAX_RECORDS})
+    public void onVehicleLocationBatch(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        DecodeState state = decodeState.get();
+        List<LocationRecord> batch = state.locationBatch;
+        batch.clear();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            LocationRecord loc = state.pooledLocation(batch.size());
+            if (decodeLocation(state.decoder, record, loc)) {
+                batch.add(loc);
+            }
+        }
+        lanes.dispatch(batch, loc -> loc.vehicleId, this::handleLocation);
+        redisWriter.flush();
+        ack.acknowledge();
+        locationTopic.recordBatch(records, start);
+    }
+
+    private boolean decodeLocation(RecordDecoder decoder, ConsumerRecord<String, byte[]> record, LocationRecord loc) {
+        if (!decoder.decode(record.value(), loc) || !loc.isValid()) {
+            log.warn("Skip invalid location at {}-{}@{}", record.topic(), record.partition(), record.offset());
+            return false;
+        }
+        return true;
+    }
+
+    private void handleLocation(LocationRecord loc) {
+        try {
+            // 先更新内存状态再推送：合并推送在 tick 时从状态存储读取，标记早于更新会读到旧值并清掉标记
+            stateStore.update(loc.vehicleId, loc.latitude, loc.longitude, loc.speed, loc.timestamp,
+                    loc.status, Math.max(0, loc.load));
+            // 按订阅路由推送，车辆 ID 同时作为慢客户端的合并 key
+            webSocketHandler.broadcastLocation(loc.vehicleId, loc.latitude, loc.longitude, loc.raw);
+
+            tileStore.record((long) loc.timestamp, loc.latitude, loc.longitude);
+            resultCache.touch(ResultCache.Domain.TRACKING, (long) loc.timestamp);
+
+            // Redis 作为持久化镜像，交给 write-behind 合并后批量写入
+            redisWriter.submit(loc.vehicleId, loc.latitude, loc.longitude, loc.speed, loc.timestamp,
+                    loc.status, loc.load);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Failed to handle location of {}", loc.vehicleId, e);
+        }
+    }
+
+    @KafkaListener(topics = "logistics-data", groupId = "logistics-group")
+    public void onLogisticsData(ConsumerRecord<String, String> record) {
+        long start = System.nanoTime();
+        try {
+            handleLogistics(record);
+        } finally {
+            logisticsTopic.record(record, start);
         }
     }
-} 
 
+    private void handleLogistics(ConsumerRecord<String, String> record) {
+        try {
+            Map<String, Object> data = MAPPER.readValue(record.value(), Map.class);
+            Object ts = data.get("timestamp");
+            long seconds = ts instanceof Number n ? n.longValue() : System.currentTimeMillis() / 1000;
+            // 订单按分钟、状态增量汇总，并累加到时间/省份立方体
+            String status = (String) data.get("status");
+            rollupStore.record(seconds, status);
+            Object temperature = data.get("temperature");
+            orderCube.record(seconds, (String) data.get("province"), status,
+                    temperature instanceof Number n ? n.doubleValue() : null);
+            resultCache.touch(ResultCache.Domain.ORDERS, seconds);
+        } catch (Exception e) {
+            log.error("Failed to handle logistics record at {}-{}@{}", record.topic(), record.partition(),
+                    record.offset(), e);
+        }
+    }
+}
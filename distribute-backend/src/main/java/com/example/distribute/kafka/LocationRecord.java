@@ -0,0 +1,37 @@
+package com.example.distribute.kafka;
+
+/**
+ * vehicle-location 消息的解码结果，由同一消费线程反复填充复用；
+ * raw 为 Kafka 中的原始字节，转发给 WebSocket 客户端时不再重新编码
+ */
+final class LocationRecord {
+
+    byte[] raw;
+    String vehicleId;
+    double latitude;
+    double longitude;
+    double speed;
+    double timestamp;
+    String status;
+    // 缺失时为 -1
+    int load;
+
+    void reset(byte[] raw) {
+        this.raw = raw;
+        vehicleId = null;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        speed = Double.NaN;
+        timestamp = Double.NaN;
+        status = null;
+        load = -1;
+    }
+
+    /**
+     * 推送与状态更新所需的字段齐全
+     */
+    boolean isValid() {
+        return vehicleId != null && !Double.isNaN(latitude) && !Double.isNaN(longitude)
+                && !Double.isNaN(speed) && !Double.isNaN(timestamp);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.distribute.kafka;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.io.NumberInput;
+
+import java.io.IOException;
+
+/**
+ * 以流式解析器直接从 Kafka 记录的字节解码位置和告警消息，填入调用方复用的记录对象。
+ * 使用一个长期存在的非阻塞解析器，每条记录的字节依次喂入，作为连续的根级 JSON 值解析，不必为每条记录新建解析器；
+ * 字段名由解析器的符号表规范化，字符串值经 {@link StringPool} 复用，数字直接从解析器的字符缓冲区转换，
+ * 稳态下每条记录几乎不分配对象。记录不完整或格式错误时丢弃解析器，下一条重新创建。
+ * 非线程安全，每个消费线程一份。
+ */
+final class RecordDecoder {
+
+    // JsonFactory 线程安全，配置好后全局共享
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .build();
+
+    private final StringPool strings = new StringPool(16384);
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+
+    /**
+     * 空消息、解析失败或不是 JSON 对象时返回 false；字段是否齐全由 {@link LocationRecord#isValid()} 判断
+     */
+    boolean decode(byte[] bytes, LocationRecord r) {
+        r.reset(bytes);
+        if (bytes == null) {
+            return false;
+        }
+        try {
+            JsonParser p = begin(bytes);
+            if (p == null) {
+                return false;
+            }
+            String name;
+            while ((name = p.nextFieldName()) != null) {
+                JsonToken t = p.nextToken();
+                switch (name) {
+                    case "vehicle_id" -> r.vehicleId = text(p, t);
+                    case "latitude" -> r.latitude = number(p, t);
+                    case "longitude" -> r.longitude = number(p, t);
+                    case "speed" -> r.speed = number(p, t);
+                    case "timestamp" -> r.timestamp = number(p, t);
+                    case "status" -> r.status = text(p, t);
+                    case "load" -> {
+                        double load = number(p, t);
+                        r.load = Double.isNaN(load) ? -1 : (int) load;
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            return end(p);
+        } catch (IOException | NumberFormatException e) {
+            discard();
+            return false;
+        }
+    }
+
+    /**
+     * withDetails 为 false 时不解码详情文本
+     */
+    boolean decode(byte[] bytes, AlertRecord r, boolean withDetails) {
+        r.reset(bytes);
+        if (bytes == null) {
+            return false;
+        }
+        try {
+            JsonParser p = begin(bytes);
+            if (p == null) {
+                return false;
+            }
+            String name;
+            while ((name = p.nextFieldName()) != null) {
+                JsonToken t = p.nextToken();
+                switch (name) {
+                    case "vehicle_id" -> r.vehicleId = orElse(text(p, t), r.vehicleId);
+                    case "device_id" -> r.vehicleId = orElse(r.vehicleId, text(p, t));
+                    case "alert_type" -> r.alertType = orElse(text(p, t), r.alertType);
+                    case "type" -> r.alertType = orElse(r.alertType, text(p, t));
+                    case "severity" -> r.severity = text(p, t);
+                    case "timestamp" -> r.timestamp = number(p, t);
+                    case "details", "detail" -> {
+                        if (!withDetails) {
+                            p.skipChildren();
+                        } else if ("details".equals(name)) {
+                            r.details = orElse(plainText(p, t), r.details);
+                        } else {
+                            r.details = orElse(r.details, plainText(p, t));
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            r.parsed = end(p);
+            return r.parsed;
+        } catch (IOException | NumberFormatException e) {
+            discard();
+            return false;
+        }
+    }
+
+    /**
+     * 喂入一条记录并读到对象起始；不是 JSON 对象时丢弃解析器并返回 null
+     */
+    private JsonParser begin(byte[] bytes) throws IOException {
+        if (parser == null) {
+            parser = JSON.createNonBlockingByteArrayParser();
+            feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+        feeder.feedInput(bytes, 0, bytes.length);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            discard();
+            return null;
+        }
+        return parser;
+    }
+
+    /**
+     * 对象必须在本条记录内完整结束，且其后没有其他内容，否则下一条记录会接在残留的输入之后，需要丢弃解析器
+     */
+    private boolean end(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.END_OBJECT) {
+            discard();
+            return false;
+        }
+        try {
+            if (p.nextToken() != JsonToken.NOT_AVAILABLE) {
+                discard();
+            }
+        } catch (IOException e) {
+            // 对象之后的多余内容不影响本条记录
+            discard();
+        }
+        return true;
+    }
+
+    private void discard() {
+        if (parser != null) {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+            }
+            parser = null;
+            feeder = null;
+        }
+    }
+
+    private static String orElse(String preferred, String fallback) {
+        return preferred != null ? preferred : fallback;
+    }
+
+    /**
+     * 取值有限的字符串字段，经缓存复用；非字符串值视为缺失
+     */
+    private String text(JsonParser p, JsonToken t) throws IOException {
+        if (t != JsonToken.VALUE_STRING) {
+            p.skipChildren();
+            return null;
+        }
+        return strings.get(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+    }
+
+    /**
+     * 每条都不同的文本（如告警详情），不进缓存；非字符串值按其文本表示
+     */
+    private static String plainText(JsonParser p, JsonToken t) throws IOException {
+        if (t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        return p.getText();
+    }
+
+    /**
+     * 非数字值视为缺失，返回 NaN
+     */
+    private static double number(JsonParser p, JsonToken t) throws IOException {
+        if (t != JsonToken.VALUE_NUMBER_FLOAT && t != JsonToken.VALUE_NUMBER_INT) {
+            p.skipChildren();
+            return Double.NaN;
+        }
+        return NumberInput.parseDouble(p.getTextCharacters(), p.getTextOffset(), p.getTextLength(), true);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.distribute.kafka;
+
+/**
+ * 直接映射的字符串缓存：车辆 ID、状态、告警级别这类取值有限的字段，
+ * 按字符内容查表复用已有的 String，命中时不分配对象；槽位冲突时新值覆盖旧值。
+ * 非线程安全，每个解码器一份。
+ */
+final class StringPool {
+
+    private final String[] table;
+    private final int mask;
+
+    StringPool(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        table = new String[size];
+        mask = size - 1;
+    }
+
+    String get(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[offset + i];
+        }
+        int slot = (h ^ (h >>> 16)) & mask;
+        String s = table[slot];
+        if (s != null && matches(s, chars, offset, length)) {
+            return s;
+        }
+        s = new String(chars, offset, length);
+        table[slot] = s;
+        return s;
+    }
+
+    private static boolean matches(String s, char[] chars, int offset, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
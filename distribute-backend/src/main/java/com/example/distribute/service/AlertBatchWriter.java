@@ -0,0 +1,331 @@
+package com.example.distribute.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 告警批量写入。REST 和 Kafka 两条路径都只把告警放进有界队列，
+ * 由单个写线程攒够 batch-size 条或等满 linger-ms 后，用一次 JDBC 批量插入、一个事务写入 alarm_log。
+ * 队列满时 offer 在超时后拒绝、put 阻塞调用方，以此向上游施加背压；关闭时写完队列中剩余的告警。
+ * Kafka 告警带上 {topic}-{partition}@{offset} 作为 source_key，唯一索引上重复的行被忽略，批次重投不会重复插入。
+ * 连接中断等暂时性错误整批退避重试；约束冲突等数据错误不重试，改为逐行插入，只拒绝出错的那一行。
+ */
+@Component
+public class AlertBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertBatchWriter.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO alarm_log(vehicle_id,type,severity,timestamp,detail,status,source_key) " +
+                    "VALUES(?,?,?,FROM_UNIXTIME(?),?,?,?) ON DUPLICATE KEY UPDATE alarm_id = alarm_id";
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 队列元素：一条告警的插入参数，或者一个屏障（args 为 null）。
+     * owner 为随后会等待屏障的入队线程，其余为 null；Kafka 消费线程的屏障只关心自己入队的告警
+     */
+    private record Entry(Object[] args, Thread owner, CompletableFuture<Void> barrier) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ResultCache resultCache;
+    private final LatencyHistogram insertTime;
+    private final int batchSize;
+    private final long lingerMs;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // 自上次屏障以来有告警被丢弃或拒绝的入队线程及最后一次写入失败的原因，只记录会等待屏障的线程，只在写线程中访问
+    private final Map<Thread, RuntimeException> droppedOwners = new HashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastBatchMicros;
+    private volatile long maxBatchMicros;
+
+    public AlertBatchWriter(JdbcTemplate jdbc, PlatformTransactionManager transactionManager, ResultCache resultCache,
+                            MetricsRegistry metrics,
+                            @Value("${alerts.writer.queue-capacity:10000}") int queueCapacity,
+                            @Value("${alerts.writer.batch-size:500}") int batchSize,
+                            @Value("${alerts.writer.linger-ms:100}") long lingerMs) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.resultCache = resultCache;
+        this.insertTime = metrics.jdbcTimer("alerts_insert_batch");
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::runLoop, "alert-batch-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 队列满时最多等待 timeoutMs，仍放不进去返回 false
+     */
+    public boolean offer(Map<String, Object> alert, long timeoutMs) throws InterruptedException {
+        if (queue.offer(new Entry(toRow(alert), null, null), timeoutMs, TimeUnit.MILLISECONDS)) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 队列满时阻塞到有空位，用于 Kafka 消费线程，让消费速度跟随数据库写入速度
+     */
+    public void put(Map<String, Object> alert) throws InterruptedException {
+        queue.put(new Entry(toRow(alert), null, null));
+        accepted.incrementAndGet();
+    }
+
+    /**
+     * 已解码的 Kafka 告警直接入队，语义同 {@link #put(Map)}；timestamp 缺失时传 NaN，
+     * sourceKey 为消息位置，同一位置只插入一次。awaited 表示当前线程随后会调用 {@link #barrier()} 等待提交
+     */
+    public void put(String vehicleId, String type, String severity, double timestamp, String details,
+                    String sourceKey, boolean awaited) throws InterruptedException {
+        Object[] args = row(vehicleId, type, severity, Double.isNaN(timestamp) ? null : timestamp, details);
+        args[6] = sourceKey;
+        queue.put(new Entry(args, awaited ? Thread.currentThread() : null, null));
+        accepted.incrementAndGet();
+    }
+
+    /**
+     * 在队列末尾放入屏障，当前线程此前以 awaited 入队的告警全部处理后完成；其中有告警在重试后仍被丢弃，
+     * 或因数据错误被拒绝时，以最后一次写入的异常完成。
+     * 其他线程的告警被丢弃不影响本线程的屏障。队列满时阻塞
+     */
+    public CompletableFuture<Void> barrier() throws InterruptedException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.put(new Entry(null, Thread.currentThread(), done));
+        return done;
+    }
+
+    /**
+     * 转成插入参数；车辆、类型、级别缺失的告警直接拒绝，避免一条坏数据让整批事务回滚。
+     * 兼容 REST 的 vehicle_id 和 Kafka 消息里的 device_id，时间戳缺失时取当前时间（秒）
+     */
+    static Object[] toRow(Map<String, Object> alert) {
+        Object vehicleId = alert.get("vehicle_id") != null ? alert.get("vehicle_id") : alert.get("device_id");
+        Object type = alert.get("alert_type") != null ? alert.get("alert_type") : alert.get("type");
+        Object details = alert.get("details") != null ? alert.get("details") : alert.get("detail");
+        return row(vehicleId, type, alert.get("severity"), alert.get("timestamp"), details);
+    }
+
+    private static Object[] row(Object vehicleId, Object type, Object severity, Object ts, Object details) {
+        if (vehicleId == null || type == null || severity == null) {
+            throw new IllegalArgumentException("alert requires vehicle_id/device_id, alert_type and severity");
+        }
+        if (!(ts instanceof Number)) {
+            ts = System.currentTimeMillis() / 1000.0;
+        }
+        return new Object[]{vehicleId.toString(), type.toString(), severity.toString(), ts,
+                details != null ? details.toString() : null, "NEW", null};
+    }
+
+    private void runLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 第一条到达后最多再等 linger-ms 凑批
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) {
+                        break;
+                    }
+                    Entry next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断，继续循环把队列写完
+            }
+            if (!batch.isEmpty()) {
+                List<Entry> barriers = new ArrayList<>();
+                List<Entry> rows = new ArrayList<>(batch.size());
+                for (Entry e : batch) {
+                    if (e.barrier() != null) {
+                        barriers.add(e);
+                    } else {
+                        rows.add(e);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    writeBatch(rows);
+                }
+                // 屏障之后同批的告警也一起写入，只会让屏障稍晚完成；该线程上个屏障以来有丢弃则屏障异常完成
+                for (Entry b : barriers) {
+                    RuntimeException cause = droppedOwners.remove(b.owner());
+                    if (cause != null) {
+                        b.barrier().completeExceptionally(cause);
+                    } else {
+                        b.barrier().complete(null);
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 一个事务写入整批；暂时性错误退避重试，仍失败时整批丢弃。数据错误不重试，事务回滚后逐行插入
+     */
+    private void writeBatch(List<Entry> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Entry e : batch) {
+            rows.add(e.args());
+        }
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                tx.executeWithoutResult(status -> jdbc.batchUpdate(INSERT_SQL, rows));
+                long nanos = System.nanoTime() - start;
+                insertTime.recordNanos(nanos);
+                long micros = nanos / 1000;
+                lastBatchSize = rows.size();
+                lastBatchMicros = micros;
+                if (micros > maxBatchMicros) {
+                    maxBatchMicros = micros;
+                }
+                batches.incrementAndGet();
+                written.addAndGet(rows.size());
+                // 提交后才让缓存失效，避免失效后立刻重算的查询读到提交前的数据
+                for (Object[] row : rows) {
+                    resultCache.touch(ResultCache.Domain.ALERTS, ((Number) row[3]).longValue());
+                }
+                return;
+            } catch (RuntimeException e) {
+                failedBatches.incrementAndGet();
+                if (isDataError(e)) {
+                    for (Entry row : batch) {
+                        writeRow(row);
+                    }
+                    return;
+                }
+                if (attempt >= MAX_ATTEMPTS || !backoff(attempt)) {
+                    dropped.addAndGet(rows.size());
+                    log.error("Alert batch of {} dropped after {} attempts", rows.size(), attempt, e);
+                    for (Entry row : batch) {
+                        fail(row, e);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 单行插入：数据错误直接拒绝，暂时性错误同样退避重试
+     */
+    private void writeRow(Entry entry) {
+        Object[] row = entry.args();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbc.update(INSERT_SQL, row);
+                written.incrementAndGet();
+                resultCache.touch(ResultCache.Domain.ALERTS, ((Number) row[3]).longValue());
+                return;
+            } catch (RuntimeException e) {
+                if (isDataError(e)) {
+                    invalid.incrementAndGet();
+                    log.warn("Reject alert of {} at {}: {}", row[0], row[6], e.getMessage());
+                    fail(entry, e);
+                    return;
+                }
+                if (attempt >= MAX_ATTEMPTS || !backoff(attempt)) {
+                    dropped.incrementAndGet();
+                    log.error("Alert of {} dropped after {} attempts", row[0], attempt, e);
+                    fail(entry, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void fail(Entry entry, RuntimeException cause) {
+        if (entry.owner() != null) {
+            droppedOwners.put(entry.owner(), cause);
+        }
+    }
+
+    /**
+     * 约束冲突、数据过长等由行数据本身引起、重试也不会成功的错误；连接类故障仍按暂时性错误重试
+     */
+    private static boolean isDataError(RuntimeException e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException);
+    }
+
+    /**
+     * 退避后返回 true；关闭过程中被中断时恢复中断标记并返回 false，不再重试
+     */
+    private static boolean backoff(int attempt) {
+        try {
+            Thread.sleep(200L << attempt);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("batchSize", batchSize);
+        m.put("lingerMs", lingerMs);
+        m.put("queued", queue.size());
+        m.put("accepted", accepted.get());
+        m.put("rejected", rejected.get());
+        m.put("written", written.get());
+        m.put("dropped", dropped.get());
+        m.put("invalid", invalid.get());
+        m.put("batches", batches.get());
+        m.put("failedBatches", failedBatches.get());
+        m.put("lastBatchSize", lastBatchSize);
+        m.put("lastBatchMicros", lastBatchMicros);
+        m.put("maxBatchMicros", maxBatchMicros);
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+}
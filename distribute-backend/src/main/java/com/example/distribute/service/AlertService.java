@@ -1,30 +1,134 @@
 package com.example.distribute.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class AlertService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private JdbcTemplate jdbc;
+    @Autowired
+    private AlertBatchWriter alertWriter;
+    @Value("${alerts.writer.offer-timeout-ms:1000}")
+    private long offerTimeoutMs;
+    private LatencyHistogram listTime;
+    private LatencyHistogram ackTime;
+
+    @Autowired
+    void registerMetrics(MetricsRegistry metrics) {
+        listTime = metrics.jdbcTimer("alerts_list");
+        ackTime = metrics.jdbcTimer("alerts_ack");
+    }
+
+    /**
+     * 一页告警，nextCursor 为 null 表示没有更多数据
+     */
+    public record AlertPage(List<Map<String, Object>> items, String nextCursor) {
+    }
 
     public List<Map<String,Object>> listAlerts(Long from, Long to) {
-        // 简单示例，按时间范围查询
-        String sql = "SELECT alarm_id, vehicle_id, type, severity, UNIX_TIMESTAMP(timestamp) as ts, detail FROM alarm_log";
-        // TODO: 增加 WHERE
-        return jdbc.queryForList(sql);
+        return listAlerts(from, to, null, null, null, null, null).items();
+    }
+
+    /**
+     * 按时间倒序分页查询告警，游标为上一页最后一条的 "{秒级时间戳}_{alarm_id}"。
+     * 条件只用可走索引的形式（列本身不参与计算），配合 setup/sql/alarm_log.sql 中的
+     * (timestamp, alarm_id) 及 (vehicle_id|severity|status, timestamp, alarm_id) 索引，
+     * 每页只读取 limit+1 行，与表中历史数据量无关。
+     */
+    public AlertPage listAlerts(Long from, Long to, String vehicleId, String severity, String status,
+                                Integer limit, String cursor) {
+        int max = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        StringBuilder sql = new StringBuilder(
+                "SELECT alarm_id, vehicle_id, type, severity, UNIX_TIMESTAMP(timestamp) as ts, detail, status " +
+                "FROM alarm_log WHERE 1=1");
+        List<Object> args = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND timestamp >= FROM_UNIXTIME(?)");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND timestamp <= FROM_UNIXTIME(?)");
+            args.add(to);
+        }
+        if (vehicleId != null && !vehicleId.isEmpty()) {
+            sql.append(" AND vehicle_id = ?");
+            args.add(vehicleId);
+        }
+        if (severity != null && !severity.isEmpty()) {
+            sql.append(" AND severity = ?");
+            args.add(severity);
+        }
+        if (status != null && !status.isEmpty()) {
+            sql.append(" AND status = ?");
+            args.add(status);
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            int sep = cursor.indexOf('_');
+            if (sep <= 0) {
+                throw new IllegalArgumentException("invalid cursor: " + cursor);
+            }
+            long ts;
+            long id;
+            try {
+                ts = Long.parseLong(cursor.substring(0, sep));
+                id = Long.parseLong(cursor.substring(sep + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid cursor: " + cursor);
+            }
+            // MySQL 5.7 的行构造器比较 (a,b) < (?,?) 用不上索引范围，展开成等价的 OR 形式
+            sql.append(" AND (timestamp < FROM_UNIXTIME(?) OR (timestamp = FROM_UNIXTIME(?) AND alarm_id < ?))");
+            args.add(ts);
+            args.add(ts);
+            args.add(id);
+        }
+        sql.append(" ORDER BY timestamp DESC, alarm_id DESC LIMIT ?");
+        // 多取一行用于判断是否还有下一页
+        args.add(max + 1);
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> rows;
+        try {
+            rows = jdbc.queryForList(sql.toString(), args.toArray());
+        } finally {
+            listTime.recordNanos(System.nanoTime() - start);
+        }
+        String next = null;
+        if (rows.size() > max) {
+            rows = rows.subList(0, max);
+            Map<String, Object> last = rows.get(max - 1);
+            next = ((Number) last.get("ts")).longValue() + "_" + last.get("alarm_id");
+        }
+        return new AlertPage(rows, next);
     }
 
-    public void saveAlert(Map<String, Object> alert) {
-        jdbc.update("INSERT INTO alarm_log(vehicle_id,type,severity,timestamp,detail,status) VALUES(?,?,?,FROM_UNIXTIME(?),?,?)",
-                alert.get("vehicle_id"), alert.get("alert_type"), alert.get("severity"), alert.get("timestamp"), alert.get("details"), "NEW");
+    /**
+     * 交给批量写入器异步落库；队列持续满载时返回 false
+     */
+    public boolean saveAlert(Map<String, Object> alert) {
+        try {
+            return alertWriter.offer(alert, offerTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
     public void ackAlert(Long id) {
-        jdbc.update("UPDATE alarm_log SET status='ACK' WHERE id=?", id);
+        long start = System.nanoTime();
+        try {
+            jdbc.update("UPDATE alarm_log SET status='ACK' WHERE alarm_id=?", id);
+        } finally {
+            ackTime.recordNanos(System.nanoTime() - start);
+        }
     }
-}
\ No newline at end of file
+}
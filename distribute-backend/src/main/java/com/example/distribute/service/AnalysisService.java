@@ -3,11 +3,23 @@ package com.example.distribute.service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
 
 
 @Service
@@ -16,61 +28,273 @@ public class AnalysisService {
     private JdbcTemplate jdbc;
     @Autowired
     private MetricsService metricsService;  // 复用已有的方法
+    @Autowired
+    private OrderCube orderCube;
+    @Autowired
+    private OrderTableRouter tableRouter;
+    @Autowired
+    private ResultCache resultCache;
+    @Value("${export.fetch-size:" + Integer.MIN_VALUE + "}")
+    private int exportFetchSize;
 
     public Map<String,Object> getSummary(Long from, Long to) {
         // 直接调用 MetricsService
         return metricsService.computeOverview(from, to);
     }
 
-    public List<Map<String,Object>> getTrends(String metric, String interval, Long from, Long to) {
-        String sql = """
-            SELECT FLOOR(UNIX_TIMESTAMP(timestamp) / 3600) * 3600 AS timeBucket,
-                   AVG(CASE WHEN status!='delayed' THEN 1 ELSE 0 END)*100 AS value
-              FROM order_202506
-             WHERE timestamp BETWEEN FROM_UNIXTIME(?) AND FROM_UNIXTIME(?)
-             GROUP BY timeBucket
-             ORDER BY timeBucket
-        """;
-        return jdbc.queryForList(sql, from, to);
+    /**
+     * source=raw 时绕过预聚合，直接查询原始月表（用于核对或预聚合尚未重建时）
+     */
+    public Map<String,Object> getSummary(Long from, Long to, boolean raw) {
+        return raw ? metricsService.computeOverviewFromOrders(from, to) : getSummary(from, to);
+    }
+
+    public List<Map<String,Object>> getTrends(String metric, String interval, Long from, Long to, boolean raw) {
+        if (!raw) {
+            return getTrends(metric, interval, from, to);
+        }
+        OrderCube.Metric m = OrderCube.Metric.parse(metric);
+        long step = parseInterval(interval);
+        Map<Long, OrderCube.Cell> cells = tableRouter.aggregate(from, to,
+                "SELECT FLOOR(UNIX_TIMESTAMP(event_time) / " + step + ") * " + step + ", status, COUNT(*), " +
+                "COALESCE(SUM(temperature), 0), COUNT(temperature) FROM {table} " +
+                "WHERE event_time BETWEEN FROM_UNIXTIME(?) AND FROM_UNIXTIME(?) GROUP BY 1, 2",
+                new Object[]{from, to},
+                rs -> {
+                    Map<Long, OrderCube.Cell> part = new HashMap<>();
+                    while (rs.next()) {
+                        part.computeIfAbsent(rs.getLong(1), k -> new OrderCube.Cell())
+                                .add(rs.getString(2), rs.getLong(3), rs.getDouble(4), rs.getLong(5));
+                    }
+                    return part;
+                },
+                AnalysisService::mergeCells, new HashMap<>());
+        List<Map<String, Object>> result = new ArrayList<>(cells.size());
+        new TreeMap<>(cells).forEach((bucket, cell) -> result.add(Map.of(
+                "timeBucket", bucket,
+                "value", cell.value(m)
+        )));
+        return result;
+    }
+
+    public List<Map<String,Object>> getRegionData(String metric, Long from, Long to, boolean raw) {
+        if (!raw) {
+            return getRegionData(metric, from, to);
+        }
+        OrderCube.Metric m = OrderCube.Metric.parse(metric);
+        Map<String, OrderCube.Cell> cells = tableRouter.aggregate(from, to,
+                "SELECT COALESCE(province, 'unknown'), status, COUNT(*), COALESCE(SUM(temperature), 0), COUNT(temperature) " +
+                "FROM {table} WHERE event_time BETWEEN FROM_UNIXTIME(?) AND FROM_UNIXTIME(?) GROUP BY 1, 2",
+                new Object[]{from, to},
+                rs -> {
+                    Map<String, OrderCube.Cell> part = new HashMap<>();
+                    while (rs.next()) {
+                        part.computeIfAbsent(rs.getString(1), k -> new OrderCube.Cell())
+                                .add(rs.getString(2), rs.getLong(3), rs.getDouble(4), rs.getLong(5));
+                    }
+                    return part;
+                },
+                AnalysisService::mergeCells, new HashMap<>());
+        List<Map<String, Object>> result = new ArrayList<>(cells.size());
+        cells.forEach((province, cell) -> result.add(Map.of(
+                "region", province,
+                "value", cell.value(m)
+        )));
+        return result;
     }
 
+    /**
+     * 合并各月表的部分结果：计数和温度和直接相加，平均值在最后由和与个数算出
+     */
+    private static <K> Map<K, OrderCube.Cell> mergeCells(Map<K, OrderCube.Cell> a, Map<K, OrderCube.Cell> b) {
+        b.forEach((k, cell) -> a.merge(k, cell, (x, y) -> {
+            x.merge(y);
+            return x;
+        }));
+        return a;
+    }
+
+    /**
+     * interval 支持 minute/hour/day/week、5m/6h/1d 这类写法或秒数，由能整除它的最粗预聚合粒度回答
+     */
+    public List<Map<String,Object>> getTrends(String metric, String interval, Long from, Long to) {
+        OrderCube.Metric m = OrderCube.Metric.parse(metric);
+        long step = parseInterval(interval);
+        return resultCache.get(ResultCache.Domain.ORDERS, "trends:" + m + ":" + step, from, to, (f, t) -> {
+            Map<Long, OrderCube.Cell> cells = orderCube.byTime(f, t, step);
+            List<Map<String, Object>> result = new ArrayList<>(cells.size());
+            new TreeMap<>(cells).forEach((bucket, cell) -> result.add(Map.of(
+                    "timeBucket", bucket,
+                    "value", cell.value(m)
+            )));
+            return result;
+        });
+    }
 
     public List<Map<String,Object>> getRegionData(String metric, Long from, Long to) {
-        // 简单按省份聚合：假设 orders 表有 province 字段
-        String sql = """
-            SELECT province AS region,
-                   AVG(CASE WHEN status!='delayed' THEN 1 ELSE 0 END)*100 AS value
-              FROM order_202506
-             WHERE timestamp BETWEEN FROM_UNIXTIME(?) AND FROM_UNIXTIME(?)
-             GROUP BY province
-        """;
-        return jdbc.queryForList(sql, from, to);
+        OrderCube.Metric m = OrderCube.Metric.parse(metric);
+        return resultCache.get(ResultCache.Domain.ORDERS, "regions:" + m, from, to, (f, t) -> {
+            Map<String, OrderCube.Cell> cells = orderCube.byProvince(f, t);
+            List<Map<String, Object>> result = new ArrayList<>(cells.size());
+            cells.forEach((province, cell) -> result.add(Map.of(
+                    "region", province,
+                    "value", cell.value(m)
+            )));
+            return result;
+        });
+    }
+
+    static long parseInterval(String interval) {
+        String s = interval == null ? "" : interval.trim().toLowerCase(Locale.ROOT);
+        switch (s) {
+            case "", "hour", "hourly" -> {
+                return 3600;
+            }
+            case "minute" -> {
+                return 60;
+            }
+            case "day", "daily" -> {
+                return 86400;
+            }
+            case "week", "weekly" -> {
+                return 7 * 86400;
+            }
+            default -> {
+            }
+        }
+        try {
+            char unit = s.charAt(s.length() - 1);
+            if (Character.isDigit(unit)) {
+                return Long.parseLong(s);
+            }
+            long n = Long.parseLong(s.substring(0, s.length() - 1));
+            return switch (unit) {
+                case 'm' -> n * 60;
+                case 'h' -> n * 3600;
+                case 'd' -> n * 86400;
+                case 'w' -> n * 7 * 86400;
+                default -> throw new IllegalArgumentException("unknown interval: " + interval);
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("unknown interval: " + interval);
+        }
     }
 
-    public byte[] export(String format, String type, Long from, Long to) {
-        // 简单 CSV 导出
-        List<Map<String,Object>> data;
-        if ("summary".equals(type)) {
-            data = List.of(getSummary(from, to));
+    /**
+     * 流式导出：结果逐行写入 out，不在内存中拼出完整文件。
+     * type 为 summary/trends/regions/orders，orders 直接从原始月表以只进游标读取；
+     * format 为 csv 或 bin（见 ColumnarExportWriter），gzip 为 true 时整体压缩
+     */
+    public void export(String format, String type, String metric, Long from, Long to, boolean gzip,
+                       OutputStream out) throws IOException {
+        GZIPOutputStream zip = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+        ExportWriter writer = ExportWriter.of(format, zip != null ? zip : out);
+        if ("orders".equals(type)) {
+            exportOrders(from, to, writer);
+        } else if ("summary".equals(type)) {
+            writeMaps(List.of(getSummary(from, to)), writer);
         } else if ("trends".equals(type)) {
-            data = getTrends(type, "hour", from, to);
+            writeMaps(getTrends(metric, "hour", from, to), writer);
         } else {
-            data = getRegionData(type, from, to);
+            writeMaps(getRegionData(metric, from, to), writer);
+        }
+        writer.finish();
+        if (zip != null) {
+            zip.finish();
+        }
+        out.flush();
+    }
+
+    /**
+     * 下载文件名，同时校验 format
+     */
+    public static String exportFileName(String format, String type, boolean gzip) {
+        ExportWriter.of(format, OutputStream.nullOutputStream());
+        return (type == null ? "export" : type) + "." + ExportWriter.extension(format) + (gzip ? ".gz" : "");
+    }
+
+    private static void writeMaps(List<Map<String, Object>> data, ExportWriter writer) throws IOException {
+        if (data.isEmpty()) {
+            writer.header(new String[0], new byte[0]);
+            return;
         }
-        // 拼 CSV
-        StringBuilder sb = new StringBuilder();
-        if (!data.isEmpty()) {
-            // header
-            data.get(0).keySet().forEach(k -> sb.append(k).append(","));
-            sb.setLength(sb.length()-1);
-            sb.append("\n");
-            // rows
-            for (var row : data) {
-                row.values().forEach(v -> sb.append(v).append(","));
-                sb.setLength(sb.length()-1);
-                sb.append("\n");
+        String[] columns = data.get(0).keySet().toArray(new String[0]);
+        byte[] types = new byte[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Object v = data.get(0).get(columns[i]);
+            types[i] = v instanceof Long || v instanceof Integer ? ExportWriter.LONG
+                    : v instanceof Number ? ExportWriter.DOUBLE : ExportWriter.STRING;
+        }
+        writer.header(columns, types);
+        Object[] row = new Object[columns.length];
+        for (Map<String, Object> m : data) {
+            for (int i = 0; i < columns.length; i++) {
+                row[i] = m.get(columns[i]);
+            }
+            writer.row(row);
+        }
+    }
+
+    private static final String[] ORDER_COLUMNS = {
+            "order_id", "user_id", "vehicle_id", "start_time", "end_time", "status", "temperature", "humidity", "event_time"};
+    private static final byte[] ORDER_TYPES = {
+            ExportWriter.STRING, ExportWriter.STRING, ExportWriter.STRING, ExportWriter.TIME, ExportWriter.TIME,
+            ExportWriter.STRING, ExportWriter.DOUBLE, ExportWriter.DOUBLE, ExportWriter.TIME};
+
+    /**
+     * 逐张月表用只进、只读游标流式读取（MySQL 驱动下 fetch size 为 Integer.MIN_VALUE 即逐行流式），
+     * 每行复用同一个数组写出。写出失败（客户端断开）时先取消查询，避免关闭结果集时驱动把剩余的行全部读完
+     */
+    private void exportOrders(long from, long to, ExportWriter writer) throws IOException {
+        writer.header(ORDER_COLUMNS, ORDER_TYPES);
+        Object[] row = new Object[ORDER_COLUMNS.length];
+        try {
+            for (String table : tableRouter.tablesFor(from, to)) {
+                String sql = "SELECT order_id, user_id, vehicle_id, UNIX_TIMESTAMP(start_time), UNIX_TIMESTAMP(end_time), " +
+                        "status, temperature, humidity, UNIX_TIMESTAMP(event_time) FROM " + table +
+                        " WHERE event_time BETWEEN FROM_UNIXTIME(?) AND FROM_UNIXTIME(?) ORDER BY event_time";
+                jdbc.execute((Connection con) -> {
+                    PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(exportFetchSize);
+                    return ps;
+                }, (PreparedStatement ps) -> {
+                    ps.setLong(1, from);
+                    ps.setLong(2, to);
+                    ResultSet rs = ps.executeQuery();
+                    try {
+                        while (rs.next()) {
+                            row[0] = rs.getString(1);
+                            row[1] = rs.getString(2);
+                            row[2] = rs.getString(3);
+                            row[3] = nullableLong(rs, 4);
+                            row[4] = nullableLong(rs, 5);
+                            row[5] = rs.getString(6);
+                            row[6] = nullableDouble(rs, 7);
+                            row[7] = nullableDouble(rs, 8);
+                            row[8] = nullableLong(rs, 9);
+                            writer.row(row);
+                        }
+                    } catch (IOException e) {
+                        ps.cancel();
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        rs.close();
+                    }
+                    return null;
+                });
             }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Long nullableLong(ResultSet rs, int i) throws SQLException {
+        long v = rs.getLong(i);
+        return rs.wasNull() ? null : v;
+    }
+
+    private static Double nullableDouble(ResultSet rs, int i) throws SQLException {
+        double v = rs.getDouble(i);
+        return rs.wasNull() ? null : v;
     }
 }
@@ -0,0 +1,135 @@
+package com.example.distribute.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 紧凑的列式二进制导出，按行组（默认 4096 行）缓冲后逐列写出。
+ *
+ * 格式（多字节整数均为大端）：
+ *   "DLX1" 列数(varint) 每列[名称长度(varint) UTF-8 名称 类型(1 字节 L/D/T/S)]
+ *   行组*：行数(varint) 每列[非空位图(ceil(行数/8) 字节) 非空值...]
+ *   结束：行数 0
+ * L/T 列为与上一个非空值之差的 zigzag varint，D 列为 8 字节 IEEE 754，S 列为长度(varint) + UTF-8。
+ */
+class ColumnarExportWriter implements ExportWriter {
+
+    static final int ROW_GROUP = 4096;
+    private static final byte[] MAGIC = {'D', 'L', 'X', '1'};
+
+    private final DataOutputStream out;
+    private byte[] types;
+    private int columns;
+    private int rows;
+
+    // 每列一份行组缓冲，按类型只使用其中之一
+    private long[][] longs;
+    private double[][] doubles;
+    private String[][] strings;
+    private boolean[][] present;
+
+    ColumnarExportWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+    }
+
+    @Override
+    public void header(String[] names, byte[] types) throws IOException {
+        this.types = types.clone();
+        this.columns = names.length;
+        longs = new long[columns][];
+        doubles = new double[columns][];
+        strings = new String[columns][];
+        present = new boolean[columns][ROW_GROUP];
+        out.write(MAGIC);
+        writeVarint(columns);
+        for (int c = 0; c < columns; c++) {
+            byte[] name = names[c].getBytes(StandardCharsets.UTF_8);
+            writeVarint(name.length);
+            out.write(name);
+            out.write(types[c]);
+            switch (types[c]) {
+                case LONG, TIME -> longs[c] = new long[ROW_GROUP];
+                case DOUBLE -> doubles[c] = new double[ROW_GROUP];
+                default -> strings[c] = new String[ROW_GROUP];
+            }
+        }
+    }
+
+    @Override
+    public void row(Object[] values) throws IOException {
+        for (int c = 0; c < columns; c++) {
+            Object v = values[c];
+            present[c][rows] = v != null;
+            if (v == null) {
+                continue;
+            }
+            switch (types[c]) {
+                case LONG, TIME -> longs[c][rows] = ((Number) v).longValue();
+                case DOUBLE -> doubles[c][rows] = ((Number) v).doubleValue();
+                default -> strings[c][rows] = v.toString();
+            }
+        }
+        if (++rows == ROW_GROUP) {
+            flushGroup();
+        }
+    }
+
+    private void flushGroup() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        writeVarint(rows);
+        byte[] bitmap = new byte[(rows + 7) >>> 3];
+        for (int c = 0; c < columns; c++) {
+            Arrays.fill(bitmap, (byte) 0);
+            boolean[] p = present[c];
+            for (int r = 0; r < rows; r++) {
+                if (p[r]) {
+                    bitmap[r >>> 3] |= (byte) (1 << (r & 7));
+                }
+            }
+            out.write(bitmap);
+            long prev = 0;
+            for (int r = 0; r < rows; r++) {
+                if (!p[r]) {
+                    continue;
+                }
+                switch (types[c]) {
+                    case LONG, TIME -> {
+                        long v = longs[c][r];
+                        long d = v - prev;
+                        writeVarint((d << 1) ^ (d >> 63));
+                        prev = v;
+                    }
+                    case DOUBLE -> out.writeDouble(doubles[c][r]);
+                    default -> {
+                        byte[] b = strings[c][r].getBytes(StandardCharsets.UTF_8);
+                        writeVarint(b.length);
+                        out.write(b);
+                        strings[c][r] = null;
+                    }
+                }
+            }
+        }
+        rows = 0;
+    }
+
+    private void writeVarint(long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        flushGroup();
+        writeVarint(0);
+        out.flush();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.distribute.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * 导出格式的逐行写出接口，实现只持有固定大小的缓冲，内存占用与导出行数无关
+ */
+interface ExportWriter {
+
+    /** 列类型：整数、浮点、秒级时间戳、字符串 */
+    byte LONG = 'L';
+    byte DOUBLE = 'D';
+    byte TIME = 'T';
+    byte STRING = 'S';
+
+    void header(String[] columns, byte[] types) throws IOException;
+
+    /**
+     * values 的元素按列类型分别为 Number / Number / Number(秒) / Object(toString)，可为 null；调用方可复用该数组
+     */
+    void row(Object[] values) throws IOException;
+
+    void finish() throws IOException;
+
+    static ExportWriter of(String format, OutputStream out) {
+        String f = format == null ? "csv" : format.toLowerCase(Locale.ROOT);
+        return switch (f) {
+            case "csv" -> new CsvExportWriter(out);
+            case "bin", "binary", "columnar" -> new ColumnarExportWriter(out);
+            default -> throw new IllegalArgumentException("unknown export format: " + format);
+        };
+    }
+
+    static String extension(String format) {
+        return format == null || "csv".equalsIgnoreCase(format) ? "csv" : "bin";
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.distribute.service;
 
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import redis.clients.jedis.JedisPool;
@@ -7,87 +8,196 @@ import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.DescribeClusterOptions;
 
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 依赖健康检查。每个依赖由专用调度线程按 interval-ms 周期探测，复用长连接的客户端（Jedis 连接池、HBase 连接、
+ * 一个 Kafka AdminClient、一个 HttpClient），结果汇总成不可变快照，/health 直接返回快照而不触发任何探测。
+ * 每个依赖记录探测耗时直方图和最近的状态变化。
+ */
 @Service
 public class HealthService {
+
+    /**
+     * 单个依赖的状态变化
+     */
+    public record Transition(long at, String from, String to) {
+    }
+
     private final JedisPool jedisPool;
     private final Connection hbaseConn;
-    private final String bootstrapServers;
-    @Value("${spark.master.url:http://localhost:4040}")
-    private String sparkMasterUrl;
+    private final AdminClient kafkaAdmin;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final URI sparkUri;
+    private final long timeoutMs;
+    private final int historySize;
+
+    private final Map<String, Probe> probes = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    // 整体替换，读取方无需加锁
+    private volatile Map<String, String> snapshot;
 
     public HealthService(JedisPool jedisPool,
                          Connection hbaseConn,
-                         @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
+                         @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                         @Value("${spark.master.url:http://localhost:4040}") String sparkMasterUrl,
+                         @Value("${health.probe.interval-ms:5000}") long intervalMs,
+                         @Value("${health.probe.timeout-ms:5000}") long timeoutMs,
+                         @Value("${health.probe.history:50}") int historySize) {
         this.jedisPool = jedisPool;
         this.hbaseConn = hbaseConn;
-        this.bootstrapServers = bootstrapServers;
+        this.sparkUri = URI.create(sparkMasterUrl + "/api/v1/applications");
+        this.timeoutMs = timeoutMs;
+        this.historySize = historySize;
+        Map<String, Object> props = new HashMap<>();
+        props.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) timeoutMs);
+        props.put(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, (int) timeoutMs);
+        this.kafkaAdmin = AdminClient.create(props);
+
+        probes.put("redis", new Probe(this::checkRedis));
+        probes.put("hbase", new Probe(this::checkHBase));
+        probes.put("kafka", new Probe(this::checkKafka));
+        probes.put("spark", new Probe(this::checkSpark));
+        publish();
+
+        // 每个依赖一个线程，某个依赖卡住不会拖慢其它依赖的探测
+        AtomicInteger seq = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(probes.size(), r -> {
+            Thread t = new Thread(r, "health-probe-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (Probe probe : probes.values()) {
+            scheduler.scheduleWithFixedDelay(probe::run, 0, intervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
+    /**
+     * 最近一次探测结果，启动后首轮探测完成前为 UNKNOWN
+     */
     public Map<String, String> checkAll() {
-        Map<String, String> status = new HashMap<>();
-        
-        // 使用统一的CompletableFuture模式实现所有服务的健康检查
-        CompletableFuture<Void> redisCheck = CompletableFuture.runAsync(() -> {
-            try (var jedis = jedisPool.getResource()) {
-                status.put("redis", jedis.ping().equals("PONG") ? "UP" : "DOWN");
-            } catch (Exception e) {
-                status.put("redis", "DOWN: " + e.getMessage());
-            }
-        });
-        
-        CompletableFuture<Void> hbaseCheck = CompletableFuture.runAsync(() -> {
-            try (var admin = hbaseConn.getAdmin()) {
-                boolean ok = admin.tableExists(TableName.valueOf("vehicle_tracking"));
-                status.put("hbase", ok ? "UP" : "DOWN (table not found)");
-            } catch (Exception e) {
-                status.put("hbase", "DOWN: Connection refused");
-            }
-        });
-        
-        CompletableFuture<Void> kafkaCheck = CompletableFuture.runAsync(() -> {
-            Map<String, Object> props = new HashMap<>();
-            props.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-            try (AdminClient client = AdminClient.create(props)) {
-                var controller = client.describeCluster().controller().get(5, TimeUnit.SECONDS);
-                status.put("kafka", controller != null ? "UP" : "DOWN (controller not found)");
-            } catch (Exception e) {
-                status.put("kafka", "DOWN: " + e.getMessage());
-            }
-        });
-        
-        CompletableFuture<Void> sparkCheck = CompletableFuture.runAsync(() -> {
-        	HttpURLConnection connection = null;
+        return snapshot;
+    }
+
+    /**
+     * 每个依赖的当前状态、上次探测时间、耗时直方图和状态变化历史
+     */
+    public Map<String, Object> details() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        probes.forEach((name, probe) -> m.put(name, probe.details()));
+        return m;
+    }
+
+    private String checkRedis() {
+        try (var jedis = jedisPool.getResource()) {
+            return jedis.ping().equals("PONG") ? "UP" : "DOWN";
+        }
+    }
+
+    private String checkHBase() {
+        try (var admin = hbaseConn.getAdmin()) {
+            boolean ok = admin.tableExists(TableName.valueOf("vehicle_tracking"));
+            return ok ? "UP" : "DOWN (table not found)";
+        } catch (Exception e) {
+            return "DOWN: Connection refused";
+        }
+    }
+
+    private String checkKafka() throws Exception {
+        var controller = kafkaAdmin.describeCluster(new DescribeClusterOptions().timeoutMs((int) timeoutMs))
+                .controller().get(timeoutMs, TimeUnit.MILLISECONDS);
+        return controller != null ? "UP" : "DOWN (controller not found)";
+    }
+
+    private String checkSpark() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(sparkUri)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+        int responseCode = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        return responseCode == 200 ? "UP" : "DOWN (HTTP " + responseCode + ")";
+    }
+
+    /**
+     * 由各探测线程在状态变化时调用，重新生成快照
+     */
+    private synchronized void publish() {
+        Map<String, String> m = new LinkedHashMap<>();
+        probes.forEach((name, probe) -> m.put(name, probe.status));
+        snapshot = Map.copyOf(m);
+    }
+
+    private final class Probe {
+        private final Callable<String> check;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final ArrayDeque<Transition> history = new ArrayDeque<>();
+        private volatile String status = "UNKNOWN";
+        private volatile long checkedAt;
+
+        Probe(Callable<String> check) {
+            this.check = check;
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            String result;
             try {
-                String apiUrl = sparkMasterUrl + "/api/v1/applications";
-                URL url = new URL(apiUrl);
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(5000);
-                connection.setReadTimeout(5000);
-                
-                int responseCode = connection.getResponseCode();
-                status.put("spark", responseCode == HttpURLConnection.HTTP_OK ? "UP" : "DOWN (HTTP " + responseCode + ")");
+                result = check.call();
             } catch (Exception e) {
-                status.put("spark", "DOWN: " + e.getMessage());
-            } finally {
-                if (connection != null) {
-                    connection.disconnect(); // 手动关闭连接
+                result = "DOWN: " + e.getMessage();
+            }
+            latency.recordNanos(System.nanoTime() - start);
+            checkedAt = System.currentTimeMillis();
+            String previous = status;
+            if (!result.equals(previous)) {
+                synchronized (history) {
+                    if (history.size() == historySize) {
+                        history.removeFirst();
+                    }
+                    history.addLast(new Transition(checkedAt, previous, result));
                 }
+                status = result;
+                publish();
             }
-        });
-        
-        // 等待所有检查完成
-        CompletableFuture.allOf(redisCheck, hbaseCheck, kafkaCheck, sparkCheck).join();
-        
-        return status;
+        }
+
+        Map<String, Object> details() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("status", status);
+            m.put("checkedAt", checkedAt);
+            m.put("latency", latency.stats());
+            List<Transition> h;
+            synchronized (history) {
+                h = new ArrayList<>(history);
+            }
+            m.put("history", h);
+            return m;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        kafkaAdmin.close(Duration.ofSeconds(1));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package com.example.distribute.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 热力图多分辨率瓦片金字塔，在位置消息到达时增量维护。
+ * 每 5 分钟一个时间桶，每个桶内按 0.1°/0.01°/0.001° 三级网格分别计数，
+ * 网格 ID 为 (latIdx << 32 | lonIdx) 的 long，查询时只需合并窗口内的若干个桶。
+ * 0.001° 网格数随车辆分布几乎线性增长，单独使用较短的保留时长；任一级网格在一个桶内超过上限时丢弃该桶该级的瓦片，
+ * 查询时这个桶退回扫描索引表。
+ */
+@Component
+public class HeatmapTileStore {
+
+    // 各级网格的放大倍数，网格边长 = 1 / scale 度
+    public static final int[] SCALES = {10, 100, 1000};
+    public static final long BUCKET_SECONDS = 300;
+
+    // 各级网格的保留时长（秒），桶按其中最长的整体淘汰
+    private final long[] retentionSeconds;
+    private final long maxRetentionSeconds;
+    private final int maxCellsPerBucket;
+    // 某级瓦片为 null 表示该桶该级已超过上限或已过期
+    private final ConcurrentSkipListMap<Long, LongIntHashMap[]> buckets = new ConcurrentSkipListMap<>();
+    // 进程启动后第一个完整的桶，此前的桶计数不完整，不能用于查询
+    private final long coveredSince;
+
+    public HeatmapTileStore(@Value("${heatmap.tiles.retention-hours:24}") long retentionHours,
+                            @Value("${heatmap.tiles.fine-retention-hours:2}") long fineRetentionHours,
+                            @Value("${heatmap.tiles.max-cells-per-bucket:65536}") int maxCellsPerBucket) {
+        this.retentionSeconds = new long[SCALES.length];
+        for (int i = 0; i < SCALES.length; i++) {
+            this.retentionSeconds[i] = retentionHours * 3600;
+        }
+        this.retentionSeconds[SCALES.length - 1] = Math.min(retentionHours, fineRetentionHours) * 3600;
+        this.maxRetentionSeconds = retentionHours * 3600;
+        this.maxCellsPerBucket = maxCellsPerBucket;
+        this.coveredSince = bucketOf(System.currentTimeMillis() / 1000) + BUCKET_SECONDS;
+    }
+
+    public static long bucketOf(long ts) {
+        return Math.floorDiv(ts, BUCKET_SECONDS) * BUCKET_SECONDS;
+    }
+
+    public static long cellId(double lat, double lon, int scale) {
+        long x = (long) Math.floor(lat * scale);
+        long y = (long) Math.floor(lon * scale);
+        return (x << 32) | (y & 0xffffffffL);
+    }
+
+    public static double cellLat(long cellId, int scale) {
+        return (cellId >> 32) / (double) scale;
+    }
+
+    public static double cellLon(long cellId, int scale) {
+        return ((int) cellId) / (double) scale;
+    }
+
+    /**
+     * 地图缩放级别映射到网格级别：省级视野用 0.1°，城市用 0.01°，街道用 0.001°
+     */
+    public static int levelForZoom(Integer zoom) {
+        if (zoom == null) {
+            return 1;
+        }
+        if (zoom <= 8) {
+            return 0;
+        }
+        return zoom <= 12 ? 1 : 2;
+    }
+
+    public void record(long ts, double lat, double lon) {
+        long bucket = bucketOf(ts);
+        long now = System.currentTimeMillis() / 1000;
+        if (bucket < now - maxRetentionSeconds) {
+            return;
+        }
+        LongIntHashMap[] tiles = buckets.get(bucket);
+        if (tiles == null) {
+            tiles = buckets.computeIfAbsent(bucket, b -> {
+                LongIntHashMap[] t = new LongIntHashMap[SCALES.length];
+                for (int i = 0; i < t.length; i++) {
+                    if (b >= now - retentionSeconds[i]) {
+                        t[i] = new LongIntHashMap(64 << (i * 2));
+                    }
+                }
+                return t;
+            });
+            // 新建桶时顺带淘汰过期桶，以及保留时长较短的级别上过期的瓦片
+            buckets.headMap(bucketOf(now - maxRetentionSeconds)).clear();
+            for (int i = 0; i < SCALES.length; i++) {
+                if (retentionSeconds[i] < maxRetentionSeconds) {
+                    for (LongIntHashMap[] t : buckets.headMap(bucketOf(now - retentionSeconds[i])).values()) {
+                        synchronized (t) {
+                            t[i] = null;
+                        }
+                    }
+                }
+            }
+        }
+        synchronized (tiles) {
+            for (int i = 0; i < SCALES.length; i++) {
+                LongIntHashMap tile = tiles[i];
+                if (tile != null) {
+                    tile.addTo(cellId(lat, lon, SCALES[i]), 1);
+                    if (tile.size() > maxCellsPerBucket) {
+                        tiles[i] = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 该级网格可由瓦片回答的时间下界（桶起始秒）
+     */
+    public long coveredFrom(int level) {
+        long now = System.currentTimeMillis() / 1000;
+        return Math.max(coveredSince, bucketOf(now - retentionSeconds[level]) + BUCKET_SECONDS);
+    }
+
+    /**
+     * 将桶起始时间在 [fromBucket, toBucket) 内的瓦片合并到 out，
+     * 返回该级瓦片因超过上限被丢弃的桶，调用方需扫描原始数据补上
+     */
+    List<Long> merge(long fromBucket, long toBucket, int level, LongIntHashMap out) {
+        List<Long> missing = new ArrayList<>();
+        for (Map.Entry<Long, LongIntHashMap[]> e : buckets.subMap(fromBucket, true, toBucket, false).entrySet()) {
+            synchronized (e.getValue()) {
+                LongIntHashMap tile = e.getValue()[level];
+                if (tile != null) {
+                    out.addAll(tile);
+                } else {
+                    missing.add(e.getKey());
+                }
+            }
+        }
+        return missing;
+    }
+
+    public int bucketCount() {
+        return buckets.size();
+    }
+}
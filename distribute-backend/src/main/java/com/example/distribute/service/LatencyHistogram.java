@@ -0,0 +1,92 @@
+package com.example.distribute.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的延迟直方图（毫秒），记录只做一次桶查找和原子加，不分配对象。
+ * 桶上界为 1-2-5 序列，最后一个桶收纳超出上界的值。
+ */
+public class LatencyHistogram {
+
+    static final double[] BOUNDS_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAdder count = new LongAdder();
+
+    public void recordNanos(long nanos) {
+        double ms = nanos / 1_000_000.0;
+        int i = 0;
+        while (i < BOUNDS_MS.length && ms > BOUNDS_MS[i]) {
+            i++;
+        }
+        counts.incrementAndGet(i);
+        sumMicros.add(nanos / 1000);
+        count.increment();
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double sumMillis() {
+        return sumMicros.sum() / 1000.0;
+    }
+
+    /**
+     * 第 i 个桶的上界（毫秒），最后一个桶为正无穷
+     */
+    public static double upperBound(int i) {
+        return i < BOUNDS_MS.length ? BOUNDS_MS[i] : Double.POSITIVE_INFINITY;
+    }
+
+    public static int buckets() {
+        return BOUNDS_MS.length + 1;
+    }
+
+    public long bucketCount(int i) {
+        return counts.get(i);
+    }
+
+    /**
+     * 分位数的桶上界估计；没有样本时为 0
+     */
+    public double percentile(double p) {
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(snapshot.length - 1);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long n = count();
+        m.put("count", n);
+        m.put("avgMs", n == 0 ? 0 : sumMillis() / n);
+        m.put("p50Ms", percentile(0.5));
+        m.put("p99Ms", percentile(0.99));
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < buckets(); i++) {
+            buckets.put(i < BOUNDS_MS.length ? "le" + (long) BOUNDS_MS[i] : "inf", counts.get(i));
+        }
+        m.put("buckets", buckets);
+        return m;
+    }
+}
@@ -1,5 +1,12 @@
 package com.example.distribute.service;
 
+import com.example.distribute.hbase.RegionScanExecutor;
+import com.example.distribute.hbase.TrackingIndex;
+import com.example.distribute.hbase.TrajectoryBlock;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.Result;
@@ -7,94 +14,442 @@ import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
 
 
 @Service
 public class MapService {
+    private static final Logger log = LoggerFactory.getLogger(MapService.class);
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final long FAMILY_RECHECK_MS = 60_000;
+
 	@Autowired
     private Connection hbaseConn;
-	
+    @Autowired
+    private HeatmapTileStore tileStore;
+    @Autowired
+    private RegionScanExecutor scanExecutor;
+    @Autowired
+    private ResultCache resultCache;
+    // 索引表的 b 列族由压缩程序添加，之前请求它会让扫描报 NoSuchColumnFamilyException
+    private volatile boolean indexHasBlocks;
+    private volatile long indexFamiliesCheckedAt;
+    private MetricsRegistry.Counter streamRows;
+    private LatencyHistogram streamScanTime;
+
+    @Autowired
+    void registerMetrics(MetricsRegistry metrics) {
+        streamRows = metrics.counter("hbase_rows_scanned_total", "HBase rows read", "source", "map_stream");
+        streamScanTime = metrics.histogram("hbase_scan_seconds", "Time to drain one HBase scanner", "source", "map_stream");
+    }
+
+    /**
+     * 点回调，时间戳单位秒
+     */
+    @FunctionalInterface
+    interface PointVisitor {
+        void visit(String vehicleId, long ts, double lat, double lon);
+    }
+
 	/**
      * 获取各车辆在时间区间[from,to]内的轨迹点，按 vehicleId 分组返回
      */
     public List<Map<String, Object>> getVehiclePaths(Long from, Long to) throws IOException {
-        List<Map<String, Object>> result = new ArrayList<>();
-        Table table = hbaseConn.getTable(TableName.valueOf("vehicle_tracking"));
-        Scan scan = new Scan()
-                .setTimeRange(from * 1000, to * 1000)  // HBase timestamp 单位 ms
-                .addFamily(Bytes.toBytes("loc"));       // 只取 loc 列簇
-        ResultScanner scanner = table.getScanner(scan);
+        return getVehiclePaths(from, to, 0);
+    }
 
-        // 临时缓存： vehicleId -> List<[lng,lat]> 
-        Map<String, List<double[]>> paths = new HashMap<>();
+    /**
+     * tolerance > 0 时对每条轨迹做 Douglas-Peucker 抽稀（单位：度）
+     */
+    public List<Map<String, Object>> getVehiclePaths(Long from, Long to, double tolerance) throws IOException {
+        return await(getVehiclePathsAsync(from, to, tolerance));
+    }
 
-        for (Result row : scanner) {
-            String rk = Bytes.toString(row.getRow());      // 格式：V001_1620000000
-            String[] parts = rk.split("_");
-            String vid = parts[0];
-            long ts = Long.parseLong(parts[1]) * 1000;
+    /**
+     * 按 Region 并行扫描索引，每个子扫描各自按车辆收集轨迹，最后按行键顺序拼接。
+     * 取消返回的 future 会停止仍在进行的扫描（同一窗口的并发请求共享一次扫描，全部取消后才停止）。
+     */
+    public CompletableFuture<List<Map<String, Object>>> getVehiclePathsAsync(long from, long to, double tolerance) {
+        return resultCache.getAsync(ResultCache.Domain.TRACKING, "paths:" + tolerance, from, to,
+                (f, t) -> loadVehiclePaths(f, t, tolerance));
+    }
 
-            double lat = Double.parseDouble(
-                Bytes.toString(row.getValue(Bytes.toBytes("loc"), Bytes.toBytes("lat")))
-            );
-            double lon = Double.parseDouble(
-                Bytes.toString(row.getValue(Bytes.toBytes("loc"), Bytes.toBytes("lon")))
-            );
+    private CompletableFuture<List<Map<String, Object>>> loadVehiclePaths(long from, long to, double tolerance) {
+        return scanIndexParallel(from, to, PathCollector::new, PathCollector::mergeFrom)
+                .thenApply(paths -> {
+                    // 构造结果
+                    PathSimplifier simplifier = new PathSimplifier();
+                    List<Map<String, Object>> result = new ArrayList<>(paths.paths.size());
+                    for (var entry : paths.paths.entrySet()) {
+                        List<double[]> path = entry.getValue();
+                        if (tolerance > 0 && path.size() > 2) {
+                            path = simplify(path, tolerance, simplifier);
+                        }
+                        result.add(Map.of(
+                            "vehicleId", entry.getKey(),
+                            "path", path
+                        ));
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * 单个子扫描内的局部结果： vehicleId -> List<[lng,lat]>
+     */
+    static final class PathCollector implements PointVisitor {
+        private final Map<String, List<double[]>> paths = new HashMap<>();
 
-            paths.computeIfAbsent(vid, k -> new ArrayList<>()).add(new double[]{lon, lat});
+        @Override
+        public void visit(String vehicleId, long ts, double lat, double lon) {
+            paths.computeIfAbsent(vehicleId, k -> new ArrayList<>()).add(new double[]{lon, lat});
         }
-        scanner.close();
 
-        // 构造结果
-        for (var entry : paths.entrySet()) {
-            result.add(Map.of(
-                "vehicleId", entry.getKey(),
-                "path", entry.getValue()
-            ));
+        /**
+         * other 来自行键更靠后的 Region，即更晚的时间桶，直接追加即可保持时间顺序
+         */
+        PathCollector mergeFrom(PathCollector other) {
+            other.paths.forEach((vid, path) -> paths.merge(vid, path, (a, b) -> {
+                a.addAll(b);
+                return a;
+            }));
+            return this;
         }
-        return result;
     }
 
     /**
-     * 简单的热力数据：将所有点按经纬度网格化，统计密度
+     * 地图缩放级别对应的抽稀容差（约一个像素）
+     */
+    public static double toleranceForZoom(int zoom) {
+        return PathSimplifier.toleranceForZoom(zoom);
+    }
+
+    private static List<double[]> simplify(List<double[]> path, double tolerance, PathSimplifier simplifier) {
+        int n = path.size();
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = path.get(i)[0];
+            ys[i] = path.get(i)[1];
+        }
+        int m = simplifier.simplify(xs, ys, n, tolerance);
+        List<double[]> out = new ArrayList<>(m);
+        for (int i = 0; i < m; i++) {
+            out.add(new double[]{xs[i], ys[i]});
+        }
+        return out;
+    }
+
+    /**
+     * 以 NDJSON 流式输出轨迹：扫描到一段连续的同车辆点就立即写出一行
+     * {"vehicleId":"V100","path":[[lng,lat],...]}，同一车辆跨时间桶时会输出多行，客户端按 vehicleId 拼接。
+     * 不在内存中保留整个结果集。
+     */
+    public void streamVehiclePaths(long from, long to, double tolerance, OutputStream out) throws IOException {
+        JsonGenerator gen = JSON.createGenerator(out);
+        PathSegmentWriter writer = new PathSegmentWriter(gen, tolerance);
+        try {
+            scanIndex(from, to, writer);
+            writer.flushSegment();
+        } catch (UncheckedIOException e) {
+            // 客户端断开时写出失败，终止扫描
+            throw e.getCause();
+        }
+        gen.flush();
+    }
+
+    /**
+     * 累积同一车辆的连续点，车辆变化时抽稀并写出一行
+     */
+    private static final class PathSegmentWriter implements PointVisitor {
+        private final JsonGenerator gen;
+        private final double tolerance;
+        private final PathSimplifier simplifier = new PathSimplifier();
+        private String current;
+        private double[] xs = new double[256];
+        private double[] ys = new double[256];
+        private int n;
+
+        PathSegmentWriter(JsonGenerator gen, double tolerance) {
+            this.gen = gen;
+            this.tolerance = tolerance;
+        }
+
+        @Override
+        public void visit(String vehicleId, long ts, double lat, double lon) {
+            if (current != null && !current.equals(vehicleId)) {
+                flushSegment();
+            }
+            current = vehicleId;
+            if (n == xs.length) {
+                xs = Arrays.copyOf(xs, n << 1);
+                ys = Arrays.copyOf(ys, n << 1);
+            }
+            xs[n] = lon;
+            ys[n] = lat;
+            n++;
+        }
+
+        void flushSegment() {
+            if (current == null || n == 0) {
+                return;
+            }
+            int m = tolerance > 0 ? simplifier.simplify(xs, ys, n, tolerance) : n;
+            try {
+                gen.writeStartObject();
+                gen.writeStringField("vehicleId", current);
+                gen.writeArrayFieldStart("path");
+                for (int i = 0; i < m; i++) {
+                    gen.writeStartArray();
+                    gen.writeNumber(xs[i]);
+                    gen.writeNumber(ys[i]);
+                    gen.writeEndArray();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+                // 每行都推给客户端，分块传输
+                gen.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            n = 0;
+        }
+    }
+
+    /**
+     * 热力数据：将所有点按经纬度网格化，统计密度。
+     * 窗口内完整的 5 分钟桶直接合并预聚合瓦片，只有窗口两端不足一个桶的部分和瓦片未覆盖的历史才扫描索引表。
      */
     public List<Map<String, Object>> getHeatmapData(Long from, Long to) throws IOException {
-        Table table = hbaseConn.getTable(TableName.valueOf("vehicle_tracking"));
+        return getHeatmapData(from, to, null);
+    }
+
+    public List<Map<String, Object>> getHeatmapData(Long from, Long to, Integer zoom) throws IOException {
+        return await(getHeatmapDataAsync(from, to, zoom));
+    }
+
+    public CompletableFuture<List<Map<String, Object>>> getHeatmapDataAsync(long from, long to, Integer zoom) {
+        int level = HeatmapTileStore.levelForZoom(zoom);
+        return resultCache.getAsync(ResultCache.Domain.TRACKING, "heatmap:" + level, from, to,
+                (f, t) -> loadHeatmapData(f, t, level));
+    }
+
+    private CompletableFuture<List<Map<String, Object>>> loadHeatmapData(long from, long to, int level) {
+        int scale = HeatmapTileStore.SCALES[level];
+        Supplier<HeatCounter> counter = () -> new HeatCounter(scale);
+
+        long bucket = HeatmapTileStore.BUCKET_SECONDS;
+        // 完整落在 [from, to] 内且瓦片可用的桶区间 [a, b)
+        long a = Math.max(HeatmapTileStore.bucketOf(from + bucket - 1), tileStore.coveredFrom(level));
+        long b = HeatmapTileStore.bucketOf(to + 1);
+        CompletableFuture<HeatCounter> counts;
+        if (a < b) {
+            HeatCounter tiles = new HeatCounter(scale);
+            List<Long> missing = tileStore.merge(a, b, level, tiles.counts);
+            counts = CompletableFuture.completedFuture(tiles);
+            // 瓦片超过网格上限被丢弃的桶退回扫描
+            for (long m : missing) {
+                counts = counts.thenCombine(scanIndexParallel(m, m + bucket - 1, counter, HeatCounter::mergeFrom),
+                        HeatCounter::mergeFrom);
+            }
+            if (from < a) {
+                counts = counts.thenCombine(scanIndexParallel(from, a - 1, counter, HeatCounter::mergeFrom),
+                        HeatCounter::mergeFrom);
+            }
+            if (b <= to) {
+                counts = counts.thenCombine(scanIndexParallel(b, to, counter, HeatCounter::mergeFrom),
+                        HeatCounter::mergeFrom);
+            }
+        } else {
+            counts = scanIndexParallel(from, to, counter, HeatCounter::mergeFrom);
+        }
+
+        return counts.thenApply(c -> {
+            // 转成列表
+            List<Map<String, Object>> heat = new ArrayList<>(c.counts.size());
+            c.counts.forEach((cell, density) -> heat.add(Map.of(
+                    "lat", HeatmapTileStore.cellLat(cell, scale),
+                    "lng", HeatmapTileStore.cellLon(cell, scale),
+                    "density", density
+            )));
+            return heat;
+        });
+    }
+
+    /**
+     * 单个子扫描内的网格计数
+     */
+    static final class HeatCounter implements PointVisitor {
+        private final int scale;
+        private final LongIntHashMap counts = new LongIntHashMap(1024);
+
+        HeatCounter(int scale) {
+            this.scale = scale;
+        }
+
+        @Override
+        public void visit(String vehicleId, long ts, double lat, double lon) {
+            counts.addTo(HeatmapTileStore.cellId(lat, lon, scale), 1);
+        }
+
+        HeatCounter mergeFrom(HeatCounter other) {
+            counts.addAll(other.counts);
+            return this;
+        }
+    }
+
+    /**
+     * 同步调用方等待并行扫描结果，把 HBase 异常还原为 IOException
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("map query interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private Scan indexScan(long from, long to) {
         Scan scan = new Scan()
-                .setTimeRange(from * 1000, to * 1000)
-                .addFamily(Bytes.toBytes("loc"));
-        ResultScanner scanner = table.getScanner(scan);
-
-        // 网格 key = floor(lat*100)/100 + "_" + floor(lon*100)/100
-        Map<String, Integer> counts = new HashMap<>();
-        for (Result row : scanner) {
-            double lat = Double.parseDouble(
-                Bytes.toString(row.getValue(Bytes.toBytes("loc"), Bytes.toBytes("lat"))));
-            double lon = Double.parseDouble(
-                Bytes.toString(row.getValue(Bytes.toBytes("loc"), Bytes.toBytes("lon"))));
-            String key = String.format("%.2f_%.2f", Math.floor(lat * 100) / 100, Math.floor(lon * 100) / 100);
-            counts.merge(key, 1, Integer::sum);
-        }
-        scanner.close();
-
-        // 转成列表
-        List<Map<String, Object>> heat = new ArrayList<>();
-        for (var e : counts.entrySet()) {
-            String[] xy = e.getKey().split("_");
-            heat.add(Map.of(
-                "lat", Double.parseDouble(xy[0]),
-                "lng", Double.parseDouble(xy[1]),
-                "density", e.getValue()
-            ));
-        }
-        return heat;
-    }
-}
\ No newline at end of file
+                .withStartRow(TrackingIndex.startRow(from), true)
+                .withStopRow(TrackingIndex.stopRow(to), false)
+                .addFamily(TrackingIndex.POINTS)
+                .setCaching(500);
+        if (indexHasBlocks()) {
+            scan.addFamily(TrajectoryBlock.FAMILY);
+        }
+        return scan;
+    }
+
+    /**
+     * 读表结构判断索引表是否已有 b 列族；没有时最多每分钟重新检查一次，压缩程序添加后自动开始读取块
+     */
+    private boolean indexHasBlocks() {
+        if (indexHasBlocks) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - indexFamiliesCheckedAt >= FAMILY_RECHECK_MS) {
+            indexFamiliesCheckedAt = now;
+            try (Table table = hbaseConn.getTable(TableName.valueOf(TrackingIndex.TABLE))) {
+                indexHasBlocks = table.getDescriptor().hasColumnFamily(TrajectoryBlock.FAMILY);
+            } catch (IOException e) {
+                log.warn("cannot read {} descriptor: {}", TrackingIndex.TABLE, e.getMessage());
+            }
+        }
+        return indexHasBlocks;
+    }
+
+    /**
+     * 按 Region 并行扫描索引表，每个子扫描用 partial 创建的访问器在本地汇总，再按 Region 顺序 merge
+     */
+    <P extends PointVisitor> CompletableFuture<P> scanIndexParallel(long from, long to, Supplier<P> partial,
+                                                                     BinaryOperator<P> merge) {
+        return scanExecutor.submit(TrackingIndex.TABLE, indexScan(from, to), () -> {
+            P visitor = partial.get();
+            TrajectoryBlock block = new TrajectoryBlock();
+            return new RegionScanExecutor.RowAggregator<P>() {
+                @Override
+                public void accept(Result row) {
+                    visitRow(row, from, to, block, visitor);
+                }
+
+                @Override
+                public P result() {
+                    return visitor;
+                }
+            };
+        }, merge);
+    }
+
+    /**
+     * 只扫描 vehicle_tracking_ts 中窗口覆盖的时间桶，单线程顺序扫描，供需要按行键顺序逐行输出的流式接口使用
+     */
+    void scanIndex(long from, long to, PointVisitor visitor) throws IOException {
+        TrajectoryBlock block = new TrajectoryBlock();
+        long start = System.nanoTime();
+        long rows = 0;
+        try (Table table = hbaseConn.getTable(TableName.valueOf(TrackingIndex.TABLE));
+             ResultScanner scanner = table.getScanner(indexScan(from, to))) {
+            for (Result row : scanner) {
+                rows++;
+                visitRow(row, from, to, block, visitor);
+            }
+        } finally {
+            streamRows.add(rows);
+            streamScanTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 按时间戳精确过滤一行索引中的点。
+     * 未压缩的行每个点一列（p:时间戳），已压缩的行是一个 b:d 轨迹块，两种都可能出现在同一行中：
+     * 压缩之后到达的点、或压缩时尚未删除的点列。列族 b 排在 p 之前，块内的点和点列各自按时间有序，
+     * 这里按时间戳归并两者，同一时间戳只输出点列中的原始坐标。
+     */
+    static void visitRow(Result row, long from, long to, TrajectoryBlock block, PointVisitor visitor) {
+        String vid = TrackingIndex.vehicleId(row.getRow());
+        Cell[] cells = row.rawCells();
+        int first = 0;
+        int n = 0;
+        if (cells.length > 0 && CellUtil.matchingFamily(cells[0], TrajectoryBlock.FAMILY)) {
+            Cell c = cells[0];
+            block.decode(c.getValueArray(), c.getValueOffset(), c.getValueLength());
+            n = block.size();
+            first = 1;
+        }
+        int i = 0;
+        for (int j = first; j < cells.length; j++) {
+            Cell c = cells[j];
+            long ts = Bytes.toLong(c.getQualifierArray(), c.getQualifierOffset());
+            // 先输出块内更早的点
+            for (; i < n && block.ts(i) <= ts; i++) {
+                if (block.ts(i) < ts) {
+                    visitBlockPoint(vid, block, i, from, to, visitor);
+                }
+            }
+            if (ts < from || ts > to) {
+                continue;
+            }
+            double lat = Bytes.toDouble(c.getValueArray(), c.getValueOffset());
+            double lon = Bytes.toDouble(c.getValueArray(), c.getValueOffset() + 8);
+            visitor.visit(vid, ts, lat, lon);
+        }
+        for (; i < n; i++) {
+            visitBlockPoint(vid, block, i, from, to, visitor);
+        }
+    }
+
+    private static void visitBlockPoint(String vid, TrajectoryBlock block, int i, long from, long to,
+                                        PointVisitor visitor) {
+        long ts = block.ts(i);
+        if (ts >= from && ts <= to) {
+            visitor.visit(vid, ts, block.lat(i), block.lon(i));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.distribute.service;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 进程内的计数器、直方图和采样值登记处，按 Prometheus 文本格式（0.0.4）输出。
+ * 指标在组件构造时登记并持有返回的对象，热路径上只有 LongAdder / 原子数组的加法，不查表也不分配对象；
+ * 采样值（gauge）在抓取时才调用 supplier。同名同标签重复登记返回同一个对象。
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final String PREFIX = "distribute_";
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), HISTOGRAM("histogram");
+
+        final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Family {
+        final Type type;
+        final String help;
+        // 标签文本（如 topic="alerts"）-> 指标对象
+        final Map<String, Object> series = new TreeMap<>();
+
+        Family(Type type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new TreeMap<>();
+
+    /**
+     * labels 为 key, value 交替排列
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, Type.COUNTER, help, labels, new Counter());
+    }
+
+    /**
+     * 以毫秒桶记录、以秒输出的延迟直方图
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) register(name, Type.HISTOGRAM, help, labels, new LatencyHistogram());
+    }
+
+    /**
+     * JDBC 语句耗时，statement 为调用处给出的固定名称
+     */
+    public LatencyHistogram jdbcTimer(String statement) {
+        return histogram("jdbc_query_seconds", "JDBC statement execution time", "statement", statement);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        register(name, Type.GAUGE, help, labels, supplier);
+    }
+
+    private synchronized Object register(String name, Type type, String help, String[] labels, Object metric) {
+        Family family = families.computeIfAbsent(PREFIX + name, k -> new Family(type, help));
+        if (family.type != type) {
+            throw new IllegalArgumentException("metric " + name + " already registered as " + family.type.text);
+        }
+        return family.series.computeIfAbsent(labelText(labels), k -> metric);
+    }
+
+    private static String labelText(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be key/value pairs");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String v = labels[i + 1];
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                switch (c) {
+                    case '\\' -> sb.append("\\\\");
+                    case '"' -> sb.append("\\\"");
+                    case '\n' -> sb.append("\\n");
+                    default -> sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 输出全部指标；直方图的桶上界和 _sum 换算为秒
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        List<Map.Entry<String, Family>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(families.size());
+            for (Map.Entry<String, Family> e : families.entrySet()) {
+                snapshot.add(Map.entry(e.getKey(), copy(e.getValue())));
+            }
+        }
+        for (Map.Entry<String, Family> e : snapshot) {
+            String name = e.getKey();
+            Family family = e.getValue();
+            out.write("# HELP " + name + " " + family.help + "\n");
+            out.write("# TYPE " + name + " " + family.type.text + "\n");
+            for (Map.Entry<String, Object> s : family.series.entrySet()) {
+                String labels = s.getKey();
+                switch (family.type) {
+                    case COUNTER -> sample(out, name, labels, ((Counter) s.getValue()).get());
+                    case GAUGE -> sample(out, name, labels, ((DoubleSupplier) s.getValue()).getAsDouble());
+                    case HISTOGRAM -> writeHistogram(out, name, labels, (LatencyHistogram) s.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * 把组件 stats() 中的数值项按 gauge 输出为 distribute_{component}_{key}，key 由驼峰转为下划线；非数值项忽略
+     */
+    public static void writeStats(Writer out, String component, Map<String, ?> stats) throws IOException {
+        for (Map.Entry<String, ?> e : new TreeMap<>(stats).entrySet()) {
+            if (!(e.getValue() instanceof Number n)) {
+                continue;
+            }
+            String name = PREFIX + component + "_" + snakeCase(e.getKey());
+            out.write("# TYPE " + name + " gauge\n");
+            sample(out, name, "", n.doubleValue());
+        }
+    }
+
+    private static String snakeCase(String key) {
+        StringBuilder sb = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                sb.append('_').append(Character.toLowerCase(c));
+            } else {
+                sb.append(Character.isLetterOrDigit(c) ? c : '_');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Family copy(Family f) {
+        Family c = new Family(f.type, f.help);
+        c.series.putAll(f.series);
+        return c;
+    }
+
+    private static void writeHistogram(Writer out, String name, String labels, LatencyHistogram h) throws IOException {
+        String sep = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.buckets(); i++) {
+            cumulative += h.bucketCount(i);
+            double bound = LatencyHistogram.upperBound(i);
+            String le = Double.isInfinite(bound) ? "+Inf" : Double.toString(bound / 1000);
+            sample(out, name + "_bucket", sep + "le=\"" + le + "\"", cumulative);
+        }
+        sample(out, name + "_sum", labels, h.sumMillis() / 1000);
+        // 桶与计数分别读取，取累计值保证 +Inf 桶与 _count 一致
+        sample(out, name + "_count", labels, cumulative);
+    }
+
+    private static void sample(Writer out, String name, String labels, double value) throws IOException {
+        out.write(name);
+        if (!labels.isEmpty()) {
+            out.write('{');
+            out.write(labels);
+            out.write('}');
+        }
+        out.write(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            out.write(Long.toString((long) value));
+        } else {
+            out.write(Double.toString(value));
+        }
+        out.write('\n');
+    }
+}
@@ -5,7 +5,6 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import redis.clients.jedis.JedisPool;
 
-import java.sql.Timestamp;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,16 +14,59 @@ public class MetricsService {
     private JdbcTemplate jdbc;
     @Autowired
     private JedisPool jedisPool;
+    @Autowired
+    private OrderRollupStore rollupStore;
+    @Autowired
+    private OrderTableRouter tableRouter;
+    @Autowired
+    private ResultCache resultCache;
+    private LatencyHistogram alertCountTime;
+
+    @Autowired
+    void registerMetrics(MetricsRegistry metrics) {
+        alertCountTime = metrics.jdbcTimer("alerts_count");
+    }
 
+    /**
+     * from/to 为毫秒。对分钟汇总求和，不再扫描原始订单表；窗口两端按分钟对齐，
+     * 对齐后结果不变，同一分钟内的请求可以共享缓存
+     */
     public Map<String, Object> computeOverview(Long from, Long to) {
-    	Timestamp startTime = from != null ? new Timestamp(from) : null;
-        Timestamp endTime = to != null ? new Timestamp(to) : new Timestamp(System.currentTimeMillis());
-        int total = jdbc.queryForObject(
-                "SELECT COUNT(*) FROM order_202506 WHERE start_time BETWEEN ? AND ?", Integer.class, startTime, endTime);
-        int processing = jdbc.queryForObject(
-                "SELECT COUNT(*) FROM order_202506 WHERE status='in_transit' AND start_time BETWEEN ? AND ?", Integer.class, startTime, endTime);
-        int delayed = jdbc.queryForObject(
-                "SELECT COUNT(*) FROM order_202506 WHERE status='delayed' AND start_time BETWEEN ? AND ?", Integer.class, startTime, endTime);
+        long fromSec = OrderRollupStore.bucketOf(from != null ? from / 1000 : 0);
+        long toSec = OrderRollupStore.bucketOf((to != null ? to : System.currentTimeMillis()) / 1000)
+                + OrderRollupStore.BUCKET_SECONDS - 1;
+        return resultCache.get(ResultCache.Domain.ORDERS, "overview", fromSec, toSec,
+                (f, t) -> overview(rollupStore.countByStatus(f, t)));
+    }
+
+    /**
+     * 直接按 event_time 查询原始月表，用于核对汇总或汇总尚未重建时；跨月窗口由路由并行查询各月表后合并
+     */
+    public Map<String, Object> computeOverviewFromOrders(Long from, Long to) {
+        long fromSec = from != null ? from / 1000 : 0;
+        long toSec = (to != null ? to : System.currentTimeMillis()) / 1000;
+        Map<String, Long> byStatus = tableRouter.aggregate(fromSec, toSec,
+                "SELECT status, COUNT(*) FROM {table} WHERE event_time BETWEEN FROM_UNIXTIME(?) AND FROM_UNIXTIME(?) GROUP BY status",
+                new Object[]{fromSec, toSec},
+                rs -> {
+                    Map<String, Long> m = new HashMap<>();
+                    while (rs.next()) {
+                        m.merge(String.valueOf(rs.getString(1)), rs.getLong(2), Long::sum);
+                    }
+                    return m;
+                },
+                (a, b) -> {
+                    b.forEach((k, v) -> a.merge(k, v, Long::sum));
+                    return a;
+                },
+                new HashMap<>());
+        return overview(byStatus);
+    }
+
+    private static Map<String, Object> overview(Map<String, Long> byStatus) {
+        long total = byStatus.values().stream().mapToLong(Long::longValue).sum();
+        long processing = byStatus.getOrDefault("in_transit", 0L);
+        long delayed = byStatus.getOrDefault("delayed", 0L);
         double onTimeRate = total == 0 ? 0 : ((double)(total - delayed)/ total)*100;
         Map<String, Object> m = new HashMap<>();
         m.put("totalOrders", total);
@@ -34,8 +76,20 @@ public class MetricsService {
         return m;
     }
 
+    /**
+     * since 为秒，按缓存桶向下对齐
+     */
     public int countAlertsSince(Long since) {
-        return jdbc.queryForObject(
-                "SELECT COUNT(*) FROM alarm_log WHERE UNIX_TIMESTAMP(timestamp)>=?", Integer.class, since);
+        return resultCache.get(ResultCache.Domain.ALERTS, "alerts.count", resultCache.alignFrom(since),
+                System.currentTimeMillis() / 1000,
+                (f, t) -> {
+                    long start = System.nanoTime();
+                    try {
+                        return jdbc.queryForObject(
+                                "SELECT COUNT(*) FROM alarm_log WHERE timestamp >= FROM_UNIXTIME(?)", Integer.class, f);
+                    } finally {
+                        alertCountTime.recordNanos(System.nanoTime() - start);
+                    }
+                });
     }
 }
\ No newline at end of file
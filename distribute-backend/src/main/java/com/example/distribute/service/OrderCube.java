@@ -0,0 +1,342 @@
+package com.example.distribute.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 订单 OLAP 立方体：按（粒度, 时间桶, 省份, 状态）预聚合订单数和温度和，粒度为分钟、小时、天（UTC）。
+ * logistics-data 事件到达时三个粒度同时累加到内存增量，定时以 cnt = cnt + ? 的方式写入 order_cube 表；
+ * 查询时把窗口拆成尽量粗的整桶区间，对 order_cube 做一次按主键范围的 GROUP BY，再加上未刷新的增量。
+ */
+@Component
+public class OrderCube {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderCube.class);
+
+    static final String TABLE = "order_cube";
+    private static final String UPSERT_SQL = "INSERT INTO " + TABLE +
+            "(grain, bucket_ts, province, status, cnt, temp_sum, temp_cnt) VALUES(?,?,?,?,?,?,?) " +
+            "ON DUPLICATE KEY UPDATE cnt = cnt + VALUES(cnt), temp_sum = temp_sum + VALUES(temp_sum), " +
+            "temp_cnt = temp_cnt + VALUES(temp_cnt)";
+
+    /**
+     * 预聚合粒度，从细到粗
+     */
+    public enum Grain {
+        MINUTE("m", 60), HOUR("h", 3600), DAY("d", 86400);
+
+        final String code;
+        final long seconds;
+
+        Grain(String code, long seconds) {
+            this.code = code;
+            this.seconds = seconds;
+        }
+
+        long bucketOf(long ts) {
+            return Math.floorDiv(ts, seconds) * seconds;
+        }
+    }
+
+    public enum Metric {
+        ON_TIME_RATE, VOLUME, DELAYED, AVG_TEMPERATURE;
+
+        /**
+         * 接受 onTimeRate / on_time_rate / volume / delayed / avgTemperature 等写法
+         */
+        public static Metric parse(String name) {
+            String n = name == null ? "" : name.replace("_", "").replace("-", "").toLowerCase(Locale.ROOT);
+            return switch (n) {
+                case "", "ontimerate", "ontime" -> ON_TIME_RATE;
+                case "volume", "orders", "count" -> VOLUME;
+                case "delayed", "delaycount", "delays" -> DELAYED;
+                case "avgtemperature", "temperature", "avgtemp" -> AVG_TEMPERATURE;
+                default -> throw new IllegalArgumentException("unknown metric: " + name);
+            };
+        }
+    }
+
+    /**
+     * 一组聚合值
+     */
+    public static final class Cell {
+        long count;
+        long delayed;
+        double tempSum;
+        long tempCount;
+
+        void add(String status, long cnt, double temp, long tempCnt) {
+            count += cnt;
+            if ("delayed".equals(status)) {
+                delayed += cnt;
+            }
+            tempSum += temp;
+            tempCount += tempCnt;
+        }
+
+        void merge(Cell other) {
+            count += other.count;
+            delayed += other.delayed;
+            tempSum += other.tempSum;
+            tempCount += other.tempCount;
+        }
+
+        public double value(Metric metric) {
+            return switch (metric) {
+                case ON_TIME_RATE -> count == 0 ? 0 : (count - delayed) * 100.0 / count;
+                case VOLUME -> count;
+                case DELAYED -> delayed;
+                case AVG_TEMPERATURE -> tempCount == 0 ? 0 : tempSum / tempCount;
+            };
+        }
+    }
+
+    private record Key(Grain grain, long bucket, String province, String status) {
+    }
+
+    /**
+     * 某一粒度上的整桶区间 [from, to)
+     */
+    record Range(Grain grain, long from, long to) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final LatencyHistogram queryTime;
+    private final LatencyHistogram flushTime;
+    private final ConcurrentHashMap<Key, Cell> pending = new ConcurrentHashMap<>();
+    // 刷新和查询互斥，避免查询时增量已从内存取出但尚未提交到表
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "order-cube-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public OrderCube(JdbcTemplate jdbc, MetricsRegistry metrics,
+                     @Value("${orders.cube.flush-interval-ms:5000}") long flushIntervalMs) {
+        this.jdbc = jdbc;
+        this.queryTime = metrics.jdbcTimer("order_cube_query");
+        this.flushTime = metrics.jdbcTimer("order_cube_flush");
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一个订单事件，ts 为秒，temperature 可为 null
+     */
+    public void record(long ts, String province, String status, Double temperature) {
+        String p = province == null || province.isEmpty() ? "unknown" : province;
+        String s = status == null ? "unknown" : status;
+        double temp = temperature != null ? temperature : 0;
+        long tempCnt = temperature != null ? 1 : 0;
+        recorded.incrementAndGet();
+        for (Grain g : Grain.values()) {
+            pending.compute(new Key(g, g.bucketOf(ts), p, s), (k, c) -> {
+                if (c == null) {
+                    c = new Cell();
+                }
+                c.add(s, 1, temp, tempCnt);
+                return c;
+            });
+        }
+    }
+
+    /**
+     * 选出能整除 interval 的最粗粒度，interval 必须是 60 秒的整数倍
+     */
+    static Grain grainFor(long interval) {
+        if (interval < 60 || interval % 60 != 0) {
+            throw new IllegalArgumentException("interval must be a positive multiple of 60 seconds");
+        }
+        Grain best = Grain.MINUTE;
+        for (Grain g : Grain.values()) {
+            if (interval % g.seconds == 0) {
+                best = g;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 按 interval（秒）切分时间轴，返回 桶起始秒 -> 聚合值；窗口两端按 interval 对齐
+     */
+    public Map<Long, Cell> byTime(long from, long to, long interval) {
+        Grain g = grainFor(interval);
+        long lo = Math.floorDiv(from, interval) * interval;
+        long hi = Math.floorDiv(to, interval) * interval + interval;
+        List<Range> ranges = List.of(new Range(g, lo, hi));
+        Map<Long, Cell> out = new HashMap<>();
+        aggregate(ranges, "FLOOR(bucket_ts / " + interval + ") * " + interval,
+                rs -> rs.getLong(1),
+                k -> Math.floorDiv(k.bucket(), interval) * interval,
+                out);
+        return out;
+    }
+
+    /**
+     * 窗口 [from, to] 内按省份汇总；窗口按分钟对齐后拆成天、小时、分钟三种整桶区间
+     */
+    public Map<String, Cell> byProvince(long from, long to) {
+        List<Range> ranges = new ArrayList<>(5);
+        decompose(Grain.MINUTE.bucketOf(from), Grain.MINUTE.bucketOf(to) + 60, Grain.values().length - 1, ranges);
+        Map<String, Cell> out = new HashMap<>();
+        aggregate(ranges, "province", rs -> rs.getString(1), Key::province, out);
+        return out;
+    }
+
+    /**
+     * 把 [lo, hi) 拆成尽量少的整桶区间：中间用 grains[level]，两端剩余部分递归用更细的粒度
+     */
+    static void decompose(long lo, long hi, int level, List<Range> out) {
+        if (lo >= hi) {
+            return;
+        }
+        Grain g = Grain.values()[level];
+        if (level == 0) {
+            out.add(new Range(g, lo, hi));
+            return;
+        }
+        long a = Math.floorDiv(lo + g.seconds - 1, g.seconds) * g.seconds;
+        long b = Math.floorDiv(hi, g.seconds) * g.seconds;
+        if (a >= b) {
+            decompose(lo, hi, level - 1, out);
+            return;
+        }
+        decompose(lo, a, level - 1, out);
+        out.add(new Range(g, a, b));
+        decompose(b, hi, level - 1, out);
+    }
+
+    @FunctionalInterface
+    private interface RowKey<K> {
+        K key(ResultSet rs) throws SQLException;
+    }
+
+    private <K> void aggregate(List<Range> ranges, String groupExpr, RowKey<K> rowKey,
+                               Function<Key, K> pendingKey, Map<K, Cell> out) {
+        if (ranges.isEmpty()) {
+            return;
+        }
+        StringBuilder where = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (Range r : ranges) {
+            where.append(where.length() == 0 ? "" : " OR ")
+                    .append("(grain = ? AND bucket_ts >= ? AND bucket_ts < ?)");
+            args.add(r.grain().code);
+            args.add(r.from());
+            args.add(r.to());
+        }
+        String sql = "SELECT " + groupExpr + " AS k, status, SUM(cnt), SUM(temp_sum), SUM(temp_cnt) FROM " + TABLE +
+                " WHERE " + where + " GROUP BY k, status";
+        synchronized (flushLock) {
+            long start = System.nanoTime();
+            try {
+                jdbc.query(sql, rs -> {
+                    out.computeIfAbsent(rowKey.key(rs), k -> new Cell())
+                            .add(rs.getString(2), rs.getLong(3), rs.getDouble(4), rs.getLong(5));
+                }, args.toArray());
+            } finally {
+                queryTime.recordNanos(System.nanoTime() - start);
+            }
+            for (Key k : pending.keySet()) {
+                if (!inRanges(k, ranges)) {
+                    continue;
+                }
+                pending.computeIfPresent(k, (key, c) -> {
+                    out.computeIfAbsent(pendingKey.apply(key), x -> new Cell())
+                            .add(key.status(), c.count, c.tempSum, c.tempCount);
+                    return c;
+                });
+            }
+        }
+    }
+
+    private static boolean inRanges(Key k, List<Range> ranges) {
+        for (Range r : ranges) {
+            if (k.grain() == r.grain() && k.bucket() >= r.from() && k.bucket() < r.to()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把当前增量累加到 order_cube，失败时放回等待下次刷新
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            Map<Key, Cell> batch = new HashMap<>(pending.size() * 2);
+            for (Key k : new ArrayList<>(pending.keySet())) {
+                Cell c = pending.remove(k);
+                if (c != null) {
+                    batch.put(k, c);
+                }
+            }
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            batch.forEach((k, c) -> rows.add(new Object[]{
+                    k.grain().code, k.bucket(), k.province(), k.status(), c.count, c.tempSum, c.tempCount}));
+            long start = System.nanoTime();
+            try {
+                jdbc.batchUpdate(UPSERT_SQL, rows);
+            } catch (RuntimeException e) {
+                batch.forEach((k, c) -> pending.merge(k, c, (a, b) -> {
+                    a.add(k.status(), b.count, b.tempSum, b.tempCount);
+                    return a;
+                }));
+                failedFlushes.incrementAndGet();
+                throw e;
+            } finally {
+                flushTime.recordNanos(System.nanoTime() - start);
+            }
+            flushedRows.addAndGet(rows.size());
+            return rows.size();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Order cube flush failed", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("recorded", recorded.get());
+        m.put("pending", pending.size());
+        m.put("flushedRows", flushedRows.get());
+        m.put("failedFlushes", failedFlushes.get());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.distribute.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单按分钟、按状态的计数汇总，在 logistics-data 事件到达时增量维护。
+ * 内存中保留最近 memory-hours 小时的分钟桶，增量定时以 cnt = cnt + ? 的方式累加到 order_rollup_minute 表。
+ * 查询把窗口拆成两段：进程启动后的完整分钟直接求和内存桶，更早的部分对汇总表做一次 GROUP BY，
+ * 都不再扫描原始订单表。
+ */
+@Component
+public class OrderRollupStore {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderRollupStore.class);
+
+    public static final long BUCKET_SECONDS = 60;
+    static final String TABLE = "order_rollup_minute";
+    private static final String UPSERT_SQL = "INSERT INTO " + TABLE + "(minute_ts, status, cnt) VALUES(?,?,?) " +
+            "ON DUPLICATE KEY UPDATE cnt = cnt + VALUES(cnt)";
+
+    private record Key(long minute, String status) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final LatencyHistogram queryTime;
+    private final LatencyHistogram flushTime;
+    private final long retentionSeconds;
+    // 进程启动后第一个完整的分钟，此前的内存桶不完整
+    private final long coveredSince;
+
+    private final ConcurrentSkipListMap<Long, ConcurrentHashMap<String, LongAdder>> buckets = new ConcurrentSkipListMap<>();
+    // 尚未写入汇总表的增量
+    private final ConcurrentHashMap<Key, Long> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "order-rollup-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public OrderRollupStore(JdbcTemplate jdbc, MetricsRegistry metrics,
+                            @Value("${orders.rollup.memory-hours:48}") long memoryHours,
+                            @Value("${orders.rollup.flush-interval-ms:5000}") long flushIntervalMs) {
+        this.jdbc = jdbc;
+        this.queryTime = metrics.jdbcTimer("order_rollup_query");
+        this.flushTime = metrics.jdbcTimer("order_rollup_flush");
+        this.retentionSeconds = memoryHours * 3600;
+        this.coveredSince = bucketOf(System.currentTimeMillis() / 1000) + BUCKET_SECONDS;
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static long bucketOf(long ts) {
+        return Math.floorDiv(ts, BUCKET_SECONDS) * BUCKET_SECONDS;
+    }
+
+    /**
+     * 记录一个订单事件，ts 为秒
+     */
+    public void record(long ts, String status) {
+        if (status == null) {
+            status = "unknown";
+        }
+        long minute = bucketOf(ts);
+        recorded.incrementAndGet();
+        pending.merge(new Key(minute, status), 1L, Long::sum);
+
+        long now = System.currentTimeMillis() / 1000;
+        if (minute < now - retentionSeconds) {
+            return;
+        }
+        ConcurrentHashMap<String, LongAdder> counts = buckets.get(minute);
+        if (counts == null) {
+            counts = buckets.computeIfAbsent(minute, m -> new ConcurrentHashMap<>());
+            // 新建桶时顺带淘汰过期桶
+            buckets.headMap(bucketOf(now - retentionSeconds)).clear();
+        }
+        counts.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    /**
+     * 窗口 [from, to]（秒，按分钟对齐）内各状态的计数
+     */
+    public Map<String, Long> countByStatus(long from, long to) {
+        long a = bucketOf(from);
+        long b = bucketOf(to);
+        Map<String, Long> result = new HashMap<>();
+        long memoryFrom = Math.max(coveredSince, bucketOf(System.currentTimeMillis() / 1000 - retentionSeconds) + BUCKET_SECONDS);
+        if (b >= memoryFrom) {
+            for (ConcurrentHashMap<String, LongAdder> counts : buckets.subMap(Math.max(a, memoryFrom), true, b, true).values()) {
+                counts.forEach((status, n) -> result.merge(status, n.sum(), Long::sum));
+            }
+        }
+        if (a < memoryFrom) {
+            long tableTo = Math.min(b, memoryFrom - BUCKET_SECONDS);
+            long start = System.nanoTime();
+            try {
+                jdbc.query("SELECT status, SUM(cnt) FROM " + TABLE + " WHERE minute_ts BETWEEN ? AND ? GROUP BY status",
+                        rs -> {
+                            result.merge(rs.getString(1), rs.getLong(2), Long::sum);
+                        }, a, tableTo);
+            } finally {
+                queryTime.recordNanos(System.nanoTime() - start);
+            }
+            // 表里还缺尚未刷新的增量
+            pending.forEach((k, n) -> {
+                if (k.minute() >= a && k.minute() <= tableTo) {
+                    result.merge(k.status(), n, Long::sum);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 把当前增量累加到汇总表，失败时放回等待下次刷新
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        List<Key> keys = new ArrayList<>(pending.keySet());
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        Map<Key, Long> batch = new HashMap<>(keys.size() * 2);
+        for (Key k : keys) {
+            Long n = pending.remove(k);
+            if (n != null) {
+                batch.put(k, n);
+                rows.add(new Object[]{k.minute(), k.status(), n});
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            jdbc.batchUpdate(UPSERT_SQL, rows);
+        } catch (RuntimeException e) {
+            batch.forEach((k, n) -> pending.merge(k, n, Long::sum));
+            failedFlushes.incrementAndGet();
+            throw e;
+        } finally {
+            flushTime.recordNanos(System.nanoTime() - start);
+        }
+        flushedRows.addAndGet(rows.size());
+        return rows.size();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Order rollup flush failed", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("recorded", recorded.get());
+        m.put("memoryBuckets", buckets.size());
+        m.put("pending", pending.size());
+        m.put("flushedRows", flushedRows.get());
+        m.put("failedFlushes", failedFlushes.get());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.distribute.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+
+/**
+ * 按月分表的订单查询路由。入库端按 event_time 所在月份写入 order_YYYYMM，
+ * 路由把 [from, to] 换算成月份区间，与缓存的已存在表求交后，对每张表并行执行同一条聚合 SQL，再合并各表的部分结果。
+ * 表清单缓存在内存中，每 refresh-ms 由第一个用到它的查询刷新一次，平时路由不产生额外的数据库往返。
+ */
+@Component
+public class OrderTableRouter {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbc;
+    private final ZoneId zone;
+    private final long refreshMs;
+    private final ThreadPoolExecutor pool;
+    private final LatencyHistogram tableQueryTime;
+
+    private volatile NavigableSet<YearMonth> months;
+    private volatile long loadedAt;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong tableQueries = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public OrderTableRouter(JdbcTemplate jdbc,
+                            @Value("${orders.tables.zone:}") String zone,
+                            @Value("${orders.tables.refresh-ms:60000}") long refreshMs,
+                            @Value("${orders.router.threads:4}") int threads,
+                            MetricsRegistry metrics) {
+        this.jdbc = jdbc;
+        this.tableQueryTime = metrics.jdbcTimer("order_table_query");
+        this.zone = zone.isEmpty() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.refreshMs = refreshMs;
+        AtomicInteger seq = new AtomicInteger();
+        // 队列满时由调用线程自己执行，退化为串行而不是失败
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 16), r -> {
+                    Thread t = new Thread(r, "order-query-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public static String tableName(YearMonth month) {
+        return "order_" + month.format(SUFFIX);
+    }
+
+    /**
+     * 当前库中所有月表，按月份升序
+     */
+    public List<String> allTables() {
+        List<String> tables = new ArrayList<>();
+        for (YearMonth m : months()) {
+            tables.add(tableName(m));
+        }
+        return tables;
+    }
+
+    /**
+     * 窗口 [from, to]（秒）可能命中的月表，不存在的月份直接剪掉
+     */
+    public List<String> tablesFor(long from, long to) {
+        if (from > to) {
+            return List.of();
+        }
+        YearMonth first = YearMonth.from(Instant.ofEpochSecond(from).atZone(zone));
+        YearMonth last = YearMonth.from(Instant.ofEpochSecond(to).atZone(zone));
+        List<String> tables = new ArrayList<>();
+        for (YearMonth m : months().subSet(first, true, last, true)) {
+            tables.add(tableName(m));
+        }
+        return tables;
+    }
+
+    /**
+     * 对窗口命中的每张月表并行执行 sqlTemplate（其中的 {table} 替换为表名），各表结果用 merge 合并；
+     * 没有命中任何表时返回 empty。sql 中的时间条件应作用在分表键 event_time 上，args 原样传给每张表。
+     */
+    public <A> A aggregate(long from, long to, String sqlTemplate, Object[] args,
+                           ResultSetExtractor<A> extractor, BinaryOperator<A> merge, A empty) {
+        queries.incrementAndGet();
+        List<String> tables = tablesFor(from, to);
+        if (tables.isEmpty()) {
+            return empty;
+        }
+        if (tables.size() == 1) {
+            tableQueries.incrementAndGet();
+            return timedQuery(sqlTemplate.replace("{table}", tables.get(0)), extractor, args);
+        }
+        List<CompletableFuture<A>> parts = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            String sql = sqlTemplate.replace("{table}", table);
+            parts.add(CompletableFuture.supplyAsync(() -> timedQuery(sql, extractor, args), pool));
+        }
+        tableQueries.addAndGet(tables.size());
+        A result = empty;
+        try {
+            for (CompletableFuture<A> part : parts) {
+                result = merge.apply(result, part.join());
+            }
+        } catch (CompletionException e) {
+            parts.forEach(p -> p.cancel(false));
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    private <A> A timedQuery(String sql, ResultSetExtractor<A> extractor, Object[] args) {
+        long start = System.nanoTime();
+        try {
+            return jdbc.query(sql, extractor, args);
+        } finally {
+            tableQueryTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    private NavigableSet<YearMonth> months() {
+        NavigableSet<YearMonth> m = months;
+        if (m == null || System.currentTimeMillis() - loadedAt > refreshMs) {
+            m = load();
+        }
+        return m;
+    }
+
+    /**
+     * 重新读取表清单；只有缓存过期后的第一个调用者会访问 information_schema
+     */
+    private synchronized NavigableSet<YearMonth> load() {
+        if (months != null && System.currentTimeMillis() - loadedAt <= refreshMs) {
+            return months;
+        }
+        List<String> names = jdbc.queryForList(
+                "SELECT table_name FROM information_schema.tables " +
+                "WHERE table_schema = DATABASE() AND table_name LIKE 'order\\_______'", String.class);
+        TreeSet<YearMonth> found = new TreeSet<>();
+        for (String name : names) {
+            if (name.matches("order_\\d{6}")) {
+                found.add(YearMonth.parse(name.substring(6), SUFFIX));
+            }
+        }
+        months = Collections.unmodifiableNavigableSet(found);
+        loadedAt = System.currentTimeMillis();
+        refreshes.incrementAndGet();
+        return months;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new HashMap<>();
+        NavigableSet<YearMonth> cached = months;
+        m.put("tables", cached == null ? 0 : cached.size());
+        m.put("queries", queries.get());
+        m.put("tableQueries", tableQueries.get());
+        m.put("refreshes", refreshes.get());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
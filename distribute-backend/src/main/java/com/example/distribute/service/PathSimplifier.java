@@ -0,0 +1,93 @@
+package com.example.distribute.service;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker 轨迹抽稀，坐标以并行的 double 数组传入，用显式栈代替递归。
+ * 实例持有可复用的工作数组，非线程安全。
+ */
+class PathSimplifier {
+
+    private boolean[] keep = new boolean[64];
+    private int[] stack = new int[128];
+
+    /**
+     * 按地图缩放级别换算容差：约等于该级别下一个像素对应的经度跨度
+     */
+    static double toleranceForZoom(int zoom) {
+        return 360.0 / (256L << Math.max(0, Math.min(zoom, 22)));
+    }
+
+    /**
+     * 就地抽稀 xs/ys 的前 n 个点，保留的点前移，返回保留的点数；首尾两点始终保留
+     */
+    int simplify(double[] xs, double[] ys, int n, double tolerance) {
+        if (n <= 2 || tolerance <= 0) {
+            return n;
+        }
+        if (keep.length < n) {
+            keep = new boolean[n];
+        }
+        Arrays.fill(keep, 0, n, false);
+        keep[0] = true;
+        keep[n - 1] = true;
+        double tol2 = tolerance * tolerance;
+
+        int sp = 0;
+        stack = push(stack, sp, 0, n - 1);
+        sp += 2;
+        while (sp > 0) {
+            int last = stack[--sp];
+            int first = stack[--sp];
+            int idx = -1;
+            double max = tol2;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistance2(xs[i], ys[i], xs[first], ys[first], xs[last], ys[last]);
+                if (d > max) {
+                    max = d;
+                    idx = i;
+                }
+            }
+            if (idx >= 0) {
+                keep[idx] = true;
+                stack = push(stack, sp, first, idx);
+                sp += 2;
+                stack = push(stack, sp, idx, last);
+                sp += 2;
+            }
+        }
+
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                xs[m] = xs[i];
+                ys[m] = ys[i];
+                m++;
+            }
+        }
+        return m;
+    }
+
+    private static int[] push(int[] stack, int sp, int a, int b) {
+        if (sp + 2 > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length << 1);
+        }
+        stack[sp] = a;
+        stack[sp + 1] = b;
+        return stack;
+    }
+
+    /**
+     * 点 (px,py) 到线段 (ax,ay)-(bx,by) 距离的平方
+     */
+    private static double segmentDistance2(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / len2;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px;
+        double ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.distribute.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * 查询结果缓存。
+ * 只缓存按 bucket-seconds 对齐的窗口，loader 收到的就是请求的窗口，结果不含窗口外的数据：
+ * from 须是桶起点；to 不早于当前时间（窗口仍开放）时向上取整到桶末尾，此时桶内 to 之后还没有数据，
+ * 已结束的窗口 to 须是桶末尾。其余窗口不走缓存，按原样直接查询；需要共享缓存的调用方先用 alignFrom 对齐。
+ * 相同键的并发请求只触发一次后端查询（single-flight）。
+ * 入库时按数据域记录变化的时间桶，后台每秒把与这些桶重叠的条目淘汰，其余条目不受影响。
+ * 轨迹由独立的入库服务写入 HBase，消息到达时数据尚未落盘，因此同一个桶在 tracking-write-lag-seconds 后会再淘汰一次。
+ * 条目按估算的字节数计入 max-bytes 预算，超出时按 LRU 淘汰，另有 ttl-seconds 兜底过期。
+ * 缓存的结果对象由多个请求共享，调用方不得修改。
+ */
+@Component
+public class ResultCache {
+
+    /**
+     * 数据域，入库方按域上报变化
+     */
+    public enum Domain {
+        ORDERS, ALERTS, TRACKING
+    }
+
+    private record Key(Domain domain, String name, long from, long to) {
+    }
+
+    private static final class Entry {
+        final Key key;
+        final CompletableFuture<Object> future;
+        final long createdAt = System.currentTimeMillis();
+        // 异步调用方各自拿到一个副本，全部取消后才取消后端查询
+        final AtomicInteger waiters = new AtomicInteger();
+        volatile long weight;
+
+        Entry(Key key, CompletableFuture<Object> future) {
+            this.key = key;
+            this.future = future;
+        }
+    }
+
+    private final long bucketSeconds;
+    private final long maxBytes;
+    private final long ttlMs;
+    private final long trackingLagMs;
+
+    // 已完成的条目，按访问顺序排列，受 this 保护
+    private final LinkedHashMap<Key, Entry> done = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    // 正在查询的条目
+    private final ConcurrentHashMap<Key, Entry> loading = new ConcurrentHashMap<>();
+    // 各域自上次清理以来变化过的桶
+    private final Map<Domain, ConcurrentSkipListSet<Long>> dirty = new EnumMap<>(Domain.class);
+    // 等待写入方落盘后再次淘汰的桶 -> 到期时间（毫秒）
+    private final ConcurrentHashMap<Long, Long> trackingDelayed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "result-cache-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+
+    public ResultCache(@Value("${cache.bucket-seconds:60}") long bucketSeconds,
+                       @Value("${cache.max-bytes:67108864}") long maxBytes,
+                       @Value("${cache.ttl-seconds:300}") long ttlSeconds,
+                       @Value("${cache.tracking-write-lag-seconds:30}") long trackingLagSeconds) {
+        this.bucketSeconds = bucketSeconds;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlSeconds * 1000;
+        this.trackingLagMs = trackingLagSeconds * 1000;
+        for (Domain d : Domain.values()) {
+            dirty.put(d, new ConcurrentSkipListSet<>());
+        }
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public long alignFrom(long from) {
+        return Math.floorDiv(from, bucketSeconds) * bucketSeconds;
+    }
+
+    public long alignTo(long to) {
+        return Math.floorDiv(to, bucketSeconds) * bucketSeconds + bucketSeconds - 1;
+    }
+
+    /**
+     * 缓存键，窗口没有对齐到桶时返回 null（直接查询，不缓存）
+     */
+    private Key keyFor(Domain domain, String name, long from, long to) {
+        if (from != alignFrom(from)) {
+            return null;
+        }
+        if (to >= System.currentTimeMillis() / 1000) {
+            return new Key(domain, name, from, alignTo(to));
+        }
+        return to == alignTo(to) && to >= from ? new Key(domain, name, from, to) : null;
+    }
+
+    /**
+     * 入库方上报某域在 ts（秒）处有新数据。轨迹由其他进程落盘，除立即淘汰外还会在写入延迟之后再淘汰一次
+     */
+    public void touch(Domain domain, long ts) {
+        long bucket = Math.floorDiv(ts, bucketSeconds);
+        dirty.get(domain).add(bucket);
+        if (domain == Domain.TRACKING && trackingLagMs > 0) {
+            trackingDelayed.merge(bucket, System.currentTimeMillis() + trackingLagMs, Math::max);
+        }
+    }
+
+    /**
+     * 同步查询。from/to 为秒，开放窗口的 to 延伸到桶末尾后传给 loader；name 需包含除时间外的全部查询参数
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Domain domain, String name, long from, long to, BiFunction<Long, Long, T> loader) {
+        try {
+            return (T) lookup(domain, name, from, to,
+                    (f, t) -> CompletableFuture.completedFuture(loader.apply(f, t))).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 异步查询。返回的 future 是共享查询的副本，取消它只会在所有等待者都取消后才取消后端查询
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> getAsync(Domain domain, String name, long from, long to,
+                                             BiFunction<Long, Long, CompletableFuture<T>> loader) {
+        CompletableFuture<Object> shared = lookup(domain, name, from, to,
+                (f, t) -> (CompletableFuture<Object>) loader.apply(f, t));
+        Key key = keyFor(domain, name, from, to);
+        // 不走缓存的查询由调用方独占，直接返回以便取消时停止后端查询
+        if (shared.isDone() || key == null) {
+            return (CompletableFuture<T>) shared;
+        }
+        Entry entry = loading.get(key);
+        CompletableFuture<T> copy = (CompletableFuture<T>) shared.thenApply(v -> v);
+        if (entry != null && entry.future == shared) {
+            entry.waiters.incrementAndGet();
+            copy.whenComplete((v, e) -> {
+                if (copy.isCancelled() && entry.waiters.decrementAndGet() == 0 && !shared.isDone()) {
+                    loading.remove(entry.key, entry);
+                    shared.cancel(true);
+                }
+            });
+        }
+        return copy;
+    }
+
+    private CompletableFuture<Object> lookup(Domain domain, String name, long from, long to,
+                                             BiFunction<Long, Long, CompletableFuture<Object>> loader) {
+        Key key = keyFor(domain, name, from, to);
+        if (key == null) {
+            bypassed.incrementAndGet();
+            try {
+                return loader.apply(from, to);
+            } catch (RuntimeException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+        synchronized (this) {
+            Entry e = done.get(key);
+            if (e != null) {
+                if (System.currentTimeMillis() - e.createdAt <= ttlMs) {
+                    hits.incrementAndGet();
+                    return e.future;
+                }
+                removeDone(key);
+                expirations.incrementAndGet();
+            }
+        }
+        Entry fresh = new Entry(key, new CompletableFuture<>());
+        Entry existing = loading.putIfAbsent(key, fresh);
+        if (existing != null) {
+            collapsed.incrementAndGet();
+            return existing.future;
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Object> source;
+        try {
+            source = loader.apply(key.from(), key.to());
+        } catch (RuntimeException ex) {
+            loading.remove(key, fresh);
+            fresh.future.completeExceptionally(ex);
+            return fresh.future;
+        }
+        source.whenComplete((value, error) -> {
+            if (error != null) {
+                loading.remove(key, fresh);
+                fresh.future.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                return;
+            }
+            // 查询期间被入库淘汰时 loading 中已没有该条目，结果只返回给当前等待者而不缓存
+            if (loading.remove(key, fresh)) {
+                fresh.weight = estimate(value);
+                synchronized (this) {
+                    done.put(key, fresh);
+                    totalBytes += fresh.weight;
+                    evictOverBudget();
+                }
+            }
+            fresh.future.complete(value);
+        });
+        fresh.future.whenComplete((v, e) -> {
+            if (fresh.future.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return fresh.future;
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Key, Entry>> it = done.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry e = it.next().getValue();
+            it.remove();
+            totalBytes -= e.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void removeDone(Key key) {
+        Entry e = done.remove(key);
+        if (e != null) {
+            totalBytes -= e.weight;
+        }
+    }
+
+    /**
+     * 淘汰与变化桶重叠的条目，包括正在查询的（它们的结果不会进入缓存）
+     */
+    void sweep() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Long> e : trackingDelayed.entrySet()) {
+            if (e.getValue() <= now && trackingDelayed.remove(e.getKey(), e.getValue())) {
+                dirty.get(Domain.TRACKING).add(e.getKey());
+            }
+        }
+        for (Domain d : Domain.values()) {
+            ConcurrentSkipListSet<Long> set = dirty.get(d);
+            if (set.isEmpty()) {
+                continue;
+            }
+            List<Long> buckets = new ArrayList<>();
+            for (Long b = set.pollFirst(); b != null; b = set.pollFirst()) {
+                buckets.add(b);
+            }
+            synchronized (this) {
+                Iterator<Map.Entry<Key, Entry>> it = done.entrySet().iterator();
+                while (it.hasNext()) {
+                    Entry e = it.next().getValue();
+                    if (e.key.domain() == d && overlaps(e.key, buckets)) {
+                        it.remove();
+                        totalBytes -= e.weight;
+                        invalidations.incrementAndGet();
+                    }
+                }
+            }
+            for (Entry e : loading.values()) {
+                if (e.key.domain() == d && overlaps(e.key, buckets)) {
+                    loading.remove(e.key, e);
+                }
+            }
+        }
+    }
+
+    private boolean overlaps(Key key, List<Long> sortedBuckets) {
+        long lo = Math.floorDiv(key.from(), bucketSeconds);
+        long hi = Math.floorDiv(key.to(), bucketSeconds);
+        for (long b : sortedBuckets) {
+            if (b > hi) {
+                return false;
+            }
+            if (b >= lo) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 粗略估算结果占用的字节数，只用于淘汰预算
+     */
+    static long estimate(Object v) {
+        if (v == null) {
+            return 16;
+        }
+        if (v instanceof String s) {
+            return 40 + 2L * s.length();
+        }
+        if (v instanceof Number || v instanceof Boolean) {
+            return 16;
+        }
+        if (v instanceof double[] a) {
+            return 16 + 8L * a.length;
+        }
+        if (v instanceof Map<?, ?> m) {
+            long n = 48;
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                n += 32 + estimate(e.getKey()) + estimate(e.getValue());
+            }
+            return n;
+        }
+        if (v instanceof Collection<?> c) {
+            long n = 40;
+            for (Object o : c) {
+                n += 8 + estimate(o);
+            }
+            return n;
+        }
+        return 64;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new HashMap<>();
+        synchronized (this) {
+            m.put("entries", done.size());
+            m.put("bytes", totalBytes);
+        }
+        m.put("maxBytes", maxBytes);
+        m.put("loading", loading.size());
+        m.put("hits", hits.get());
+        m.put("misses", misses.get());
+        m.put("collapsed", collapsed.get());
+        m.put("evictions", evictions.get());
+        m.put("invalidations", invalidations.get());
+        m.put("expirations", expirations.get());
+        m.put("bypassed", bypassed.get());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
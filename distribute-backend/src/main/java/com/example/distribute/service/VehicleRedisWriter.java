@@ -0,0 +1,212 @@
+package com.example.distribute.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 车辆位置的 Redis 异步合并写入（write-behind）。
+ * 刷新窗口内同一车辆只保留最后一次更新，定时用 pipeline 批量执行 HSET + SADD，
+ * 使 Redis 写入频率与车辆数相关，而不是与消息速率相关。
+ */
+@Component
+public class VehicleRedisWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(VehicleRedisWriter.class);
+
+    private final JedisPool jedisPool;
+    private final long flushIntervalMs;
+
+    /**
+     * 单辆车的最新位置，提交时原地覆盖，刷新时才转成字符串字段
+     */
+    private static final class Slot {
+        double lat;
+        double lon;
+        double speed;
+        double timestamp;
+        String status;
+        int load;
+        boolean dirty;
+    }
+
+    // vehicleId -> 最新位置，车辆首次出现时创建，之后复用
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "vehicle-redis-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile int lastFlushSize;
+    private volatile long lastFlushMicros;
+    private volatile long maxFlushMicros;
+
+    public VehicleRedisWriter(JedisPool jedisPool,
+                              @Value("${vehicle.redis.flush-interval-ms:200}") long flushIntervalMs) {
+        this.jedisPool = jedisPool;
+        this.flushIntervalMs = flushIntervalMs;
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交一次位置更新，同一车辆未刷新的旧值会被覆盖；status 为 null、load 为负时不写该字段。
+     * 只更新该车辆的槽位，不分配对象
+     */
+    public void submit(String vehicleId, double lat, double lon, double speed, double timestamp,
+                       String status, int load) {
+        received.incrementAndGet();
+        Slot slot = slots.get(vehicleId);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(vehicleId, k -> new Slot());
+        }
+        synchronized (slot) {
+            slot.lat = lat;
+            slot.lon = lon;
+            slot.speed = speed;
+            slot.timestamp = timestamp;
+            slot.status = status;
+            slot.load = load;
+            if (!slot.dirty) {
+                slot.dirty = true;
+                pending.incrementAndGet();
+            }
+        }
+    }
+
+    public int pendingSize() {
+        return pending.get();
+    }
+
+    /**
+     * 立即刷新当前所有待写入数据，返回写入的车辆数；失败时抛出异常，数据保留到下次刷新
+     */
+    public synchronized int flush() {
+        if (pending.get() == 0) {
+            return 0;
+        }
+        List<Slot> taken = new ArrayList<>();
+        Map<String, Map<String, String>> batch = new HashMap<>();
+        for (Map.Entry<String, Slot> e : slots.entrySet()) {
+            Slot slot = e.getValue();
+            Map<String, String> fields;
+            synchronized (slot) {
+                if (!slot.dirty) {
+                    continue;
+                }
+                slot.dirty = false;
+                pending.decrementAndGet();
+                fields = fields(slot);
+            }
+            taken.add(slot);
+            batch.put(e.getKey(), fields);
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline p = jedis.pipelined();
+            for (var e : batch.entrySet()) {
+                String key = "vehicle:" + e.getKey();
+                p.hset(key, e.getValue());
+                p.sadd("vehicle:keys", key);
+            }
+            p.sync();
+        } catch (RuntimeException e) {
+            // 写入失败时重新标记，槽位中始终是最新值，下次刷新写入
+            for (Slot slot : taken) {
+                synchronized (slot) {
+                    if (!slot.dirty) {
+                        slot.dirty = true;
+                        pending.incrementAndGet();
+                    }
+                }
+            }
+            failedFlushes.incrementAndGet();
+            throw e;
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+        lastFlushSize = batch.size();
+        lastFlushMicros = micros;
+        if (micros > maxFlushMicros) {
+            maxFlushMicros = micros;
+        }
+        flushes.incrementAndGet();
+        written.addAndGet(batch.size());
+        return batch.size();
+    }
+
+    private static Map<String, String> fields(Slot slot) {
+        Map<String, String> fields = new HashMap<>(8);
+        fields.put("lat", plain(slot.lat));
+        fields.put("lon", plain(slot.lon));
+        fields.put("speed", plain(slot.speed));
+        fields.put("timestamp", plain(slot.timestamp));
+        if (slot.status != null) {
+            fields.put("status", slot.status);
+        }
+        if (slot.load >= 0) {
+            fields.put("load", Integer.toString(slot.load));
+        }
+        return fields;
+    }
+
+    /**
+     * 写成不带指数的十进制，与生产端 JSON 中的数字一致；Double.toString 会把秒级时间戳写成 1.7E9
+     */
+    static String plain(double v) {
+        return BigDecimal.valueOf(v).toPlainString();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Redis write-behind flush failed", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("flushIntervalMs", flushIntervalMs);
+        m.put("received", received.get());
+        m.put("written", written.get());
+        m.put("coalesced", received.get() - written.get() - pending.get());
+        m.put("pending", pending.get());
+        m.put("flushes", flushes.get());
+        m.put("failedFlushes", failedFlushes.get());
+        m.put("lastFlushSize", lastFlushSize);
+        m.put("lastFlushMicros", lastFlushMicros);
+        m.put("maxFlushMicros", maxFlushMicros);
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+}
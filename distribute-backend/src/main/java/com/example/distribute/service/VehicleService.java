@@ -1,8 +1,14 @@
 package com.example.distribute.service;
 
+import com.example.distribute.hbase.TrackingIndex;
+import com.example.distribute.hbase.TrackingRowKey;
+import com.example.distribute.hbase.TrajectoryBlock;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.TableNotFoundException;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
@@ -12,70 +18,295 @@ import java.util.*;
 @Service
 public class VehicleService {
 
+    private static final Logger log = LoggerFactory.getLogger(VehicleService.class);
+
     private final JedisPool jedisPool;
     private final Connection hbaseConn;
+    private final VehicleStateStore stateStore;
+    private final MetricsRegistry.Counter historyRows;
+    private final LatencyHistogram historyScanTime;
+    private final MetricsRegistry.Counter blockRows;
+    private final LatencyHistogram blockScanTime;
+    private volatile boolean warmed;
 
-    // 构造器注入 JedisPool 和 HBase Connection
-    public VehicleService(JedisPool jedisPool, Connection hbaseConn) {
+    // 构造器注入 JedisPool、HBase Connection 和内存状态存储
+    public VehicleService(JedisPool jedisPool, Connection hbaseConn, VehicleStateStore stateStore,
+                          MetricsRegistry metrics) {
         this.jedisPool = jedisPool;
         this.hbaseConn = hbaseConn;
+        this.stateStore = stateStore;
+        this.historyRows = metrics.counter("hbase_rows_scanned_total", "HBase rows read", "source", "vehicle_history");
+        this.historyScanTime = metrics.histogram("hbase_scan_seconds", "Time to drain one HBase scanner",
+                "source", "vehicle_history");
+        this.blockRows = metrics.counter("hbase_rows_scanned_total", "HBase rows read", "source", "vehicle_blocks");
+        this.blockScanTime = metrics.histogram("hbase_scan_seconds", "Time to drain one HBase scanner",
+                "source", "vehicle_blocks");
     }
 
     public List<Map<String, Object>> getAllCurrentStatuses() {
+        // 重启后第一条 Kafka 消息就会让内存非空，必须先用 Redis 补齐此前已知的车辆
+        if (!warmed) {
+            warmFromRedis();
+        }
+        return stateStore.snapshot();
+    }
+
+    // 把 Redis 中内存尚未见过的车辆装入状态存储，成功一次后不再重复；Redis 不可用时下次请求重试
+    private synchronized void warmFromRedis() {
+        if (warmed) {
+            return;
+        }
         try (var jedis = jedisPool.getResource()) {
             Set<String> keys = jedis.smembers("vehicle:keys");
-            List<Map<String, Object>> list = new ArrayList<>();
             for (String key : keys) {
+                String vid = key.substring(key.indexOf(':') + 1);
+                if (stateStore.contains(vid)) {
+                    continue;
+                }
                 Map<String, String> data = jedis.hgetAll(key);
-                Map<String, Object> m = new HashMap<>();
-                m.put("vehicleId", key.split(":")[1]);
-                m.put("latitude", Double.parseDouble(data.get("lat")));
-                m.put("longitude", Double.parseDouble(data.get("lon")));
-                m.put("speed", Double.parseDouble(data.get("speed")));
-                m.put("status", data.getOrDefault("status", "UNKNOW"));
-                m.put("load", data.getOrDefault("load", "0"));
-                list.add(m);
+                if (data.get("lat") == null || data.get("lon") == null) {
+                    continue;
+                }
+                stateStore.putIfAbsent(vid,
+                        Double.parseDouble(data.get("lat")),
+                        Double.parseDouble(data.get("lon")),
+                        number(data.get("speed")),
+                        number(data.get("timestamp")),
+                        data.get("status"),
+                        (int) number(data.get("load")));
             }
-            return list;
+            warmed = true;
+        } catch (RuntimeException e) {
+            log.warn("从 Redis 预热车辆状态失败，暂时只返回内存中的车辆: {}", e.toString());
+        }
+    }
+
+    private static double number(String v) {
+        if (v == null || v.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
+    // 内存与 Redis 两条路径返回相同的数值类型
     public Map<String, Object> getCurrentLocation(String id) {
+        Map<String, Object> cached = new HashMap<>();
+        boolean found = stateStore.read(id, (vid, lat, lon, speed, ts, status, load) -> {
+            cached.put("vehicleId", vid);
+            cached.put("latitude", lat);
+            cached.put("longitude", lon);
+            cached.put("speed", speed);
+            cached.put("timestamp", ts);
+        });
+        if (found) {
+            return cached;
+        }
         try (var jedis = jedisPool.getResource()) {
             Map<String, String> d = jedis.hgetAll("vehicle:" + id);
-            return Map.of(
-                "vehicleId", id,
-                "latitude", d.get("lat"),
-                "longitude", d.get("lon"),
-                "speed", d.get("speed"),
-                "timestamp", d.get("timestamp")
-            );
+            Map<String, Object> m = new HashMap<>();
+            m.put("vehicleId", id);
+            m.put("latitude", d.get("lat") != null ? Double.parseDouble(d.get("lat")) : null);
+            m.put("longitude", d.get("lon") != null ? Double.parseDouble(d.get("lon")) : null);
+            m.put("speed", number(d.get("speed")));
+            m.put("timestamp", number(d.get("timestamp")));
+            return m;
         }
     }
 
-    public List<Map<String, Object>> getLocationHistory(String id, Long from, Long to) {
-        List<Map<String, Object>> history = new ArrayList<>();
-        try (var table = hbaseConn.getTable(TableName.valueOf("vehicle_tracking"))) {
-            Scan scan = new Scan();
-            scan.setRowPrefixFilter(Bytes.toBytes(id + "_"));
-            try (var rs = table.getScanner(scan)) {
-                for (var r : rs) {
-                    String rk = Bytes.toString(r.getRow());
-                    long ts = Long.parseLong(rk.split("_")[1]);
-                    if (ts >= from && (to == null || ts <= to)) {
-                        history.add(Map.of(
-                            "timestamp", ts,
-                            "latitude", Bytes.toString(r.getValue(Bytes.toBytes("loc"), Bytes.toBytes("lat"))),
-                            "longitude", Bytes.toString(r.getValue(Bytes.toBytes("loc"), Bytes.toBytes("lon"))),
-                            "speed", Bytes.toString(r.getValue(Bytes.toBytes("stat"), Bytes.toBytes("speed")))
-                        ));
+    private static final byte[] LOC = Bytes.toBytes("loc");
+    private static final byte[] STAT = Bytes.toBytes("stat");
+    private static final byte[] LAT = Bytes.toBytes("lat");
+    private static final byte[] LON = Bytes.toBytes("lon");
+    private static final byte[] SPEED = Bytes.toBytes("speed");
+
+    public static final int DEFAULT_HISTORY_LIMIT = 1000;
+    public static final int MAX_HISTORY_LIMIT = 10000;
+
+    /**
+     * 一页轨迹点，nextCursor 为 null 表示没有更多数据
+     */
+    public record HistoryPage(List<Map<String, Object>> items, String nextCursor) {
+    }
+
+    /**
+     * 分页读取轨迹。时间范围直接换算成 startRow/stopRow 在服务端截取，
+     * cursor 为上一页最后一个点的时间戳，不是整数时抛出 IllegalArgumentException；newestFirst 时使用有界的反向扫描。
+     */
+    public HistoryPage getLocationHistory(String id, Long from, Long to, Integer limit,
+                                          boolean newestFirst, String cursor) {
+        int max = limit == null ? DEFAULT_HISTORY_LIMIT : Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT));
+        Long lo = from;
+        Long hi = to;
+        if (cursor != null && !cursor.isEmpty()) {
+            long c;
+            try {
+                c = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid cursor: " + cursor);
+            }
+            if (newestFirst) {
+                hi = hi == null ? c - 1 : Math.min(hi, c - 1);
+            } else {
+                lo = lo == null ? c + 1 : Math.max(lo, c + 1);
+            }
+        }
+        if (lo != null && hi != null && lo > hi) {
+            return new HistoryPage(List.of(), null);
+        }
+
+        // 已压缩的小时在块表中，未压缩的仍在原始表中，两边各取 max+1 个点后按时间归并
+        List<HistoryPoint> blocks = readBlocks(id, lo, hi, max + 1, newestFirst);
+        Scan scan = rangeScan(id, lo, hi, newestFirst)
+                .addColumn(LOC, LAT)
+                .addColumn(LOC, LON)
+                .addColumn(STAT, SPEED)
+                // 多取一行用于判断是否还有下一页
+                .setLimit(max + 1)
+                .setCaching(Math.min(max + 1, 1000))
+                .setCacheBlocks(max <= DEFAULT_HISTORY_LIMIT);
+
+        List<HistoryPoint> raw = new ArrayList<>(Math.min(max + 1, 256));
+        long start = System.nanoTime();
+        try (var table = hbaseConn.getTable(TableName.valueOf("vehicle_tracking"));
+             var rs = table.getScanner(scan)) {
+            for (var r : rs) {
+                raw.add(new HistoryPoint(
+                    TrackingRowKey.timestamp(r.getRow()),
+                    parse(r.getValue(LOC, LAT)),
+                    parse(r.getValue(LOC, LON)),
+                    parse(r.getValue(STAT, SPEED))
+                ));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            historyRows.add(raw.size());
+            historyScanTime.recordNanos(System.nanoTime() - start);
+        }
+
+        List<Map<String, Object>> history = new ArrayList<>(Math.min(max, 256));
+        String next = null;
+        int i = 0;
+        int j = 0;
+        while (i < raw.size() || j < blocks.size()) {
+            HistoryPoint p;
+            if (j >= blocks.size()) {
+                p = raw.get(i++);
+            } else if (i >= raw.size()) {
+                p = blocks.get(j++);
+            } else {
+                long a = raw.get(i).ts();
+                long b = blocks.get(j).ts();
+                if (a == b) {
+                    // 同一时间戳两边都有时以原始行为准
+                    j++;
+                    p = raw.get(i++);
+                } else if ((a < b) != newestFirst) {
+                    p = raw.get(i++);
+                } else {
+                    p = blocks.get(j++);
+                }
+            }
+            if (history.size() == max) {
+                next = String.valueOf(history.get(max - 1).get("timestamp"));
+                break;
+            }
+            history.add(Map.of(
+                "timestamp", p.ts(),
+                "latitude", p.lat(),
+                "longitude", p.lon(),
+                "speed", p.speed()
+            ));
+        }
+        return new HistoryPage(history, next);
+    }
+
+    private record HistoryPoint(long ts, double lat, double lon, double speed) {
+    }
+
+    private static double parse(byte[] value) {
+        return value == null ? 0 : Double.parseDouble(Bytes.toString(value));
+    }
+
+    /**
+     * 构造该车辆在 [lo, hi] 内的行键范围扫描，两端为 null 表示不限
+     */
+    private static Scan rangeScan(String id, Long lo, Long hi, boolean newestFirst) {
+        byte[] lower = lo != null ? TrackingRowKey.of(id, lo) : TrackingRowKey.first(id);
+        Scan scan = new Scan();
+        if (newestFirst) {
+            scan.setReversed(true);
+            if (hi != null) {
+                scan.withStartRow(TrackingRowKey.of(id, hi), true);
+            } else {
+                scan.withStartRow(TrackingRowKey.afterLast(id), false);
+            }
+            scan.withStopRow(lower, true);
+        } else {
+            scan.withStartRow(lower, true);
+            if (hi != null) {
+                scan.withStopRow(TrackingRowKey.of(id, hi), true);
+            } else {
+                scan.withStopRow(TrackingRowKey.afterLast(id), false);
+            }
+        }
+        return scan;
+    }
+
+    /**
+     * 从 vehicle_tracking_block 读取 [lo, hi] 内最多 limit 个点，顺序与 newestFirst 一致。
+     * 块行键与原始行键同为 {vehicleId}_{10 位秒}，只是秒数对齐到小时桶。
+     */
+    private List<HistoryPoint> readBlocks(String id, Long lo, Long hi, int limit, boolean newestFirst) {
+        Scan scan = rangeScan(id,
+                lo != null ? TrackingIndex.bucketOf(lo) : null,
+                hi != null ? TrackingIndex.bucketOf(hi) : null,
+                newestFirst)
+                .addColumn(TrajectoryBlock.FAMILY, TrajectoryBlock.QUALIFIER)
+                .setCaching(16);
+        List<HistoryPoint> points = new ArrayList<>();
+        TrajectoryBlock block = new TrajectoryBlock();
+        long start = System.nanoTime();
+        long rows = 0;
+        try (var table = hbaseConn.getTable(TableName.valueOf(TrajectoryBlock.TABLE));
+             var rs = table.getScanner(scan)) {
+            for (var r : rs) {
+                rows++;
+                byte[] v = r.getValue(TrajectoryBlock.FAMILY, TrajectoryBlock.QUALIFIER);
+                if (v == null) {
+                    continue;
+                }
+                block.decode(v, 0, v.length);
+                int n = block.size();
+                for (int k = 0; k < n && points.size() < limit; k++) {
+                    int idx = newestFirst ? n - 1 - k : k;
+                    long ts = block.ts(idx);
+                    if ((lo == null || ts >= lo) && (hi == null || ts <= hi)) {
+                        points.add(new HistoryPoint(ts, block.lat(idx), block.lon(idx), block.speed(idx)));
                     }
                 }
+                if (points.size() >= limit) {
+                    break;
+                }
             }
+        } catch (TableNotFoundException e) {
+            // 尚未运行过压缩
+            return List.of();
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            blockRows.add(rows);
+            blockScanTime.recordNanos(System.nanoTime() - start);
         }
-        return history;
+        return points;
+    }
+
+    public List<Map<String, Object>> getLocationHistory(String id, Long from, Long to) {
+        return getLocationHistory(id, from, to, null, false, null).items();
     }
 
     // 重载方法，只有from参数时调用
@@ -0,0 +1,188 @@
+package com.example.distribute.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 车辆实时状态的 JVM 内存存储。
+ * 由 Kafka vehicle-location 消息直接驱动，按车辆下标把各字段存放在并行的原始类型数组中（列式布局），
+ * 读取时无需访问 Redis；Redis 仅作为持久化镜像和冷启动时的兜底。
+ */
+@Component
+public class VehicleStateStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // vehicleId -> 数组下标，下标一经分配不再变化
+    private final Map<String, Integer> index = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private double[] lat = new double[INITIAL_CAPACITY];
+    private double[] lon = new double[INITIAL_CAPACITY];
+    private double[] speed = new double[INITIAL_CAPACITY];
+    private double[] timestamp = new double[INITIAL_CAPACITY];
+    private int[] load = new int[INITIAL_CAPACITY];
+    private String[] status = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * 读取回调，字段以原始类型传递，遍历过程中不产生装箱对象
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(String vehicleId, double lat, double lon, double speed, double timestamp, String status, int load);
+    }
+
+    public void update(String vehicleId, double latitude, double longitude, double spd,
+                       double ts, String st, int ld) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = index.get(vehicleId);
+            int i;
+            if (slot == null) {
+                i = size++;
+                ensureCapacity(size);
+                ids[i] = vehicleId;
+                index.put(vehicleId, i);
+            } else {
+                i = slot;
+            }
+            lat[i] = latitude;
+            lon[i] = longitude;
+            speed[i] = spd;
+            timestamp[i] = ts;
+            // 状态取值只有少数几个，不为空时才覆盖，避免把已知状态冲掉
+            if (st != null) {
+                status[i] = st;
+            }
+            load[i] = ld;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 用持久化镜像预热，只写入内存中还没有的车辆，不会覆盖 Kafka 已经送达的更新
+     */
+    public boolean putIfAbsent(String vehicleId, double latitude, double longitude, double spd,
+                               double ts, String st, int ld) {
+        long stamp = lock.writeLock();
+        try {
+            if (index.containsKey(vehicleId)) {
+                return false;
+            }
+            int i = size++;
+            ensureCapacity(size);
+            ids[i] = vehicleId;
+            lat[i] = latitude;
+            lon[i] = longitude;
+            speed[i] = spd;
+            timestamp[i] = ts;
+            status[i] = st;
+            load[i] = ld;
+            index.put(vehicleId, i);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean contains(String vehicleId) {
+        return index.containsKey(vehicleId);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 读取单辆车的最新状态，不存在时返回 false
+     */
+    public boolean read(String vehicleId, Visitor visitor) {
+        Integer slot = index.get(vehicleId);
+        if (slot == null) {
+            return false;
+        }
+        int i = slot;
+        long stamp = lock.readLock();
+        try {
+            visitor.visit(ids[i], lat[i], lon[i], speed[i], timestamp[i], status[i], load[i]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return true;
+    }
+
+    /**
+     * 顺序遍历所有车辆，连续访问数组以获得较好的缓存局部性
+     */
+    public void forEach(Visitor visitor) {
+        long stamp = lock.readLock();
+        try {
+            for (int i = 0; i < size; i++) {
+                visitor.visit(ids[i], lat[i], lon[i], speed[i], timestamp[i], status[i], load[i]);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 在读锁内只复制各列的有效部分，释放锁后再逐辆构造结果，避免写入方在构造对象期间等待
+     */
+    public List<Map<String, Object>> snapshot() {
+        String[] ids;
+        double[] lat;
+        double[] lon;
+        double[] speed;
+        int[] load;
+        String[] status;
+        int n;
+        long stamp = lock.readLock();
+        try {
+            n = size;
+            ids = Arrays.copyOf(this.ids, n);
+            lat = Arrays.copyOf(this.lat, n);
+            lon = Arrays.copyOf(this.lon, n);
+            speed = Arrays.copyOf(this.speed, n);
+            load = Arrays.copyOf(this.load, n);
+            status = Arrays.copyOf(this.status, n);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        List<Map<String, Object>> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("vehicleId", ids[i]);
+            m.put("latitude", lat[i]);
+            m.put("longitude", lon[i]);
+            m.put("speed", speed[i]);
+            m.put("status", status[i] != null ? status[i] : "UNKNOW");
+            m.put("load", String.valueOf(load[i]));
+            list.add(m);
+        }
+        return list;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int cap = Math.max(required, ids.length << 1);
+        ids = Arrays.copyOf(ids, cap);
+        lat = Arrays.copyOf(lat, cap);
+        lon = Arrays.copyOf(lon, cap);
+        speed = Arrays.copyOf(speed, cap);
+        timestamp = Arrays.copyOf(timestamp, cap);
+        load = Arrays.copyOf(load, cap);
+        status = Arrays.copyOf(status, cap);
+    }
+}
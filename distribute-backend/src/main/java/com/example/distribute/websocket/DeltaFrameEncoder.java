@@ -0,0 +1,159 @@
+package com.example.distribute.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 合并帧的紧凑增量编码。
+ * 每个条目带一个字段掩码，只包含变化的字段；经纬度按 1e-6 度、速度按 0.01 定点化，
+ * 非关键帧条目写入与上次发送值的差值，时间戳写成相对帧时间的毫秒偏移。
+ *
+ * JSON 格式：{"type":"tick","ts":帧时间,"v":[["V100",掩码,值...],...]}
+ * 二进制格式：'D' 版本号 帧时间(8字节) 条目数(varint)，
+ * 每个条目为 ID长度(varint) ID 掩码(1字节) 各字段(zigzag varint，状态为长度+UTF-8)
+ */
+class DeltaFrameEncoder {
+
+    static final int LAT = 1;
+    static final int LON = 2;
+    static final int SPEED = 4;
+    static final int STATUS = 8;
+    static final int TS = 16;
+    // 关键帧：值为绝对值而不是差值
+    static final int KEY = 32;
+
+    private static final byte MAGIC = 'D';
+    private static final byte VERSION = 1;
+
+    private final boolean binary;
+    private final StringBuilder json = new StringBuilder(256);
+    private byte[] buf = new byte[256];
+    private int pos;
+    private int count;
+    private int countPos;
+    private long frameTs;
+
+    DeltaFrameEncoder(boolean binary) {
+        this.binary = binary;
+    }
+
+    void begin(long frameTs) {
+        this.frameTs = frameTs;
+        this.count = 0;
+        if (binary) {
+            pos = 0;
+            writeByte(MAGIC);
+            writeByte(VERSION);
+            writeLong(frameTs);
+            // 条目数最后回填，预留 5 字节
+            countPos = pos;
+            pos += 5;
+        } else {
+            json.setLength(0);
+            json.append("{\"type\":\"tick\",\"ts\":").append(frameTs).append(",\"v\":[");
+        }
+    }
+
+    void entry(String vehicleId, int mask, int lat, int lon, int speed, String status, long tsMs) {
+        if (binary) {
+            byte[] id = vehicleId.getBytes(StandardCharsets.UTF_8);
+            writeVarint(id.length);
+            writeBytes(id);
+            writeByte((byte) mask);
+            if ((mask & LAT) != 0) writeVarint(zigzag(lat));
+            if ((mask & LON) != 0) writeVarint(zigzag(lon));
+            if ((mask & SPEED) != 0) writeVarint(zigzag(speed));
+            if ((mask & STATUS) != 0) {
+                byte[] s = status.getBytes(StandardCharsets.UTF_8);
+                writeVarint(s.length);
+                writeBytes(s);
+            }
+            if ((mask & TS) != 0) writeVarint(zigzag(tsMs - frameTs));
+        } else {
+            if (count > 0) {
+                json.append(',');
+            }
+            json.append("[\"");
+            appendEscaped(vehicleId);
+            json.append("\",").append(mask);
+            if ((mask & LAT) != 0) json.append(',').append(lat);
+            if ((mask & LON) != 0) json.append(',').append(lon);
+            if ((mask & SPEED) != 0) json.append(',').append(speed);
+            if ((mask & STATUS) != 0) {
+                json.append(",\"");
+                appendEscaped(status);
+                json.append('"');
+            }
+            if ((mask & TS) != 0) json.append(',').append(tsMs - frameTs);
+            json.append(']');
+        }
+        count++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    String finishText() {
+        json.append("]}");
+        return json.toString();
+    }
+
+    byte[] finishBinary() {
+        // 回填条目数：固定占 5 字节的 varint，保证不需要移动后续数据
+        int c = count;
+        for (int i = 0; i < 4; i++) {
+            buf[countPos + i] = (byte) ((c & 0x7F) | 0x80);
+            c >>>= 7;
+        }
+        buf[countPos + 4] = (byte) (c & 0x7F);
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private void appendEscaped(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                json.append('\\');
+            }
+            json.append(ch);
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private void writeVarint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void writeLong(long v) {
+        ensure(8);
+        for (int i = 7; i >= 0; i--) {
+            buf[pos++] = (byte) (v >>> (i * 8));
+        }
+    }
+
+    private void writeByte(byte b) {
+        ensure(1);
+        buf[pos++] = b;
+    }
+
+    private void writeBytes(byte[] b) {
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+    private void ensure(int n) {
+        if (pos + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.distribute.websocket;
+
+import com.example.distribute.service.VehicleStateStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 位置消息按时间片合并推送。
+ * 选择合并模式的会话不再逐条接收原始 JSON，而是每个 tick 收到一帧批量增量：
+ * tick 内同一车辆只取最新状态，且只包含相对该会话上次发送值变化了的字段。
+ * 增量帧依赖客户端收齐之前的每一帧：会话发送队列发生过丢帧时，下一个 tick 对该会话重新同步，
+ * 清空基线并把它此前收到过的全部车辆按关键帧重发一遍。
+ */
+@Component
+public class LocationConflator {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationConflator.class);
+
+    // 每隔多少个 tick 清空各会话基线强制发送关键帧，慢客户端被丢帧后可借此恢复一致
+    private static final int KEYFRAME_INTERVAL = 50;
+
+    private static final class SessionState {
+        final WebSocketSession session;
+        final DeltaFrameEncoder encoder;
+        final boolean binary;
+        // vehicleId -> 上次发给该会话的值，只在 tick 线程中访问
+        final Map<String, Sent> sent = new HashMap<>();
+        // 上个 tick 看到的发送队列丢帧数
+        long dropped;
+
+        SessionState(WebSocketSession session, boolean binary) {
+            this.session = session;
+            this.binary = binary;
+            this.encoder = new DeltaFrameEncoder(binary);
+        }
+    }
+
+    private static final class Sent {
+        int lat;
+        int lon;
+        int speed;
+        long ts;
+        String status;
+    }
+
+    private final VehicleStateStore stateStore;
+    private final WebSocketFanout fanout;
+    private final SubscriptionIndex subscriptions;
+    private final long tickMs;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    // 本 tick 内有更新的车辆 -> 原始消息累计字节数
+    private final Map<String, AtomicLong> dirty = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ws-conflation-tick");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // tick 内收集到的车辆状态，按列存放并在 tick 之间复用
+    private String[] ids = new String[256];
+    private int[] lat = new int[256];
+    private int[] lon = new int[256];
+    private int[] speed = new int[256];
+    private long[] ts = new long[256];
+    private String[] status = new String[256];
+    private double[] rawLat = new double[256];
+    private double[] rawLon = new double[256];
+    private long[] rawBytes = new long[256];
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong rawBytesTotal = new AtomicLong();
+    private final AtomicLong sentBytesTotal = new AtomicLong();
+    private volatile double savedBytesPerSecond;
+
+    public LocationConflator(VehicleStateStore stateStore, WebSocketFanout fanout, SubscriptionIndex subscriptions,
+                             @Value("${ws.conflation.tick-ms:200}") long tickMs) {
+        this.stateStore = stateStore;
+        this.fanout = fanout;
+        this.subscriptions = subscriptions;
+        this.tickMs = Math.max(50, Math.min(tickMs, 5000));
+        ticker.scheduleAtFixedRate(this::tickQuietly, this.tickMs, this.tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void enable(WebSocketSession session, boolean binary) {
+        sessions.put(session.getId(), new SessionState(session, binary));
+    }
+
+    public void disable(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    public boolean hasSessions() {
+        return !sessions.isEmpty();
+    }
+
+    public Set<String> sessionIds() {
+        return sessions.keySet();
+    }
+
+    /**
+     * 标记车辆在本 tick 内有更新，最新状态在 tick 时从 VehicleStateStore 读取
+     */
+    public void mark(String vehicleId, int rawLength) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        dirty.computeIfAbsent(vehicleId, k -> new AtomicLong()).addAndGet(rawLength);
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (Exception e) {
+            log.error("Conflated location tick failed", e);
+        }
+    }
+
+    private void tick() {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        int n = dirty.isEmpty() ? 0 : collect();
+        long now = System.currentTimeMillis();
+        boolean keyframe = ticks.get() % KEYFRAME_INTERVAL == 0;
+        long raw = 0;
+        long sentBytes = 0;
+        Set<String> tickIds = null;
+        for (SessionState s : sessions.values()) {
+            if (!s.session.isOpen()) {
+                continue;
+            }
+            int m = n;
+            long dropped = fanout.droppedFrames(s.session.getId());
+            if (dropped != s.dropped) {
+                s.dropped = dropped;
+                if (tickIds == null) {
+                    tickIds = new HashSet<>(Arrays.asList(ids).subList(0, n));
+                }
+                m = appendResync(s, n, tickIds);
+            } else if (n == 0) {
+                continue;
+            }
+            if (keyframe) {
+                s.sent.clear();
+            }
+            Subscription sub = subscriptions.get(s.session.getId());
+            DeltaFrameEncoder enc = s.encoder;
+            enc.begin(now);
+            long sessionRaw = 0;
+            for (int i = 0; i < m; i++) {
+                if (!sub.matchesLocation(ids[i], rawLat[i], rawLon[i])) {
+                    // 不在订阅范围内时丢弃基线，重新进入范围时发送完整关键帧
+                    s.sent.remove(ids[i]);
+                    continue;
+                }
+                sessionRaw += rawBytes[i];
+                encodeEntry(s, enc, i);
+            }
+            if (enc.count() == 0) {
+                continue;
+            }
+            int size;
+            if (s.binary) {
+                byte[] frame = enc.finishBinary();
+                size = frame.length;
+                fanout.send(s.session, null, new BinaryMessage(frame));
+            } else {
+                String frame = enc.finishText();
+                size = frame.length();
+                fanout.send(s.session, null, new TextMessage(frame));
+            }
+            frames.incrementAndGet();
+            raw += sessionRaw;
+            sentBytes += size;
+        }
+        ticks.incrementAndGet();
+        rawBytesTotal.addAndGet(raw);
+        sentBytesTotal.addAndGet(sentBytes);
+        double saved = (raw - sentBytes) * 1000.0 / tickMs;
+        savedBytesPerSecond = savedBytesPerSecond * 0.9 + saved * 0.1;
+    }
+
+    /**
+     * 丢过帧的会话：清空基线，把本 tick 没有更新的已发送车辆追加到 n 之后，与本 tick 的车辆一起按关键帧发送。
+     * 返回该会话本 tick 的条目数
+     */
+    private int appendResync(SessionState s, int n, Set<String> tickIds) {
+        List<String> previous = new ArrayList<>(s.sent.keySet());
+        s.sent.clear();
+        int m = n;
+        for (String vid : previous) {
+            if (tickIds.contains(vid)) {
+                continue;
+            }
+            ensureCapacity(m + 1);
+            if (read(vid, m)) {
+                rawBytes[m] = 0;
+                m++;
+            }
+        }
+        return m;
+    }
+
+    private void encodeEntry(SessionState s, DeltaFrameEncoder enc, int i) {
+        Sent prev = s.sent.get(ids[i]);
+        if (prev == null) {
+            prev = new Sent();
+            s.sent.put(ids[i], prev);
+            enc.entry(ids[i], DeltaFrameEncoder.KEY | DeltaFrameEncoder.LAT | DeltaFrameEncoder.LON
+                            | DeltaFrameEncoder.SPEED | (status[i] != null ? DeltaFrameEncoder.STATUS : 0)
+                            | DeltaFrameEncoder.TS,
+                    lat[i], lon[i], speed[i], status[i], ts[i]);
+        } else {
+            int mask = 0;
+            if (lat[i] != prev.lat) mask |= DeltaFrameEncoder.LAT;
+            if (lon[i] != prev.lon) mask |= DeltaFrameEncoder.LON;
+            if (speed[i] != prev.speed) mask |= DeltaFrameEncoder.SPEED;
+            if (status[i] != null && !status[i].equals(prev.status)) mask |= DeltaFrameEncoder.STATUS;
+            if (ts[i] != prev.ts) mask |= DeltaFrameEncoder.TS;
+            if (mask == 0) {
+                return;
+            }
+            enc.entry(ids[i], mask, lat[i] - prev.lat, lon[i] - prev.lon, speed[i] - prev.speed, status[i], ts[i]);
+        }
+        prev.lat = lat[i];
+        prev.lon = lon[i];
+        prev.speed = speed[i];
+        prev.ts = ts[i];
+        if (status[i] != null) {
+            prev.status = status[i];
+        }
+    }
+
+    /**
+     * 取出本 tick 的脏车辆并从状态存储读取最新值，返回条目数
+     */
+    private int collect() {
+        int n = 0;
+        for (String vid : dirty.keySet()) {
+            AtomicLong bytes = dirty.remove(vid);
+            if (bytes == null) {
+                continue;
+            }
+            ensureCapacity(n + 1);
+            if (read(vid, n)) {
+                rawBytes[n] = bytes.get();
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 从状态存储读取车辆最新值填入第 i 个条目
+     */
+    private boolean read(String vid, int i) {
+        return stateStore.read(vid, (id, la, lo, sp, t, st, ld) -> {
+            ids[i] = id;
+            rawLat[i] = la;
+            rawLon[i] = lo;
+            lat[i] = (int) Math.round(la * 1_000_000);
+            lon[i] = (int) Math.round(lo * 1_000_000);
+            speed[i] = (int) Math.round(sp * 100);
+            ts[i] = (long) (t * 1000);
+            status[i] = st;
+        });
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int cap = Math.max(required, ids.length << 1);
+        ids = Arrays.copyOf(ids, cap);
+        lat = Arrays.copyOf(lat, cap);
+        lon = Arrays.copyOf(lon, cap);
+        speed = Arrays.copyOf(speed, cap);
+        ts = Arrays.copyOf(ts, cap);
+        status = Arrays.copyOf(status, cap);
+        rawLat = Arrays.copyOf(rawLat, cap);
+        rawLon = Arrays.copyOf(rawLon, cap);
+        rawBytes = Arrays.copyOf(rawBytes, cap);
+    }
+
+    public Map<String, Object> stats() {
+        long raw = rawBytesTotal.get();
+        long sent = sentBytesTotal.get();
+        Map<String, Object> m = new HashMap<>();
+        m.put("tickMs", tickMs);
+        m.put("sessions", sessions.size());
+        m.put("ticks", ticks.get());
+        m.put("frames", frames.get());
+        m.put("rawBytes", raw);
+        m.put("sentBytes", sent);
+        m.put("savedBytes", raw - sent);
+        m.put("savedBytesPerSecond", Math.round(savedBytesPerSecond));
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
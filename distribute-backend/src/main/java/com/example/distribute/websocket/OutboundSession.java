@@ -0,0 +1,198 @@
+package com.example.distribute.websocket;
+
+import com.example.distribute.service.LatencyHistogram;
+import com.example.distribute.service.MetricsRegistry;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个 WebSocket 会话的有界发送队列。
+ * 入队由任意线程调用，出队发送同一时刻只会有一个线程执行，保证对 session 的串行写。
+ */
+class OutboundSession {
+
+    private record Frame(String key, WebSocketMessage<?> message) {
+    }
+
+    private final WebSocketSession session;
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+    private final ArrayDeque<Frame> queue;
+    // 所有会话共用的全局指标
+    private final LatencyHistogram sendLatency;
+    private final MetricsRegistry.Counter sendFailures;
+    // 是否已有线程在负责发送
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong sendNanosTotal = new AtomicLong();
+    private volatile long sendNanosMax;
+    private volatile boolean closed;
+
+    OutboundSession(WebSocketSession session, int capacity, SlowConsumerPolicy policy,
+                    LatencyHistogram sendLatency, MetricsRegistry.Counter sendFailures) {
+        this.session = session;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.sendLatency = sendLatency;
+        this.sendFailures = sendFailures;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 入队一帧，返回是否需要调度发送任务
+     */
+    boolean offer(String key, WebSocketMessage<?> message) {
+        if (closed) {
+            return false;
+        }
+        boolean disconnect = false;
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                switch (policy) {
+                    case DROP_OLDEST -> {
+                        queue.pollFirst();
+                        dropped.incrementAndGet();
+                    }
+                    case CONFLATE -> {
+                        if (replaceSameKey(key, message)) {
+                            dropped.incrementAndGet();
+                            enqueued.incrementAndGet();
+                            return false;
+                        }
+                        queue.pollFirst();
+                        dropped.incrementAndGet();
+                    }
+                    case DISCONNECT -> disconnect = true;
+                }
+            }
+            if (!disconnect) {
+                queue.addLast(new Frame(key, message));
+                enqueued.incrementAndGet();
+            }
+        }
+        if (disconnect) {
+            dropped.incrementAndGet();
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return false;
+        }
+        return scheduled.compareAndSet(false, true);
+    }
+
+    private boolean replaceSameKey(String key, WebSocketMessage<?> message) {
+        if (key == null) {
+            return false;
+        }
+        // 从队尾向前找最近的同 key 帧，原位替换以保持其他帧顺序
+        Iterator<Frame> it = queue.descendingIterator();
+        while (it.hasNext()) {
+            Frame f = it.next();
+            if (Objects.equals(f.key(), key)) {
+                it.remove();
+                queue.addLast(new Frame(key, message));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 发送最多 maxFrames 帧，返回队列是否仍有剩余需要再次调度
+     */
+    boolean drain(int maxFrames) {
+        for (int i = 0; i < maxFrames; i++) {
+            Frame f;
+            synchronized (queue) {
+                f = queue.pollFirst();
+            }
+            if (f == null) {
+                break;
+            }
+            if (closed || !session.isOpen()) {
+                closed = true;
+                clear();
+                break;
+            }
+            long start = System.nanoTime();
+            try {
+                session.sendMessage(f.message());
+                sent.incrementAndGet();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                sendFailures.inc();
+                close(CloseStatus.SERVER_ERROR);
+                break;
+            }
+            long nanos = System.nanoTime() - start;
+            sendLatency.recordNanos(nanos);
+            sendNanosTotal.addAndGet(nanos);
+            if (nanos > sendNanosMax) {
+                sendNanosMax = nanos;
+            }
+        }
+        scheduled.set(false);
+        // 释放标记后再检查一次，避免与并发入队之间丢失调度
+        synchronized (queue) {
+            if (queue.isEmpty() || closed) {
+                return false;
+            }
+        }
+        return scheduled.compareAndSet(false, true);
+    }
+
+    int depth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    void close(CloseStatus status) {
+        closed = true;
+        clear();
+        try {
+            session.close(status);
+        } catch (Exception ignored) {
+            // 会话可能已经关闭
+        }
+    }
+
+    private void clear() {
+        synchronized (queue) {
+            queue.clear();
+        }
+    }
+
+    Map<String, Object> stats() {
+        long n = sent.get();
+        Map<String, Object> m = new HashMap<>();
+        m.put("sessionId", session.getId());
+        m.put("queueDepth", depth());
+        m.put("enqueued", enqueued.get());
+        m.put("sent", n);
+        m.put("dropped", dropped.get());
+        m.put("failures", failures.get());
+        m.put("avgSendMicros", n == 0 ? 0 : sendNanosTotal.get() / n / 1000);
+        m.put("maxSendMicros", sendNanosMax / 1000);
+        return m;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.distribute.websocket;
+
+/**
+ * 会话发送队列已满时的处理策略
+ */
+public enum SlowConsumerPolicy {
+    /** 丢弃队列中最旧的一帧 */
+    DROP_OLDEST,
+    /** 用新帧替换队列中同一 key（车辆）的旧帧，找不到时退化为丢弃最旧帧 */
+    CONFLATE,
+    /** 直接断开慢客户端 */
+    DISCONNECT
+}
@@ -0,0 +1,36 @@
+package com.example.distribute.websocket;
+
+import java.util.Set;
+
+/**
+ * 客户端订阅条件。字段为 null 表示该维度不过滤，空集合表示该维度一条都不要。
+ * 位置消息命中 bbox 或 vehicleIds 任一条件即推送；告警消息按 severities 过滤。
+ *
+ * @param bbox       [minLat, minLon, maxLat, maxLon]
+ * @param vehicleIds 关注的车辆 ID
+ * @param severities 关注的告警级别
+ */
+public record Subscription(double[] bbox, Set<String> vehicleIds, Set<String> severities) {
+
+    public static final Subscription ALL = new Subscription(null, null, null);
+
+    public boolean allLocations() {
+        return bbox == null && vehicleIds == null;
+    }
+
+    public boolean allAlerts() {
+        return severities == null;
+    }
+
+    public boolean containsPoint(double lat, double lon) {
+        return bbox != null
+                && lat >= bbox[0] && lon >= bbox[1]
+                && lat <= bbox[2] && lon <= bbox[3];
+    }
+
+    public boolean matchesLocation(String vehicleId, double lat, double lon) {
+        return allLocations()
+                || containsPoint(lat, lon)
+                || (vehicleIds != null && vehicleIds.contains(vehicleId));
+    }
+}
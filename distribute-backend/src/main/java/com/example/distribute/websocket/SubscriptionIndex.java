@@ -0,0 +1,176 @@
+package com.example.distribute.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 订阅路由索引。
+ * bbox 订阅按固定经纬度网格登记到其覆盖的每个格子中，位置消息只需查所在格子再做一次精确判断，
+ * 匹配开销与会话总数无关；车辆 ID、告警级别订阅用哈希表直接定位。
+ */
+@Component
+public class SubscriptionIndex {
+
+    // 单个 bbox 最多登记的格子数，超过的视为大范围订阅，逐个精确判断
+    private static final int MAX_CELLS_PER_BOX = 4096;
+
+    private final double cellSize;
+
+    private final Map<String, Subscription> bySession = new ConcurrentHashMap<>();
+    private final Set<String> allLocations = ConcurrentHashMap.newKeySet();
+    private final Set<String> allAlerts = ConcurrentHashMap.newKeySet();
+    private final Set<String> wideBoxes = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<String>> cells = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byVehicle = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> bySeverity = new ConcurrentHashMap<>();
+    // 匹配结果按线程复用，避免每条消息都分配并扩容一个新集合
+    private final ThreadLocal<Set<String>> locationTargets = ThreadLocal.withInitial(HashSet::new);
+    private final ThreadLocal<Set<String>> alertTargets = ThreadLocal.withInitial(HashSet::new);
+
+    public SubscriptionIndex(@Value("${ws.subscription.cell-size:1.0}") double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    public Subscription get(String sessionId) {
+        return bySession.getOrDefault(sessionId, Subscription.ALL);
+    }
+
+    public synchronized void put(String sessionId, Subscription sub) {
+        remove(sessionId);
+        bySession.put(sessionId, sub);
+        if (sub.allLocations()) {
+            allLocations.add(sessionId);
+        }
+        if (sub.allAlerts()) {
+            allAlerts.add(sessionId);
+        }
+        if (sub.bbox() != null) {
+            forEachCell(sub.bbox(), sessionId, true);
+        }
+        if (sub.vehicleIds() != null) {
+            for (String vid : sub.vehicleIds()) {
+                byVehicle.computeIfAbsent(vid, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+            }
+        }
+        if (sub.severities() != null) {
+            for (String s : sub.severities()) {
+                bySeverity.computeIfAbsent(s.toLowerCase(Locale.ROOT), k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+            }
+        }
+    }
+
+    public synchronized void remove(String sessionId) {
+        Subscription old = bySession.remove(sessionId);
+        allLocations.remove(sessionId);
+        allAlerts.remove(sessionId);
+        wideBoxes.remove(sessionId);
+        if (old == null) {
+            return;
+        }
+        if (old.bbox() != null) {
+            forEachCell(old.bbox(), sessionId, false);
+        }
+        if (old.vehicleIds() != null) {
+            for (String vid : old.vehicleIds()) {
+                removeFrom(byVehicle, vid, sessionId);
+            }
+        }
+        if (old.severities() != null) {
+            for (String s : old.severities()) {
+                removeFrom(bySeverity, s.toLowerCase(Locale.ROOT), sessionId);
+            }
+        }
+    }
+
+    /**
+     * 收集需要接收该位置消息的会话 ID。
+     * 返回的集合归当前线程复用，只在该线程下一次调用前有效，调用方可以修改但不得保存
+     */
+    public Set<String> matchLocation(String vehicleId, double lat, double lon) {
+        Set<String> out = locationTargets.get();
+        out.clear();
+        out.addAll(allLocations);
+        Set<String> inCell = cells.get(cellId(lat, lon));
+        if (inCell != null) {
+            addMatching(inCell, lat, lon, out);
+        }
+        if (!wideBoxes.isEmpty()) {
+            addMatching(wideBoxes, lat, lon, out);
+        }
+        if (vehicleId != null) {
+            Set<String> byId = byVehicle.get(vehicleId);
+            if (byId != null) {
+                out.addAll(byId);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 收集需要接收该告警的会话 ID，返回的集合同样按线程复用
+     */
+    public Set<String> matchAlert(String severity) {
+        Set<String> out = alertTargets.get();
+        out.clear();
+        out.addAll(allAlerts);
+        if (severity != null) {
+            Set<String> s = bySeverity.get(severity.toLowerCase(Locale.ROOT));
+            if (s != null) {
+                out.addAll(s);
+            }
+        }
+        return out;
+    }
+
+    private void addMatching(Collection<String> candidates, double lat, double lon, Set<String> out) {
+        for (String sid : candidates) {
+            Subscription sub = bySession.get(sid);
+            if (sub != null && sub.containsPoint(lat, lon)) {
+                out.add(sid);
+            }
+        }
+    }
+
+    private void forEachCell(double[] bbox, String sessionId, boolean add) {
+        long minLat = (long) Math.floor(bbox[0] / cellSize);
+        long minLon = (long) Math.floor(bbox[1] / cellSize);
+        long maxLat = (long) Math.floor(bbox[2] / cellSize);
+        long maxLon = (long) Math.floor(bbox[3] / cellSize);
+        if ((maxLat - minLat + 1) * (maxLon - minLon + 1) > MAX_CELLS_PER_BOX) {
+            if (add) {
+                wideBoxes.add(sessionId);
+            }
+            return;
+        }
+        for (long x = minLat; x <= maxLat; x++) {
+            for (long y = minLon; y <= maxLon; y++) {
+                long id = (x << 32) | (y & 0xffffffffL);
+                if (add) {
+                    cells.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+                } else {
+                    removeFrom(cells, id, sessionId);
+                }
+            }
+        }
+    }
+
+    private long cellId(double lat, double lon) {
+        long x = (long) Math.floor(lat / cellSize);
+        long y = (long) Math.floor(lon / cellSize);
+        return (x << 32) | (y & 0xffffffffL);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> map, K key, String sessionId) {
+        map.computeIfPresent(key, (k, set) -> {
+            set.remove(sessionId);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
@@ -1,44 +1,188 @@
 package com.example.distribute.websocket;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class VehicleWebSocketHandler extends TextWebSocketHandler {
 
-    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final WebSocketFanout fanout;
+    private final SubscriptionIndex subscriptions;
+    private final LocationConflator conflator;
+
+    public VehicleWebSocketHandler(WebSocketFanout fanout, SubscriptionIndex subscriptions,
+                                   LocationConflator conflator) {
+        this.fanout = fanout;
+        this.subscriptions = subscriptions;
+        this.conflator = conflator;
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessions.add(session);
-        session.sendMessage(new TextMessage("🚀 WebSocket 连接已建立！"));
+        fanout.register(session);
+        // 未发送订阅前默认接收全部消息，与旧客户端行为一致
+        subscriptions.put(session.getId(), Subscription.ALL);
+        fanout.send(session, null, new TextMessage("🚀 WebSocket 连接已建立！"));
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
+        subscriptions.remove(session.getId());
+        conflator.disable(session.getId());
+        fanout.unregister(session);
     }
 
+    /**
+     * 客户端订阅协议：
+     * {"action":"subscribe","bbox":[minLat,minLon,maxLat,maxLon],"vehicles":["V100"],"severities":["high"]}
+     * {"action":"unsubscribe","vehicles":[...]} 取消指定维度；不带任何字段时恢复接收全部消息
+     * {"action":"mode","mode":"conflated","format":"json|binary"} 切换为按 tick 合并的增量帧，mode 为 raw 时恢复逐条推送
+     */
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        // 可以处理客户端发来的消息（可选）
-    	session.sendMessage(new TextMessage("Echo: " + message.getPayload()));
+        JsonNode req = parse(message.getPayload());
+        String action = req != null ? req.path("action").asText("") : "";
+        if ("mode".equals(action)) {
+            boolean conflated = "conflated".equals(req.path("mode").asText());
+            boolean binary = "binary".equals(req.path("format").asText());
+            if (conflated) {
+                conflator.enable(session, binary);
+            } else {
+                conflator.disable(session.getId());
+            }
+            fanout.send(session, null, new TextMessage(MAPPER.writeValueAsString(Map.of(
+                    "type", "mode",
+                    "mode", conflated ? "conflated" : "raw",
+                    "format", binary ? "binary" : "json"))));
+            return;
+        }
+        if (!"subscribe".equals(action) && !"unsubscribe".equals(action)) {
+            // 其他消息保持原有的回显行为
+            fanout.send(session, null, new TextMessage("Echo: " + message.getPayload()));
+            return;
+        }
+        Subscription cur = subscriptions.get(session.getId());
+        Subscription next;
+        try {
+            next = "subscribe".equals(action) ? subscribe(cur, req) : unsubscribe(cur, req);
+        } catch (IllegalArgumentException e) {
+            fanout.send(session, null, new TextMessage(
+                    "{\"type\":\"error\",\"message\":" + MAPPER.writeValueAsString(e.getMessage()) + "}"));
+            return;
+        }
+        subscriptions.put(session.getId(), next);
+        fanout.send(session, null, new TextMessage(MAPPER.writeValueAsString(Map.of(
+                "type", "subscription",
+                "bbox", next.bbox() != null ? next.bbox() : "all",
+                "vehicles", next.vehicleIds() != null ? next.vehicleIds() : "all",
+                "severities", next.severities() != null ? next.severities() : "all"))));
     }
 
-    public void broadcast(String message) {
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(new TextMessage(message));
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+    private static Subscription subscribe(Subscription cur, JsonNode req) {
+        double[] bbox = cur.bbox();
+        Set<String> vehicles = cur.vehicleIds();
+        Set<String> severities = cur.severities();
+        if (req.has("bbox")) {
+            JsonNode b = req.get("bbox");
+            if (!b.isArray() || b.size() != 4) {
+                throw new IllegalArgumentException("bbox must be [minLat,minLon,maxLat,maxLon]");
+            }
+            bbox = new double[]{b.get(0).asDouble(), b.get(1).asDouble(), b.get(2).asDouble(), b.get(3).asDouble()};
+            if (bbox[0] > bbox[2] || bbox[1] > bbox[3]) {
+                throw new IllegalArgumentException("bbox min must not exceed max");
+            }
+        }
+        if (req.has("vehicles")) {
+            vehicles = merge(vehicles, req.get("vehicles"));
+        }
+        if (req.has("severities")) {
+            severities = merge(severities, req.get("severities"));
+        }
+        return new Subscription(bbox, vehicles, severities);
+    }
+
+    private static Subscription unsubscribe(Subscription cur, JsonNode req) {
+        if (!req.has("bbox") && !req.has("vehicles") && !req.has("severities")) {
+            return Subscription.ALL;
+        }
+        double[] bbox = req.has("bbox") ? null : cur.bbox();
+        Set<String> vehicles = cur.vehicleIds();
+        Set<String> severities = cur.severities();
+        // bbox 与 vehicles 同时为 null 表示接收全部位置；退订 bbox 后没有车辆订阅的会话应一条位置都收不到
+        if (req.has("bbox") && vehicles == null) {
+            vehicles = Set.of();
+        }
+        if (req.has("vehicles") && vehicles != null) {
+            vehicles = new HashSet<>(vehicles);
+            for (JsonNode n : req.get("vehicles")) {
+                vehicles.remove(n.asText());
+            }
+        }
+        if (req.has("severities") && severities != null) {
+            severities = new HashSet<>(severities);
+            for (JsonNode n : req.get("severities")) {
+                severities.remove(n.asText());
             }
         }
+        return new Subscription(bbox, vehicles, severities);
+    }
+
+    private static Set<String> merge(Set<String> cur, JsonNode arr) {
+        Set<String> out = cur != null ? new HashSet<>(cur) : new HashSet<>();
+        for (JsonNode n : arr) {
+            out.add(n.asText());
+        }
+        return out;
+    }
+
+    private static JsonNode parse(String payload) {
+        if (payload.isEmpty() || payload.charAt(0) != '{') {
+            return null;
+        }
+        try {
+            return MAPPER.readTree(payload);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public void broadcast(String message) {
+        fanout.broadcast(null, message);
+    }
+
+    /**
+     * 带合并 key 的广播（如车辆 ID），慢客户端在 CONFLATE 策略下只保留每个 key 的最新帧
+     */
+    public void broadcast(String key, String message) {
+        fanout.broadcast(key, message);
+    }
+
+    /**
+     * 位置消息按订阅路由，只发给 bbox 或车辆 ID 命中的会话；message 为 Kafka 中的原始字节
+     */
+    public void broadcastLocation(String vehicleId, double lat, double lon, byte[] message) {
+        Set<String> targets = subscriptions.matchLocation(vehicleId, lat, lon);
+        if (conflator.hasSessions()) {
+            // 合并模式的会话由 tick 统一推送
+            targets.removeAll(conflator.sessionIds());
+            conflator.mark(vehicleId, message.length);
+        }
+        fanout.deliver(targets, vehicleId, message);
+    }
+
+    /**
+     * 告警消息按级别路由
+     */
+    public void broadcastAlert(String severity, byte[] message) {
+        fanout.deliver(subscriptions.matchAlert(severity), null, message);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,148 @@
+package com.example.distribute.websocket;
+
+import com.example.distribute.service.LatencyHistogram;
+import com.example.distribute.service.MetricsRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket 非阻塞扇出引擎。
+ * 每帧只序列化一次，投递到各会话的有界队列后立即返回；由专用线程池按会话串行发送，
+ * 慢客户端只会影响自己的队列，不会阻塞 Kafka 消费线程。
+ */
+@Component
+public class WebSocketFanout {
+
+    // 每次调度最多连续发送的帧数，之后让出线程保证各会话之间的公平
+    private static final int DRAIN_BATCH = 64;
+
+    private final Map<String, OutboundSession> sessions = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    private final SlowConsumerPolicy policy;
+    private final ExecutorService senders;
+    private final LatencyHistogram sendLatency;
+    private final MetricsRegistry.Counter sendFailures;
+
+    public WebSocketFanout(@Value("${ws.fanout.queue-capacity:256}") int queueCapacity,
+                           @Value("${ws.fanout.policy:DROP_OLDEST}") SlowConsumerPolicy policy,
+                           @Value("${ws.fanout.threads:4}") int threads,
+                           MetricsRegistry metrics) {
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.sendLatency = metrics.histogram("websocket_send_seconds", "Time spent in WebSocketSession.sendMessage");
+        this.sendFailures = metrics.counter("websocket_send_failures_total", "Failed sends, each closes its session");
+        metrics.gauge("websocket_sessions", "Open WebSocket sessions", sessions::size);
+        AtomicInteger seq = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "ws-sender-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public void register(WebSocketSession session) {
+        sessions.put(session.getId(), new OutboundSession(session, queueCapacity, policy, sendLatency, sendFailures));
+    }
+
+    public void unregister(WebSocketSession session) {
+        sessions.remove(session.getId());
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 向所有会话广播，key 用于 CONFLATE 策略下合并同一对象的旧帧，可为 null
+     */
+    public void broadcast(String key, String payload) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        TextMessage frame = new TextMessage(payload);
+        for (OutboundSession out : sessions.values()) {
+            enqueue(out, key, frame);
+        }
+    }
+
+    /**
+     * 只向指定的会话投递；payload 为 UTF-8 编码的原始消息，原样作为文本帧，只解码一次
+     */
+    public void deliver(Collection<String> sessionIds, String key, byte[] payload) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        TextMessage frame = new TextMessage(payload);
+        for (String id : sessionIds) {
+            OutboundSession out = sessions.get(id);
+            if (out != null) {
+                enqueue(out, key, frame);
+            }
+        }
+    }
+
+    /**
+     * 向单个会话发送，同样经过发送队列，避免与广播并发写同一会话
+     */
+    public void send(WebSocketSession session, String key, WebSocketMessage<?> frame) {
+        OutboundSession out = sessions.get(session.getId());
+        if (out != null) {
+            enqueue(out, key, frame);
+        }
+    }
+
+    /**
+     * 会话发送队列累计丢弃的帧数，会话不存在时为 0
+     */
+    public long droppedFrames(String sessionId) {
+        OutboundSession out = sessions.get(sessionId);
+        return out != null ? out.dropped() : 0;
+    }
+
+    void enqueue(OutboundSession out, String key, WebSocketMessage<?> frame) {
+        if (out.offer(key, frame)) {
+            schedule(out);
+        }
+    }
+
+    private void schedule(OutboundSession out) {
+        senders.execute(() -> {
+            if (out.drain(DRAIN_BATCH)) {
+                schedule(out);
+            }
+        });
+    }
+
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> list = new ArrayList<>(sessions.size());
+        for (OutboundSession out : sessions.values()) {
+            list.add(out.stats());
+        }
+        return list;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (OutboundSession out : sessions.values()) {
+            out.close(CloseStatus.GOING_AWAY);
+        }
+        senders.shutdownNow();
+    }
+}
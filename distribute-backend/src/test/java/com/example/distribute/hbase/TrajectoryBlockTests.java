@@ -0,0 +1,112 @@
+package com.example.distribute.hbase;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrajectoryBlockTests {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        TrajectoryBlock block = new TrajectoryBlock();
+        // 超过初始容量，包含负坐标、一小时的时间间隔和速度为 0 的点
+        for (int i = 0; i < 200; i++) {
+            block.add(1_700_000_000L + i * 7L + (i > 100 ? 3600 : 0),
+                    31.230416 + i * 0.000123, -121.473701 - i * 0.000321, i % 5 == 0 ? 0 : 42.5 + i);
+        }
+        byte[] bytes = block.encode();
+
+        TrajectoryBlock decoded = new TrajectoryBlock();
+        decoded.decode(bytes, 0, bytes.length);
+        assertSamePoints(block, decoded);
+    }
+
+    @Test
+    void decodeFromOffsetWithinLargerArray() {
+        TrajectoryBlock block = new TrajectoryBlock();
+        block.add(100, 1.5, 2.5, 3.5);
+        block.add(160, -1.5, -2.5, 0);
+        byte[] bytes = block.encode();
+        byte[] padded = new byte[bytes.length + 10];
+        Arrays.fill(padded, (byte) 0x7f);
+        System.arraycopy(bytes, 0, padded, 4, bytes.length);
+
+        TrajectoryBlock decoded = new TrajectoryBlock();
+        decoded.decode(padded, 4, bytes.length);
+        assertSamePoints(block, decoded);
+    }
+
+    @Test
+    void emptyBlockRoundTrip() {
+        byte[] bytes = new TrajectoryBlock().encode();
+        TrajectoryBlock decoded = new TrajectoryBlock();
+        decoded.add(1, 1, 1, 1);
+        decoded.decode(bytes, 0, bytes.length);
+        assertEquals(0, decoded.size());
+    }
+
+    @Test
+    void addWithSameTimestampReplacesLastPoint() {
+        TrajectoryBlock block = new TrajectoryBlock();
+        block.add(10, 1, 1, 1);
+        block.add(10, 2, 2, 2);
+        assertEquals(1, block.size());
+        assertEquals(2.0, block.lat(0));
+    }
+
+    @Test
+    void mergeInterleavesAndPrefersOther() {
+        TrajectoryBlock a = new TrajectoryBlock();
+        a.add(10, 1, 1, 1);
+        a.add(30, 3, 3, 3);
+        TrajectoryBlock b = new TrajectoryBlock();
+        b.add(20, 2, 2, 2);
+        b.add(30, 9, 9, 9);
+        b.add(40, 4, 4, 4);
+        a.mergeFrom(b);
+
+        assertEquals(4, a.size());
+        long[] ts = {10, 20, 30, 40};
+        double[] lat = {1, 2, 9, 4};
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ts[i], a.ts(i));
+            assertEquals(lat[i], a.lat(i));
+        }
+    }
+
+    @Test
+    void rejectsTruncatedAndUnknownVersion() {
+        TrajectoryBlock block = new TrajectoryBlock();
+        block.add(100, 1.5, 2.5, 3.5);
+        block.add(160, 1.6, 2.6, 3.6);
+        byte[] bytes = block.encode();
+
+        TrajectoryBlock decoded = new TrajectoryBlock();
+        assertThrows(IllegalArgumentException.class, () -> decoded.decode(bytes, 0, bytes.length - 1));
+        byte[] future = bytes.clone();
+        future[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> decoded.decode(future, 0, future.length));
+    }
+
+    @Test
+    void rowKeyPadsBucketToTenDigits() {
+        assertEquals("V1_0000003600", new String(TrajectoryBlock.rowKey("V1", 3600)));
+        assertEquals("V1_1700000000", new String(TrajectoryBlock.rowKey("V1", 1_700_000_000L)));
+    }
+
+    /**
+     * 坐标按 1e-6 度、速度按 0.01 定点存储
+     */
+    private static void assertSamePoints(TrajectoryBlock expected, TrajectoryBlock actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.ts(i), actual.ts(i));
+            assertEquals(expected.lat(i), actual.lat(i), 1e-9);
+            assertEquals(expected.lon(i), actual.lon(i), 1e-9);
+            assertEquals(expected.speed(i), actual.speed(i), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.distribute.kafka;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordDecoderTests {
+
+    private static final String LOCATION = "{\"vehicle_id\":\"V1\",\"latitude\":31.23,\"longitude\":121.47," +
+            "\"speed\":42.5,\"timestamp\":1700000000,\"status\":\"in_transit\",\"load\":3,\"extra\":{\"a\":[1,2]}}";
+
+    private final RecordDecoder decoder = new RecordDecoder();
+    private final LocationRecord loc = new LocationRecord();
+    private final AlertRecord alert = new AlertRecord();
+
+    @Test
+    void decodesLocation() {
+        assertTrue(decoder.decode(bytes(LOCATION), loc));
+        assertTrue(loc.isValid());
+        assertEquals("V1", loc.vehicleId);
+        assertEquals(31.23, loc.latitude);
+        assertEquals(121.47, loc.longitude);
+        assertEquals(42.5, loc.speed);
+        assertEquals(1700000000.0, loc.timestamp);
+        assertEquals("in_transit", loc.status);
+        assertEquals(3, loc.load);
+    }
+
+    @Test
+    void malformedRecordsAreRejectedAndDoNotPoisonTheNextOne() {
+        String[] bad = {
+                "",
+                "not json",
+                "[1,2,3]",
+                "\"V1\"",
+                "{\"vehicle_id\":\"V1\",\"latitude\":",
+                "{\"vehicle_id\":\"V1\" \"latitude\":1}",
+        };
+        for (String s : bad) {
+            assertFalse(decoder.decode(bytes(s), loc), s);
+            assertTrue(decoder.decode(bytes(LOCATION), loc), "after " + s);
+            assertEquals("V1", loc.vehicleId);
+        }
+        assertFalse(decoder.decode(null, loc));
+        assertNull(loc.raw);
+    }
+
+    @Test
+    void trailingContentAfterObjectKeepsRecordButResetsParser() {
+        assertTrue(decoder.decode(bytes(LOCATION + " {\"vehicle_id\":"), loc));
+        assertEquals("V1", loc.vehicleId);
+        assertTrue(decoder.decode(bytes(LOCATION.replace("V1", "V2")), loc));
+        assertEquals("V2", loc.vehicleId);
+    }
+
+    @Test
+    void wrongTypesAndMissingFieldsLeaveRecordInvalid() {
+        assertTrue(decoder.decode(bytes("{\"vehicle_id\":7,\"latitude\":\"31.2\",\"longitude\":1,\"speed\":1," +
+                "\"timestamp\":1}"), loc));
+        assertNull(loc.vehicleId);
+        assertTrue(Double.isNaN(loc.latitude));
+        assertFalse(loc.isValid());
+
+        assertTrue(decoder.decode(bytes("{\"vehicle_id\":\"V1\",\"latitude\":1,\"longitude\":1}"), loc));
+        assertFalse(loc.isValid());
+        assertEquals(-1, loc.load);
+    }
+
+    @Test
+    void decodesAlertWithFallbackFieldNames() {
+        assertTrue(decoder.decode(bytes("{\"device_id\":\"D9\",\"type\":\"overheat\",\"severity\":\"high\"," +
+                "\"timestamp\":1700000000.5,\"detail\":{\"temp\":9}}"), alert, true));
+        assertTrue(alert.parsed);
+        assertEquals("D9", alert.vehicleId);
+        assertEquals("overheat", alert.alertType);
+        assertEquals("high", alert.severity);
+        assertEquals(1700000000.5, alert.timestamp);
+        // 对象类型的详情不转成文本
+        assertNull(alert.details);
+
+        assertTrue(decoder.decode(bytes("{\"vehicle_id\":\"V1\",\"device_id\":\"D9\",\"alert_type\":\"a\"," +
+                "\"type\":\"b\",\"severity\":\"low\",\"details\":\"text\"}"), alert, false));
+        assertEquals("V1", alert.vehicleId);
+        assertEquals("a", alert.alertType);
+        assertNull(alert.details);
+        assertTrue(Double.isNaN(alert.timestamp));
+    }
+
+    @Test
+    void malformedAlertIsNotParsedButKeepsRawBytes() {
+        byte[] raw = bytes("{\"vehicle_id\":\"V1\",\"severity\":");
+        assertFalse(decoder.decode(raw, alert, true));
+        assertFalse(alert.parsed);
+        assertEquals(raw, alert.raw);
+
+        assertTrue(decoder.decode(bytes("{\"vehicle_id\":\"V2\",\"severity\":\"low\",\"details\":\"x\"}"),
+                alert, true));
+        assertTrue(alert.parsed);
+        assertEquals("V2", alert.vehicleId);
+        assertEquals("x", alert.details);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
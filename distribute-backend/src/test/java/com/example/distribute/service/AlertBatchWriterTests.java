@@ -0,0 +1,145 @@
+package com.example.distribute.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AlertBatchWriterTests {
+
+    /**
+     * 记录插入的行。vehicle_id 为 "bad" 的行违反约束，为 "down" 的行始终遇到暂时性故障
+     */
+    static class RecordingJdbc extends JdbcTemplate {
+        final List<Object[]> inserted = new ArrayList<>();
+        int batchCalls;
+
+        @Override
+        public synchronized int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            batchCalls++;
+            for (Object[] row : batchArgs) {
+                check(row);
+            }
+            inserted.addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+
+        @Override
+        public synchronized int update(String sql, Object... args) {
+            check(args);
+            inserted.add(args);
+            return 1;
+        }
+
+        private static void check(Object[] row) {
+            if ("bad".equals(row[0])) {
+                throw new DataIntegrityViolationException("Data too long for column 'type'");
+            }
+            if ("down".equals(row[0])) {
+                throw new TransientDataAccessResourceException("connection reset");
+            }
+        }
+    }
+
+    static final PlatformTransactionManager NO_TX = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    };
+
+    private final RecordingJdbc jdbc = new RecordingJdbc();
+    // 单条成批、不等待凑批，便于控制每批内容
+    private final AlertBatchWriter writer = new AlertBatchWriter(jdbc, NO_TX, new ResultCache(60, 1 << 20, 300, 30),
+            new MetricsRegistry(), 100, 1, 1);
+
+    @AfterEach
+    void close() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    void barrierCompletesAfterOwnAlertsAreWritten() throws Exception {
+        writer.put("V1", "t", "low", 1.0, null, "alerts-0@1", true);
+        assertNull(writer.barrier().get(5, TimeUnit.SECONDS));
+        assertEquals(1, jdbc.inserted.size());
+        assertEquals("alerts-0@1", jdbc.inserted.get(0)[6]);
+    }
+
+    @Test
+    void dropFailsOnlyTheEnqueuingThreadsBarrier() throws Exception {
+        CompletableFuture<CompletableFuture<Void>> other = new CompletableFuture<>();
+        Thread consumerA = new Thread(() -> {
+            try {
+                writer.put("down", "t", "low", 1.0, null, "alerts-0@1", true);
+                other.complete(writer.barrier());
+            } catch (InterruptedException e) {
+                other.completeExceptionally(e);
+            }
+        });
+        consumerA.start();
+        CompletableFuture<Void> failed = other.get(5, TimeUnit.SECONDS);
+        assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+
+        // A 的丢弃不会让本线程的屏障失败，本线程之后的丢弃也不会被 A 的屏障吞掉
+        writer.put("V2", "t", "low", 1.0, null, "alerts-1@1", true);
+        assertNull(writer.barrier().get(5, TimeUnit.SECONDS));
+        writer.put("down", "t", "low", 1.0, null, "alerts-1@2", true);
+        CompletableFuture<Void> mine = writer.barrier();
+        assertThrows(ExecutionException.class, () -> mine.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void badRowIsRejectedAloneWithoutRetrying() throws Exception {
+        // 三条告警加一个屏障正好凑成一批
+        AlertBatchWriter batched = new AlertBatchWriter(jdbc, NO_TX, new ResultCache(60, 1 << 20, 300, 30),
+                new MetricsRegistry(), 100, 4, 5000);
+        try {
+            batched.put("V1", "t", "low", 1.0, null, "alerts-0@1", true);
+            batched.put("bad", "t", "low", 1.0, null, "alerts-0@2", true);
+            batched.put("V2", "t", "low", 1.0, null, "alerts-0@3", true);
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> batched.barrier().get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DataIntegrityViolationException.class, e.getCause());
+
+            assertEquals(1, jdbc.batchCalls);
+            assertEquals(List.of("V1", "V2"), jdbc.inserted.stream().map(row -> row[0]).toList());
+            assertEquals(1L, batched.stats().get("invalid"));
+            assertEquals(0L, batched.stats().get("dropped"));
+        } finally {
+            batched.shutdown();
+        }
+    }
+
+    @Test
+    void dropsOfThreadsThatNeverAwaitAreNotTracked() throws Exception {
+        writer.put("down", "t", "low", 1.0, null, "alerts-0@1", false);
+        writer.put("V1", "t", "low", 1.0, null, "alerts-0@2", true);
+        assertNull(writer.barrier().get(10, TimeUnit.SECONDS));
+        assertEquals(1L, writer.stats().get("dropped"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.distribute.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeatmapTileStoreTests {
+
+    @Test
+    void bucketOverCellCapFallsBackOnlyAtThatLevel() {
+        HeatmapTileStore store = new HeatmapTileStore(24, 2, 4);
+        long bucket = HeatmapTileStore.bucketOf(System.currentTimeMillis() / 1000);
+        // 5 个 0.001° 网格超过上限，0.1° 下仍在同一个网格
+        for (int i = 0; i < 5; i++) {
+            store.record(bucket, 31.2301 + i * 0.001, 121.4701);
+        }
+
+        LongIntHashMap coarse = new LongIntHashMap(16);
+        assertTrue(store.merge(bucket, bucket + HeatmapTileStore.BUCKET_SECONDS, 0, coarse).isEmpty());
+        assertEquals(1, coarse.size());
+
+        LongIntHashMap fine = new LongIntHashMap(16);
+        assertEquals(List.of(bucket), store.merge(bucket, bucket + HeatmapTileStore.BUCKET_SECONDS, 2, fine));
+        assertEquals(0, fine.size());
+    }
+
+    @Test
+    void fineLevelIsCoveredForShorterRetention() {
+        HeatmapTileStore store = new HeatmapTileStore(24, 2, 1000);
+        long now = System.currentTimeMillis() / 1000;
+        assertTrue(store.coveredFrom(2) >= HeatmapTileStore.bucketOf(now - 2 * 3600));
+        assertTrue(store.coveredFrom(0) <= store.coveredFrom(2));
+
+        // 超过细网格保留时长的点只计入粗网格
+        long old = HeatmapTileStore.bucketOf(now - 3 * 3600);
+        store.record(old, 31.23, 121.47);
+        LongIntHashMap coarse = new LongIntHashMap(16);
+        store.merge(old, old + HeatmapTileStore.BUCKET_SECONDS, 0, coarse);
+        assertEquals(1, coarse.size());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.distribute.service;
+
+import com.example.distribute.hbase.TrackingIndex;
+import com.example.distribute.hbase.TrajectoryBlock;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MapServiceTests {
+
+    private static final long BUCKET = 1_700_000_000L / TrackingIndex.BUCKET_SECONDS * TrackingIndex.BUCKET_SECONDS;
+    private static final byte[] ROW = TrackingIndex.rowKey(BUCKET, "V1");
+
+    @Test
+    void mixedRowIsVisitedInTimestampOrder() {
+        TrajectoryBlock compacted = new TrajectoryBlock();
+        compacted.add(BUCKET + 10, 1, 1, 0);
+        compacted.add(BUCKET + 30, 3, 3, 0);
+        compacted.add(BUCKET + 50, 5, 5, 0);
+        // 压缩后到达的点与块内的点交错，其中一个与块内时间戳相同
+        Result row = row(compacted, BUCKET + 20, BUCKET + 30, BUCKET + 40, BUCKET + 60);
+
+        List<long[]> seen = visit(row, BUCKET, BUCKET + 3599);
+        assertEquals(List.of(10L, 20L, 30L, 40L, 50L, 60L), offsets(seen));
+        // 同一时间戳取点列中的坐标
+        assertEquals(3030L, seen.get(2)[1]);
+    }
+
+    @Test
+    void windowFiltersBothBlockAndPointCells() {
+        TrajectoryBlock compacted = new TrajectoryBlock();
+        compacted.add(BUCKET + 10, 1, 1, 0);
+        compacted.add(BUCKET + 30, 3, 3, 0);
+        Result row = row(compacted, BUCKET + 5, BUCKET + 20, BUCKET + 40);
+
+        assertEquals(List.of(20L, 30L), offsets(visit(row, BUCKET + 11, BUCKET + 30)));
+    }
+
+    @Test
+    void rowsWithOnlyOneKindOfCell() {
+        TrajectoryBlock compacted = new TrajectoryBlock();
+        compacted.add(BUCKET + 10, 1, 1, 0);
+        compacted.add(BUCKET + 30, 3, 3, 0);
+        assertEquals(List.of(10L, 30L), offsets(visit(row(compacted), BUCKET, BUCKET + 3599)));
+        assertEquals(List.of(5L, 7L), offsets(visit(row(null, BUCKET + 5, BUCKET + 7), BUCKET, BUCKET + 3599)));
+    }
+
+    /**
+     * 按 HBase 返回的顺序构造一行：b:d 在前，p 列按时间戳升序；点列坐标为时间偏移 * 101
+     */
+    private static Result row(TrajectoryBlock block, long... points) {
+        List<Cell> cells = new ArrayList<>();
+        if (block != null) {
+            cells.add(new KeyValue(ROW, TrajectoryBlock.FAMILY, TrajectoryBlock.QUALIFIER, block.encode()));
+        }
+        for (long ts : points) {
+            byte[] value = new byte[16];
+            Bytes.putDouble(value, 0, (ts - BUCKET) * 101);
+            Bytes.putDouble(value, 8, (ts - BUCKET) * 101);
+            cells.add(new KeyValue(ROW, TrackingIndex.POINTS, Bytes.toBytes(ts), value));
+        }
+        return Result.create(cells);
+    }
+
+    /**
+     * 返回 [时间戳, 纬度] 序列
+     */
+    private static List<long[]> visit(Result row, long from, long to) {
+        List<long[]> seen = new ArrayList<>();
+        MapService.visitRow(row, from, to, new TrajectoryBlock(), (vid, ts, lat, lon) -> {
+            assertEquals("V1", vid);
+            seen.add(new long[]{ts, Math.round(lat)});
+        });
+        return seen;
+    }
+
+    private static List<Long> offsets(List<long[]> seen) {
+        return seen.stream().map(p -> p[0] - BUCKET).toList();
+    }
+}
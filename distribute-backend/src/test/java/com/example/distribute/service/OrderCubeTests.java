@@ -0,0 +1,104 @@
+package com.example.distribute.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderCubeTests {
+
+    private static final long DAY = 86400;
+    private static final long HOUR = 3600;
+    // 某天 0 点（UTC）
+    private static final long BASE = 19723 * DAY;
+
+    @Test
+    void grainForPicksCoarsestDivisor() {
+        assertEquals(OrderCube.Grain.MINUTE, OrderCube.grainFor(60));
+        assertEquals(OrderCube.Grain.MINUTE, OrderCube.grainFor(300));
+        assertEquals(OrderCube.Grain.MINUTE, OrderCube.grainFor(5400));
+        assertEquals(OrderCube.Grain.HOUR, OrderCube.grainFor(HOUR));
+        assertEquals(OrderCube.Grain.HOUR, OrderCube.grainFor(6 * HOUR));
+        assertEquals(OrderCube.Grain.DAY, OrderCube.grainFor(DAY));
+        assertEquals(OrderCube.Grain.DAY, OrderCube.grainFor(7 * DAY));
+    }
+
+    @Test
+    void grainForRejectsIntervalsNotMultipleOfMinute() {
+        assertThrows(IllegalArgumentException.class, () -> OrderCube.grainFor(0));
+        assertThrows(IllegalArgumentException.class, () -> OrderCube.grainFor(30));
+        assertThrows(IllegalArgumentException.class, () -> OrderCube.grainFor(90));
+        assertThrows(IllegalArgumentException.class, () -> OrderCube.grainFor(-60));
+    }
+
+    @Test
+    void decomposeUsesCoarsestGrainInTheMiddle() {
+        // 前一天 22:30 到次日 01:15
+        long lo = BASE - 90 * 60;
+        long hi = BASE + DAY + HOUR + 15 * 60;
+        List<OrderCube.Range> ranges = decompose(lo, hi);
+
+        assertEquals(List.of(
+                new OrderCube.Range(OrderCube.Grain.MINUTE, lo, BASE - HOUR),
+                new OrderCube.Range(OrderCube.Grain.HOUR, BASE - HOUR, BASE),
+                new OrderCube.Range(OrderCube.Grain.DAY, BASE, BASE + DAY),
+                new OrderCube.Range(OrderCube.Grain.HOUR, BASE + DAY, BASE + DAY + HOUR),
+                new OrderCube.Range(OrderCube.Grain.MINUTE, BASE + DAY + HOUR, hi)), ranges);
+        assertContiguous(lo, hi, ranges);
+    }
+
+    @Test
+    void decomposeWithinOneHourStaysAtMinutes() {
+        long lo = BASE + 10 * 60;
+        long hi = BASE + 50 * 60;
+        assertEquals(List.of(new OrderCube.Range(OrderCube.Grain.MINUTE, lo, hi)), decompose(lo, hi));
+    }
+
+    @Test
+    void decomposeAlignedWindowIsSingleRange() {
+        assertEquals(List.of(new OrderCube.Range(OrderCube.Grain.DAY, BASE, BASE + 3 * DAY)),
+                decompose(BASE, BASE + 3 * DAY));
+        assertEquals(List.of(new OrderCube.Range(OrderCube.Grain.HOUR, BASE + HOUR, BASE + 5 * HOUR)),
+                decompose(BASE + HOUR, BASE + 5 * HOUR));
+    }
+
+    @Test
+    void decomposeEmptyWindow() {
+        assertTrue(decompose(BASE, BASE).isEmpty());
+        assertTrue(decompose(BASE + 60, BASE).isEmpty());
+    }
+
+    @Test
+    void decomposeCoversEveryMinuteExactlyOnce() {
+        for (long lo = BASE - 2 * HOUR; lo < BASE + 2 * HOUR; lo += 17 * 60) {
+            for (long hi = lo; hi < lo + 2 * DAY; hi += 7 * HOUR + 60) {
+                assertContiguous(lo, hi, decompose(lo, hi));
+            }
+        }
+    }
+
+    private static List<OrderCube.Range> decompose(long lo, long hi) {
+        List<OrderCube.Range> out = new ArrayList<>();
+        OrderCube.decompose(lo, hi, OrderCube.Grain.values().length - 1, out);
+        return out;
+    }
+
+    /**
+     * 区间首尾相接、恰好覆盖 [lo, hi)，且每段两端都对齐到各自的粒度
+     */
+    private static void assertContiguous(long lo, long hi, List<OrderCube.Range> ranges) {
+        long at = lo;
+        for (OrderCube.Range r : ranges) {
+            assertEquals(at, r.from());
+            assertTrue(r.from() < r.to());
+            assertEquals(0, Math.floorMod(r.from(), r.grain().seconds));
+            assertEquals(0, Math.floorMod(r.to(), r.grain().seconds));
+            at = r.to();
+        }
+        assertEquals(Math.max(lo, hi), at);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.distribute.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathSimplifierTests {
+
+    private final PathSimplifier simplifier = new PathSimplifier();
+
+    @Test
+    void collinearPointsCollapseToEndpoints() {
+        double[] xs = {0, 1, 2, 3, 4};
+        double[] ys = {0, 1, 2, 3, 4};
+        assertEquals(2, simplifier.simplify(xs, ys, 5, 0.01));
+        assertArrayEquals(new double[]{0, 4}, Arrays.copyOf(xs, 2));
+        assertArrayEquals(new double[]{0, 4}, Arrays.copyOf(ys, 2));
+    }
+
+    @Test
+    void keepsPointsBeyondToleranceInOrder() {
+        double[] xs = {0, 1, 2, 3, 4};
+        double[] ys = {0, 2.51, 5, 2.49, 0};
+        assertEquals(3, simplifier.simplify(xs, ys, 5, 0.1));
+        assertArrayEquals(new double[]{0, 2, 4}, Arrays.copyOf(xs, 3));
+        assertArrayEquals(new double[]{0, 5, 0}, Arrays.copyOf(ys, 3));
+    }
+
+    @Test
+    void leavesShortPathsAndZeroToleranceUntouched() {
+        double[] xs = {0, 1, 2};
+        double[] ys = {0, 0, 0};
+        assertEquals(2, simplifier.simplify(xs, ys, 2, 1));
+        assertEquals(3, simplifier.simplify(xs, ys, 3, 0));
+        assertArrayEquals(new double[]{0, 1, 2}, xs);
+    }
+
+    @Test
+    void onlySimplifiesFirstNPoints() {
+        double[] xs = {0, 1, 2, 9, 9};
+        double[] ys = {0, 0, 0, 9, 9};
+        assertEquals(2, simplifier.simplify(xs, ys, 3, 0.01));
+        assertArrayEquals(new double[]{0, 2, 2, 9, 9}, xs);
+    }
+
+    @Test
+    void reusesInstanceAcrossGrowingInputs() {
+        double[] small = {0, 1, 2};
+        assertEquals(2, simplifier.simplify(small, new double[]{0, 0, 0}, 3, 0.1));
+
+        // 超过初始工作数组容量，且需要多层拆分
+        int n = 1000;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = i;
+            ys[i] = i % 100 == 50 ? 10 : 0;
+        }
+        int m = simplifier.simplify(xs, ys, n, 0.5);
+        // 首尾两点加上每个尖峰的峰顶和两侧拐点
+        assertEquals(2 + 10 * 3, m);
+        for (int i = 1; i < m; i++) {
+            assertTrue(xs[i] > xs[i - 1]);
+        }
+    }
+
+    @Test
+    void toleranceForZoomHalvesPerLevelAndClamps() {
+        assertEquals(360.0 / 256, PathSimplifier.toleranceForZoom(0));
+        assertEquals(PathSimplifier.toleranceForZoom(0) / 2, PathSimplifier.toleranceForZoom(1));
+        assertEquals(PathSimplifier.toleranceForZoom(0), PathSimplifier.toleranceForZoom(-3));
+        assertEquals(PathSimplifier.toleranceForZoom(22), PathSimplifier.toleranceForZoom(30));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.distribute.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTests {
+
+    private final ResultCache cache = new ResultCache(60, 1 << 20, 300, 1);
+    private final long now = System.currentTimeMillis() / 1000;
+    // 一小时前的桶起点，[base, base + 599] 是一个对齐且已结束的窗口
+    private final long base = cache.alignFrom(now - 3600);
+    // loader 每次被调用时收到的窗口
+    private final List<long[]> loads = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        cache.shutdown();
+    }
+
+    private String load(ResultCache.Domain domain, long from, long to) {
+        return cache.get(domain, "q", from, to, (f, t) -> {
+            loads.add(new long[]{f, t});
+            return f + "-" + t;
+        });
+    }
+
+    @Test
+    void alignedClosedWindowIsCachedWithExactBounds() {
+        assertEquals(base + "-" + (base + 599), load(ResultCache.Domain.ALERTS, base, base + 599));
+        assertEquals(base + "-" + (base + 599), load(ResultCache.Domain.ALERTS, base, base + 599));
+        assertEquals(1, loads.size());
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void unalignedWindowsBypassTheCacheAndKeepTheirBounds() {
+        // from 不在桶起点：不能把 from 之前的数据算进来
+        assertEquals((base + 7) + "-" + (base + 599), load(ResultCache.Domain.ALERTS, base + 7, base + 599));
+        load(ResultCache.Domain.ALERTS, base + 7, base + 599);
+        // 已结束窗口的 to 不在桶末尾：既不扩到桶末尾，也不缩到上一个桶
+        assertEquals(base + "-" + (base + 598), load(ResultCache.Domain.ALERTS, base, base + 598));
+
+        assertEquals(3, loads.size());
+        assertEquals(3L, cache.stats().get("bypassed"));
+        assertEquals(0, cache.stats().get("entries"));
+    }
+
+    @Test
+    void openWindowExtendsToTheEndOfTheCurrentBucket() {
+        long to = now + 30;
+        load(ResultCache.Domain.ALERTS, base, to);
+        assertEquals(1, loads.size());
+        assertEquals(base, loads.get(0)[0]);
+        assertEquals(cache.alignTo(to), loads.get(0)[1]);
+
+        // 同一个桶内结束的开放窗口共享缓存
+        load(ResultCache.Domain.ALERTS, base, cache.alignTo(to));
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    void concurrentRequestsShareOneLoad() {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        List<long[]> calls = new ArrayList<>();
+        CompletableFuture<String> a = cache.getAsync(ResultCache.Domain.TRACKING, "q", base, base + 599,
+                (f, t) -> {
+                    calls.add(new long[]{f, t});
+                    return pending;
+                });
+        CompletableFuture<String> b = cache.getAsync(ResultCache.Domain.TRACKING, "q", base, base + 599,
+                (f, t) -> {
+                    calls.add(new long[]{f, t});
+                    return new CompletableFuture<>();
+                });
+        assertEquals(1, calls.size());
+        assertEquals(1L, cache.stats().get("collapsed"));
+
+        // 一个等待者取消不影响其他等待者
+        a.cancel(true);
+        assertFalse(pending.isCancelled());
+        pending.complete("v");
+        assertEquals("v", b.join());
+    }
+
+    @Test
+    void cancellingEveryWaiterCancelsTheLoad() {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> a = cache.getAsync(ResultCache.Domain.TRACKING, "q", base, base + 599,
+                (f, t) -> pending);
+        CompletableFuture<String> b = cache.getAsync(ResultCache.Domain.TRACKING, "q", base, base + 599,
+                (f, t) -> pending);
+        a.cancel(true);
+        b.cancel(true);
+        assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    void touchInvalidatesOnlyOverlappingEntriesOfTheSameDomain() {
+        load(ResultCache.Domain.ALERTS, base, base + 599);
+
+        cache.touch(ResultCache.Domain.ALERTS, base + 600);
+        cache.touch(ResultCache.Domain.ORDERS, base + 10);
+        cache.sweep();
+        load(ResultCache.Domain.ALERTS, base, base + 599);
+        assertEquals(1, loads.size());
+
+        cache.touch(ResultCache.Domain.ALERTS, base + 120);
+        cache.sweep();
+        load(ResultCache.Domain.ALERTS, base, base + 599);
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void resultLoadedAcrossAnInvalidationIsNotCached() {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.getAsync(ResultCache.Domain.ALERTS, "q", base, base + 599,
+                (f, t) -> pending);
+        cache.touch(ResultCache.Domain.ALERTS, base);
+        cache.sweep();
+        pending.complete("stale");
+        assertEquals("stale", first.join());
+
+        load(ResultCache.Domain.ALERTS, base, base + 599);
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    void trackingIsInvalidatedAgainAfterTheWriteLag() throws InterruptedException {
+        load(ResultCache.Domain.TRACKING, base, base + 599);
+        cache.touch(ResultCache.Domain.TRACKING, base);
+        cache.sweep();
+        load(ResultCache.Domain.TRACKING, base, base + 599);
+        load(ResultCache.Domain.TRACKING, base, base + 599);
+        assertEquals(2, loads.size());
+
+        // 写入方落盘之后再淘汰一次
+        TimeUnit.MILLISECONDS.sleep(1100);
+        cache.sweep();
+        load(ResultCache.Domain.TRACKING, base, base + 599);
+        assertEquals(3, loads.size());
+    }
+}
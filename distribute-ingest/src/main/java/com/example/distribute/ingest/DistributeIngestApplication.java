@@ -0,0 +1,15 @@
+package com.example.distribute.ingest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@SpringBootApplication
+@EnableScheduling
+public class DistributeIngestApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(DistributeIngestApplication.class, args);
+	}
+
+}
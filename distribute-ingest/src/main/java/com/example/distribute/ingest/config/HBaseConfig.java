@@ -0,0 +1,24 @@
+package com.example.distribute.ingest.config;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+import java.io.IOException;
+
+@org.springframework.context.annotation.Configuration
+public class HBaseConfig {
+
+    @Bean(destroyMethod = "close")
+    public Connection hbaseConnection(@Value("${hbase.zookeeper.quorum:localhost}") String quorum,
+                                      @Value("${hbase.zookeeper.port:2181}") String port) throws IOException {
+        Configuration config = HBaseConfiguration.create();
+        config.set("hbase.zookeeper.quorum", quorum);
+        config.set("hbase.zookeeper.property.clientPort", port);
+        config.set("hbase.client.operation.timeout", "10000");
+        return ConnectionFactory.createConnection(config);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.distribute.ingest.config;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean(destroyMethod = "close")
+    public JedisPool jedisPool(@Value("${redis.host:localhost}") String host,
+                               @Value("${redis.port:6379}") int port) {
+        GenericObjectPoolConfig<Jedis> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setJmxEnabled(false);  // 禁用JMX注册，避免MBean重复异常
+        return new JedisPool(poolConfig, host, port);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.distribute.ingest.controller;
+
+import com.example.distribute.ingest.metrics.IngestMetrics;
+import com.example.distribute.ingest.sink.OffsetStore;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    private final IngestMetrics metrics;
+    private final OffsetStore offsetStore;
+
+    public MetricsController(IngestMetrics metrics, OffsetStore offsetStore) {
+        this.metrics = metrics;
+        this.offsetStore = offsetStore;
+    }
+
+    @GetMapping
+    public Map<String, Map<String, Object>> stats() {
+        return metrics.stats();
+    }
+
+    /**
+     * 写入 MySQL 的主题在 ingest_offset 中记录的各分区位点
+     */
+    @GetMapping("/offsets")
+    public Map<String, Long> offsets() {
+        return offsetStore.positions();
+    }
+
+    @GetMapping("/prometheus")
+    public ResponseEntity<String> prometheus() throws IOException {
+        StringWriter out = new StringWriter(4096);
+        metrics.writePrometheus(out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8"))
+                .body(out.toString());
+    }
+}
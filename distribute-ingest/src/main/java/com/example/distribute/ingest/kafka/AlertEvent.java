@@ -0,0 +1,44 @@
+package com.example.distribute.ingest.kafka;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * alerts 消息；与后端一致，vehicle_id 缺失时用 device_id，alert_type 缺失时用 type
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AlertEvent {
+    @JsonProperty("vehicle_id")
+    public String vehicleId;
+    @JsonProperty("device_id")
+    public String deviceId;
+    @JsonProperty("alert_type")
+    public String alertType;
+    public String type;
+    public String severity;
+    public Double timestamp;
+    // 详情可能是任意 JSON 值，按文本写入
+    @JsonAlias("detail")
+    public Object details;
+    // 消息位置 {topic}-{partition}@{offset}，写入 source_key 去重，不从消息体解析
+    @JsonIgnore
+    public String source;
+
+    public String vehicle() {
+        return vehicleId != null ? vehicleId : deviceId;
+    }
+
+    public String alertType() {
+        return alertType != null ? alertType : type;
+    }
+
+    public String detailText() {
+        return details != null ? details.toString() : null;
+    }
+
+    public boolean isValid() {
+        return vehicle() != null && alertType() != null && severity != null;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.distribute.ingest.kafka;
+
+import com.example.distribute.ingest.metrics.IngestMetrics;
+import com.example.distribute.ingest.metrics.StageStats;
+import com.example.distribute.ingest.sink.AlertSink;
+import com.example.distribute.ingest.sink.HBaseTrackingSink;
+import com.example.distribute.ingest.sink.OffsetStore;
+import com.example.distribute.ingest.sink.OrderSink;
+import com.example.distribute.ingest.sink.RedisVehicleSink;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 三个主题的批量入库。每个监听方法处理一次 poll 得到的整批记录：解析后批量写入各存储，
+ * 全部写入成功才确认位点；任一存储失败时抛出，容器按退避重试整批。
+ * 整批因数据本身的错误（违反表约束、字段无法转换）失败时改为逐条写入找出坏记录，
+ * 抛出带下标的 BatchListenerFailedException，由错误处理器有限次重试后转入死信主题。
+ * vehicle-location 写 HBase 和 Redis，两者的写入都是幂等的，重投只会覆盖为相同的值；
+ * logistics-data 和 alerts 写入自增主键的 MySQL 表，由 {@link OffsetStore} 在同一事务里记录位点去重。
+ */
+@Component
+public class IngestListener {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestListener.class);
+
+    private static final String BYTE_VALUES =
+            "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer";
+    private static final String MAX_RECORDS = "max.poll.records=${ingest.kafka.max-records:1000}";
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final ObjectReader LOCATION = MAPPER.readerFor(LocationEvent.class);
+    private static final ObjectReader ORDER = MAPPER.readerFor(OrderEvent.class);
+    private static final ObjectReader ALERT = MAPPER.readerFor(AlertEvent.class);
+
+    private final HBaseTrackingSink hbase;
+    private final RedisVehicleSink redis;
+    private final OrderSink orders;
+    private final AlertSink alerts;
+    private final OffsetStore offsets;
+    private final StageStats locationStats;
+    private final StageStats orderStats;
+    private final StageStats alertStats;
+
+    public IngestListener(HBaseTrackingSink hbase, RedisVehicleSink redis, OrderSink orders, AlertSink alerts,
+                          OffsetStore offsets, IngestMetrics metrics) {
+        this.hbase = hbase;
+        this.redis = redis;
+        this.orders = orders;
+        this.alerts = alerts;
+        this.offsets = offsets;
+        this.locationStats = metrics.stage("topic.vehicle-location");
+        this.orderStats = metrics.stage("topic.logistics-data");
+        this.alertStats = metrics.stage("topic.alerts");
+    }
+
+    @KafkaListener(id = "ingest-vehicle-location", topics = "vehicle-location",
+            groupId = "${ingest.kafka.group-id:logistics-ingest}", properties = {BYTE_VALUES, MAX_RECORDS})
+    public void onLocations(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) throws IOException {
+        long start = System.nanoTime();
+        List<LocationEvent> events = decode(records, LOCATION, LocationEvent::isValid);
+        List<LocationEvent> valid = new ArrayList<>(events.size() - nulls(events));
+        for (LocationEvent e : events) {
+            if (e != null) {
+                valid.add(e);
+            }
+        }
+        try {
+            try {
+                hbase.write(valid);
+                redis.write(valid);
+            } catch (IllegalArgumentException e) {
+                // 两个存储的写入都是幂等的，逐条重写不会产生重复
+                for (int i = 0; i < events.size(); i++) {
+                    LocationEvent event = events.get(i);
+                    if (event == null) {
+                        continue;
+                    }
+                    try {
+                        hbase.write(List.of(event));
+                        redis.write(List.of(event));
+                    } catch (IllegalArgumentException bad) {
+                        throw new BatchListenerFailedException("bad record in vehicle-location", bad, i);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            locationStats.failed();
+            throw e;
+        }
+        ack.acknowledge();
+        locationStats.skipped(records.size() - valid.size());
+        locationStats.batch(records.size(), start);
+    }
+
+    @KafkaListener(id = "ingest-logistics-data", topics = "logistics-data",
+            groupId = "${ingest.kafka.group-id:logistics-ingest}", properties = {BYTE_VALUES, MAX_RECORDS})
+    public void onOrders(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) {
+        long start = System.nanoTime();
+        List<OrderEvent> events = decode(records, ORDER, OrderEvent::isValid);
+        int fresh;
+        try {
+            orders.prepare(events);
+            fresh = writeOnce("logistics-data", records, events, orders::write);
+        } catch (RuntimeException e) {
+            orderStats.failed();
+            throw e;
+        }
+        ack.acknowledge();
+        orderStats.skipped(records.size() - fresh + nulls(events));
+        orderStats.batch(records.size(), start);
+    }
+
+    /**
+     * 默认由后端持久化告警（alerts.persist-from-kafka=true）；改由本服务写入时开启 ingest.alerts.enabled 并关闭后端的开关
+     */
+    @KafkaListener(id = "ingest-alerts", topics = "alerts", autoStartup = "${ingest.alerts.enabled:false}",
+            groupId = "${ingest.kafka.group-id:logistics-ingest}", properties = {BYTE_VALUES, MAX_RECORDS})
+    public void onAlerts(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) {
+        long start = System.nanoTime();
+        List<AlertEvent> events = decode(records, ALERT, AlertEvent::isValid);
+        for (int i = 0; i < records.size(); i++) {
+            AlertEvent event = events.get(i);
+            if (event != null) {
+                ConsumerRecord<String, byte[]> record = records.get(i);
+                event.source = record.topic() + "-" + record.partition() + "@" + record.offset();
+            }
+        }
+        int fresh;
+        try {
+            fresh = writeOnce("alerts", records, events, alerts::write);
+        } catch (RuntimeException e) {
+            alertStats.failed();
+            throw e;
+        }
+        ack.acknowledge();
+        alertStats.skipped(records.size() - fresh + nulls(events));
+        alertStats.batch(records.size(), start);
+    }
+
+    /**
+     * 整批写入；遇到数据错误时逐条重写，已写入的记录由位点表跳过，第一条失败的记录以下标抛出
+     */
+    private <E> int writeOnce(String topic, List<ConsumerRecord<String, byte[]>> records, List<E> events,
+                              Consumer<List<E>> writer) {
+        try {
+            return offsets.writeOnce(topic, records, events, writer);
+        } catch (DataIntegrityViolationException | IllegalArgumentException e) {
+            int fresh = 0;
+            for (int i = 0; i < records.size(); i++) {
+                try {
+                    fresh += offsets.writeOnce(topic, records.subList(i, i + 1), events.subList(i, i + 1), writer);
+                } catch (DataIntegrityViolationException | IllegalArgumentException bad) {
+                    throw new BatchListenerFailedException("bad record in " + topic, bad, i);
+                }
+            }
+            return fresh;
+        }
+    }
+
+    private static int nulls(List<?> events) {
+        int n = 0;
+        for (Object e : events) {
+            if (e == null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 与 records 一一对应，空消息、解析失败或字段不全的位置为 null
+     */
+    private static <E> List<E> decode(List<ConsumerRecord<String, byte[]>> records, ObjectReader reader,
+                                      Predicate<E> valid) {
+        List<E> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            E event = null;
+            if (record.value() != null) {
+                try {
+                    E parsed = reader.readValue(record.value());
+                    if (parsed != null && valid.test(parsed)) {
+                        event = parsed;
+                    }
+                } catch (IOException e) {
+                    log.warn("Skip unparsable record at {}-{}@{}: {}", record.topic(), record.partition(),
+                            record.offset(), e.getMessage());
+                }
+            }
+            events.add(event);
+        }
+        return events;
+    }
+}
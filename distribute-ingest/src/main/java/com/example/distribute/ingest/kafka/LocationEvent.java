@@ -0,0 +1,26 @@
+package com.example.distribute.ingest.kafka;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * vehicle-location 消息，字段与 setup/Kafka-Producer.py 一致；缺失的字段为 null
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LocationEvent {
+    @JsonProperty("device_id")
+    public String deviceId;
+    @JsonProperty("vehicle_id")
+    public String vehicleId;
+    public Double latitude;
+    public Double longitude;
+    public Double speed;
+    public Integer direction;
+    public String status;
+    public Integer load;
+    public Double timestamp;
+
+    public boolean isValid() {
+        return vehicleId != null && latitude != null && longitude != null && timestamp != null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.distribute.ingest.kafka;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * logistics-data 消息；device_id 写入订单表的 vehicle_id 列
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OrderEvent {
+    @JsonProperty("device_id")
+    public String deviceId;
+    @JsonProperty("package_id")
+    public String packageId;
+    public Double temperature;
+    public Double humidity;
+    public String status;
+    public Double timestamp;
+
+    public boolean isValid() {
+        return packageId != null && timestamp != null;
+    }
+}
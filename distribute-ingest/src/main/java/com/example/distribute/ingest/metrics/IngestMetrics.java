@@ -0,0 +1,75 @@
+package com.example.distribute.ingest.metrics;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各阶段吞吐统计的登记处。阶段名如 topic.vehicle-location、sink.hbase，
+ * 以 JSON（/metrics）和 Prometheus 文本（/metrics/prometheus）两种形式输出。
+ */
+@Component
+public class IngestMetrics {
+
+    private static final String PREFIX = "distribute_ingest_";
+
+    private final Map<String, StageStats> stages = new ConcurrentHashMap<>();
+
+    public StageStats stage(String name) {
+        return stages.computeIfAbsent(name, k -> new StageStats());
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void sample() {
+        stages.values().forEach(StageStats::sample);
+    }
+
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> m = new TreeMap<>();
+        stages.forEach((name, s) -> m.put(name, s.stats()));
+        return m;
+    }
+
+    /**
+     * 每个统计项输出为 distribute_ingest_{key}{stage="..."}，key 由驼峰转为下划线
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        Map<String, StringBuilder> families = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Object>> stage : stats().entrySet()) {
+            for (Map.Entry<String, Object> e : stage.getValue().entrySet()) {
+                if (!(e.getValue() instanceof Number n)) {
+                    continue;
+                }
+                String name = PREFIX + snakeCase(e.getKey());
+                families.computeIfAbsent(name, k -> new StringBuilder("# TYPE " + k + " gauge\n"))
+                        .append(name).append("{stage=\"").append(stage.getKey()).append("\"} ")
+                        .append(number(n.doubleValue())).append('\n');
+            }
+        }
+        for (StringBuilder family : families.values()) {
+            out.write(family.toString());
+        }
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String snakeCase(String key) {
+        StringBuilder sb = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                sb.append('_').append(Character.toLowerCase(c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
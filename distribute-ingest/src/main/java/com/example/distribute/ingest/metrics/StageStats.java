@@ -0,0 +1,79 @@
+package com.example.distribute.ingest.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个处理阶段（某主题的消费，或某个存储的写入）的吞吐统计：条数、批数、失败、批耗时，
+ * 以及每秒采样一次得到的最近速率。计数在热路径上只做 LongAdder 加法。
+ */
+public final class StageStats {
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder batchMicros = new LongAdder();
+    private volatile int lastBatchSize;
+    private volatile long lastBatchMicros;
+    private volatile long maxBatchMicros;
+
+    private long lastSampleRecords;
+    private long lastSampleNanos = System.nanoTime();
+    private volatile double recordsPerSecond;
+
+    /**
+     * 一批成功处理完成
+     */
+    public void batch(int size, long startNanos) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        records.add(size);
+        batches.increment();
+        batchMicros.add(micros);
+        lastBatchSize = size;
+        lastBatchMicros = micros;
+        if (micros > maxBatchMicros) {
+            maxBatchMicros = micros;
+        }
+    }
+
+    public void failed() {
+        failedBatches.increment();
+    }
+
+    /**
+     * 解析失败、字段不全或已经写入过而跳过的条数
+     */
+    public void skipped(int n) {
+        if (n > 0) {
+            skipped.add(n);
+        }
+    }
+
+    synchronized void sample() {
+        long now = System.nanoTime();
+        long total = records.sum();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        if (seconds > 0) {
+            recordsPerSecond = (total - lastSampleRecords) / seconds;
+        }
+        lastSampleRecords = total;
+        lastSampleNanos = now;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long n = batches.sum();
+        m.put("records", records.sum());
+        m.put("recordsPerSecond", Math.round(recordsPerSecond * 10) / 10.0);
+        m.put("batches", n);
+        m.put("failedBatches", failedBatches.sum());
+        m.put("skipped", skipped.sum());
+        m.put("lastBatchSize", lastBatchSize);
+        m.put("lastBatchMicros", lastBatchMicros);
+        m.put("avgBatchMicros", n == 0 ? 0 : batchMicros.sum() / n);
+        m.put("maxBatchMicros", maxBatchMicros);
+        return m;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.distribute.ingest.sink;
+
+import com.example.distribute.ingest.kafka.AlertEvent;
+import com.example.distribute.ingest.metrics.IngestMetrics;
+import com.example.distribute.ingest.metrics.StageStats;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * alerts 事件批量写入 alarm_log，列与后端 AlertBatchWriter 相同；时间戳缺失时取写入时间。
+ * source_key 同样取消息位置，两个写入方切换或同时写入时同一条消息只产生一行。
+ * 由 {@link OffsetStore#writeOnce} 在事务内调用。
+ */
+@Component
+public class AlertSink {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO alarm_log(vehicle_id,type,severity,timestamp,detail,status,source_key) " +
+                    "VALUES(?,?,?,FROM_UNIXTIME(?),?,?,?) ON DUPLICATE KEY UPDATE alarm_id = alarm_id";
+
+    private final JdbcTemplate jdbc;
+    private final StageStats stats;
+
+    public AlertSink(JdbcTemplate jdbc, IngestMetrics metrics) {
+        this.jdbc = jdbc;
+        this.stats = metrics.stage("sink.mysql-alerts");
+    }
+
+    public void write(List<AlertEvent> events) {
+        long start = System.nanoTime();
+        double now = System.currentTimeMillis() / 1000.0;
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (AlertEvent e : events) {
+            rows.add(new Object[]{e.vehicle(), e.alertType(), e.severity,
+                    e.timestamp != null ? e.timestamp : now, e.detailText(), "NEW", e.source});
+        }
+        try {
+            jdbc.batchUpdate(INSERT_SQL, rows);
+        } catch (RuntimeException e) {
+            stats.failed();
+            throw e;
+        }
+        stats.batch(events.size(), start);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.distribute.ingest.sink;
+
+import com.example.distribute.ingest.kafka.LocationEvent;
+import com.example.distribute.ingest.metrics.IngestMetrics;
+import com.example.distribute.ingest.metrics.StageStats;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 位置点写入 HBase，表结构与后端读取的一致：
+ * vehicle_tracking 行键 {vehicleId}_{秒级时间戳}，列 loc:lat、loc:lon、stat:speed、stat:dir、stat:status，值为文本；
+ * vehicle_tracking_ts 行键 {10 位小时桶起始秒}_{vehicleId}，列 p:{8 字节时间戳}，值为 lat、lon 两个 double。
+ * 每批用 BufferedMutator 按 Region 分组批量提交，同一索引行的多个点合并到一个 Put；
+ * 行键由数据本身决定，重复写入同一条消息结果不变。
+ */
+@Component
+public class HBaseTrackingSink {
+
+    private static final TableName TRACKING = TableName.valueOf("vehicle_tracking");
+    private static final TableName INDEX = TableName.valueOf("vehicle_tracking_ts");
+    private static final long BUCKET_SECONDS = 3600;
+    private static final byte[] LOC = Bytes.toBytes("loc");
+    private static final byte[] STAT = Bytes.toBytes("stat");
+    private static final byte[] POINTS = Bytes.toBytes("p");
+    private static final byte[] LAT = Bytes.toBytes("lat");
+    private static final byte[] LON = Bytes.toBytes("lon");
+    private static final byte[] SPEED = Bytes.toBytes("speed");
+    private static final byte[] DIR = Bytes.toBytes("dir");
+    private static final byte[] STATUS = Bytes.toBytes("status");
+
+    private final Connection hbaseConn;
+    private final long writeBufferBytes;
+    private final StageStats stats;
+
+    public HBaseTrackingSink(Connection hbaseConn,
+                             @Value("${ingest.hbase.write-buffer-bytes:4194304}") long writeBufferBytes,
+                             IngestMetrics metrics) {
+        this.hbaseConn = hbaseConn;
+        this.writeBufferBytes = writeBufferBytes;
+        this.stats = metrics.stage("sink.hbase");
+    }
+
+    /**
+     * 写入并 flush，返回时这批数据已落到 RegionServer；失败时抛出，调用方整批重试
+     */
+    public void write(List<LocationEvent> events) throws IOException {
+        if (events.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Put> raw = new ArrayList<>(events.size());
+        Map<String, Put> index = new LinkedHashMap<>();
+        for (LocationEvent e : events) {
+            long ts = e.timestamp.longValue();
+            raw.add(trackingPut(e, ts));
+            byte[] point = new byte[16];
+            Bytes.putDouble(point, 0, e.latitude);
+            Bytes.putDouble(point, 8, e.longitude);
+            index.computeIfAbsent(indexRow(ts, e.vehicleId), k -> new Put(Bytes.toBytes(k)))
+                    .addColumn(POINTS, Bytes.toBytes(ts), point);
+        }
+        try (BufferedMutator tracking = hbaseConn.getBufferedMutator(
+                new BufferedMutatorParams(TRACKING).writeBufferSize(writeBufferBytes));
+             BufferedMutator tsIndex = hbaseConn.getBufferedMutator(
+                     new BufferedMutatorParams(INDEX).writeBufferSize(writeBufferBytes))) {
+            tracking.mutate(raw);
+            tsIndex.mutate(new ArrayList<>(index.values()));
+            tracking.flush();
+            tsIndex.flush();
+        } catch (IOException | RuntimeException e) {
+            stats.failed();
+            throw e;
+        }
+        stats.batch(events.size(), start);
+    }
+
+    private static Put trackingPut(LocationEvent e, long ts) {
+        Put put = new Put(Bytes.toBytes(e.vehicleId + "_" + ts));
+        put.addColumn(LOC, LAT, Bytes.toBytes(Double.toString(e.latitude)));
+        put.addColumn(LOC, LON, Bytes.toBytes(Double.toString(e.longitude)));
+        if (e.speed != null) {
+            put.addColumn(STAT, SPEED, Bytes.toBytes(Double.toString(e.speed)));
+        }
+        if (e.direction != null) {
+            put.addColumn(STAT, DIR, Bytes.toBytes(Integer.toString(e.direction)));
+        }
+        if (e.status != null) {
+            put.addColumn(STAT, STATUS, Bytes.toBytes(e.status));
+        }
+        return put;
+    }
+
+    private static String indexRow(long ts, String vehicleId) {
+        long bucket = Math.floorDiv(ts, BUCKET_SECONDS) * BUCKET_SECONDS;
+        String s = Long.toString(bucket);
+        return (s.length() >= 10 ? s : "0".repeat(10 - s.length()) + s) + "_" + vehicleId;
+    }
+}
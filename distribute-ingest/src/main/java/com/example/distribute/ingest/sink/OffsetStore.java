@@ -0,0 +1,131 @@
+package com.example.distribute.ingest.sink;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 写入 MySQL 的主题在 ingest_offset 表中记录每个分区已写入到的位点，与数据在同一个事务里提交。
+ * 批次重投（提交 Kafka 位点前进程退出、再均衡、重试）时跳过位点之前的记录，自增主键的表也不会重复插入；
+ * Kafka 上的位点只用来决定从哪里开始拉取，总是落后或等于这里的记录。
+ */
+@Component
+public class OffsetStore {
+
+    static final String TABLE = "ingest_offset";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final String group;
+    private volatile boolean tableReady;
+
+    public OffsetStore(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                       @Value("${ingest.kafka.group-id:logistics-ingest}") String group) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.group = group;
+    }
+
+    /**
+     * 在一个事务内锁定并读取各分区的位点，把其后的记录对应的 events（与 records 一一对应，null 表示无效记录）
+     * 交给 writer 写入，再推进位点。返回本次新处理的记录数，records.size() 减去它即为跳过的重复记录数
+     */
+    public <E> int writeOnce(String topic, List<ConsumerRecord<String, byte[]>> records, List<E> events,
+                             Consumer<List<E>> writer) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        ensureTable();
+        Integer fresh = tx.execute(status -> {
+            Map<Integer, Long> written = lock(topic, records);
+            Map<Integer, Long> next = new HashMap<>();
+            List<E> batch = new ArrayList<>(records.size());
+            int count = 0;
+            for (int i = 0; i < records.size(); i++) {
+                ConsumerRecord<String, byte[]> record = records.get(i);
+                Long done = written.get(record.partition());
+                if (done != null && record.offset() < done) {
+                    continue;
+                }
+                count++;
+                next.merge(record.partition(), record.offset() + 1, Math::max);
+                E event = events.get(i);
+                if (event != null) {
+                    batch.add(event);
+                }
+            }
+            if (!batch.isEmpty()) {
+                writer.accept(batch);
+            }
+            if (!next.isEmpty()) {
+                save(topic, next);
+            }
+            return count;
+        });
+        return fresh == null ? 0 : fresh;
+    }
+
+    private Map<Integer, Long> lock(String topic, List<ConsumerRecord<String, byte[]>> records) {
+        List<Object> args = new ArrayList<>();
+        args.add(group);
+        args.add(topic);
+        StringBuilder in = new StringBuilder();
+        records.stream().map(ConsumerRecord::partition).distinct().forEach(p -> {
+            in.append(in.length() == 0 ? "?" : ",?");
+            args.add(p);
+        });
+        Map<Integer, Long> written = new HashMap<>();
+        jdbc.query("SELECT partition_id, next_offset FROM " + TABLE +
+                        " WHERE consumer_group = ? AND topic = ? AND partition_id IN (" + in + ") FOR UPDATE",
+                rs -> {
+                    written.put(rs.getInt(1), rs.getLong(2));
+                }, args.toArray());
+        return written;
+    }
+
+    private void save(String topic, Map<Integer, Long> next) {
+        List<Object[]> rows = new ArrayList<>(next.size());
+        next.forEach((partition, offset) -> rows.add(new Object[]{group, topic, partition, offset}));
+        jdbc.batchUpdate("INSERT INTO " + TABLE + "(consumer_group, topic, partition_id, next_offset) VALUES(?,?,?,?) " +
+                "ON DUPLICATE KEY UPDATE next_offset = GREATEST(next_offset, VALUES(next_offset))", rows);
+    }
+
+    /**
+     * 建表语句会隐式提交，放在事务之外执行一次
+     */
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        jdbc.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+                "consumer_group VARCHAR(64) NOT NULL, topic VARCHAR(128) NOT NULL, partition_id INT NOT NULL, " +
+                "next_offset BIGINT NOT NULL, PRIMARY KEY (consumer_group, topic, partition_id)) ENGINE = InnoDB");
+        tableReady = true;
+    }
+
+    /**
+     * 各主题各分区已写入的位点，用于排查
+     */
+    public Map<String, Long> positions() {
+        if (!tableReady) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> m = new TreeMap<>();
+        jdbc.query("SELECT topic, partition_id, next_offset FROM " + TABLE + " WHERE consumer_group = ?",
+                rs -> {
+                    m.put(rs.getString(1) + "-" + rs.getInt(2), rs.getLong(3));
+                }, group);
+        return m;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.distribute.ingest.sink;
+
+import com.example.distribute.ingest.kafka.OrderEvent;
+import com.example.distribute.ingest.metrics.IngestMetrics;
+import com.example.distribute.ingest.metrics.StageStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * logistics-data 事件写入按月分表的 order_YYYYMM，月份和 event_time 按配置时区换算（需与后端 orders.tables.zone 一致）。
+ * 每批按目标表分组，每张表一次 JDBC 批量插入（连接串开启 rewriteBatchedStatements 时合并为多值 INSERT）。
+ * 由 {@link OffsetStore#writeOnce} 在事务内调用。
+ */
+@Component
+public class OrderSink {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbc;
+    private final ZoneId zone;
+    private final StageStats stats;
+    // 已确认存在的月表
+    private final Set<String> tables = ConcurrentHashMap.newKeySet();
+
+    public OrderSink(JdbcTemplate jdbc, @Value("${ingest.orders.zone:}") String zone, IngestMetrics metrics) {
+        this.jdbc = jdbc;
+        this.zone = zone.isEmpty() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.stats = metrics.stage("sink.mysql-orders");
+    }
+
+    public static String tableName(LocalDateTime eventTime) {
+        return "order_" + eventTime.format(SUFFIX);
+    }
+
+    public LocalDateTime eventTime(OrderEvent e) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli((long) (e.timestamp * 1000)), zone);
+    }
+
+    /**
+     * 建好这批事件涉及的月表，结构同 setup/sql/order_month.sql；建表会隐式提交，需在写入事务之前调用
+     */
+    public void prepare(List<OrderEvent> events) {
+        for (OrderEvent e : events) {
+            if (e == null) {
+                continue;
+            }
+            String table = tableName(eventTime(e));
+            if (!tables.contains(table)) {
+                jdbc.execute("CREATE TABLE IF NOT EXISTS " + table + " (" +
+                        "id BIGINT NOT NULL AUTO_INCREMENT, order_id VARCHAR(64) NOT NULL, " +
+                        "user_id VARCHAR(64) DEFAULT NULL, vehicle_id VARCHAR(64) DEFAULT NULL, " +
+                        "province VARCHAR(32) DEFAULT NULL, start_time DATETIME DEFAULT NULL, end_time DATETIME DEFAULT NULL, " +
+                        "status VARCHAR(32) DEFAULT NULL, temperature DOUBLE DEFAULT NULL, humidity DOUBLE DEFAULT NULL, " +
+                        "event_time DATETIME NOT NULL, PRIMARY KEY (id), KEY idx_order_event_time (event_time), " +
+                        "KEY idx_order_start_time (start_time)) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4");
+                tables.add(table);
+            }
+        }
+    }
+
+    public void write(List<OrderEvent> events) {
+        long start = System.nanoTime();
+        Map<String, List<Object[]>> byTable = new TreeMap<>();
+        for (OrderEvent e : events) {
+            LocalDateTime eventTime = eventTime(e);
+            // 与原入库脚本一致：start_time / end_time 取写入时间，user_id 为空
+            byTable.computeIfAbsent(tableName(eventTime), k -> new ArrayList<>())
+                    .add(new Object[]{e.packageId, e.deviceId, e.status, e.temperature, e.humidity,
+                            eventTime.format(DATETIME)});
+        }
+        try {
+            for (Map.Entry<String, List<Object[]>> t : byTable.entrySet()) {
+                jdbc.batchUpdate("INSERT INTO " + t.getKey() +
+                        " (order_id, user_id, vehicle_id, start_time, end_time, status, temperature, humidity, event_time) " +
+                        "VALUES (?, NULL, ?, NOW(), NOW(), ?, ?, ?, ?)", t.getValue());
+            }
+        } catch (RuntimeException e) {
+            stats.failed();
+            throw e;
+        }
+        stats.batch(events.size(), start);
+    }
+}
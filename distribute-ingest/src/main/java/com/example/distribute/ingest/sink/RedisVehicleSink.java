@@ -0,0 +1,77 @@
+package com.example.distribute.ingest.sink;
+
+import com.example.distribute.ingest.kafka.LocationEvent;
+import com.example.distribute.ingest.metrics.IngestMetrics;
+import com.example.distribute.ingest.metrics.StageStats;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 车辆最新位置写入 Redis：哈希 vehicle:{vehicleId}（lat、lon、speed、dir、status、load、timestamp），
+ * 键名同时加入集合 vehicle:keys。每批内同一车辆只保留时间戳最新的一条，整批用一个 pipeline 提交。
+ */
+@Component
+public class RedisVehicleSink {
+
+    private final JedisPool jedisPool;
+    private final StageStats stats;
+
+    public RedisVehicleSink(JedisPool jedisPool, IngestMetrics metrics) {
+        this.jedisPool = jedisPool;
+        this.stats = metrics.stage("sink.redis");
+    }
+
+    /**
+     * 返回时 pipeline 已同步完成；失败时抛出，调用方整批重试
+     */
+    public void write(List<LocationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, LocationEvent> latest = new HashMap<>();
+        for (LocationEvent e : events) {
+            latest.merge(e.vehicleId, e, (a, b) -> b.timestamp >= a.timestamp ? b : a);
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline p = jedis.pipelined();
+            for (LocationEvent e : latest.values()) {
+                String key = "vehicle:" + e.vehicleId;
+                p.hset(key, fields(e));
+                p.sadd("vehicle:keys", key);
+            }
+            p.sync();
+        } catch (RuntimeException e) {
+            stats.failed();
+            throw e;
+        }
+        stats.skipped(events.size() - latest.size());
+        stats.batch(latest.size(), start);
+    }
+
+    private static Map<String, String> fields(LocationEvent e) {
+        Map<String, String> fields = new HashMap<>(12);
+        fields.put("lat", Double.toString(e.latitude));
+        fields.put("lon", Double.toString(e.longitude));
+        fields.put("timestamp", Double.toString(e.timestamp));
+        if (e.speed != null) {
+            fields.put("speed", Double.toString(e.speed));
+        }
+        if (e.direction != null) {
+            fields.put("dir", Integer.toString(e.direction));
+        }
+        if (e.status != null) {
+            fields.put("status", e.status);
+        }
+        if (e.load != null) {
+            fields.put("load", Integer.toString(e.load));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.distribute.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class DistributeIngestApplicationTests {
+
+	@Test
+	void contextLoads() {
+	}
+
+}
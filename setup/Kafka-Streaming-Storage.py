@@ -2,12 +2,16 @@ from pyspark.sql.types import StructType, StringType, DoubleType, IntegerType
 from pyspark.sql import SparkSession
 from pyspark.sql.functions import col, from_json
 import os
+import struct
 import time
 import redis
 import happybase
 import pymysql
 import logging
 
+# 已由 distribute-ingest（Java 入库服务）替代：写入相同的表和键，按批写入并在写入成功后提交位点。
+# 保留本脚本供对照；两者不要同时运行，否则订单会重复插入。
+
 # 设置 Java 环境
 os.environ["JAVA_HOME"] = "/Library/Java/JavaVirtualMachines/jdk-1.8.jdk/Contents/Home"
 
@@ -88,6 +92,8 @@ def write_to_stores(df, epoch_id):
     # 初始化连接
     r = redis.Redis(connection_pool=redis_pool)
     htable = hbase_conn.table('vehicle_tracking')
+    # 按小时分桶的轨迹索引，供地图全车队查询使用
+    hindex = hbase_conn.table('vehicle_tracking_ts')
     conn = pymysql.connect(**mysql_params)
     cursor = conn.cursor()
 
@@ -119,6 +125,12 @@ def write_to_stores(df, epoch_id):
                     'stat:dir': str(row['direction']),
                     'stat:status': row['status']
                 })
+                # 写索引：行键 {10 位小时桶}_{vid}，列 p:{8 字节时间戳}，值为 lat/lon 两个 double
+                ts = int(row['timestamp'])
+                bucket = ts - ts % 3600
+                hindex.put(f"{bucket:010d}_{vid}", {
+                    b'p:' + struct.pack('>q', ts): struct.pack('>dd', row['latitude'], row['longitude'])
+                })
                 logger.info(f"['batch': {epoch_id}] Vehicle {vid} 写入 Redis/HBase 成功")
 
 
@@ -146,14 +158,8 @@ def write_to_stores(df, epoch_id):
 
 
             elif topic == 'alerts':
-                vid = row['device_id']
-                sql = (
-                    "INSERT INTO alarm_log "
-                    "(vehicle_id, type, severity, timestamp, detail) "
-                    "VALUES (%s, %s, %s, FROM_UNIXTIME(%s), %s)"
-                )
-                cursor.execute(sql, (vid, row['alert_type'], row['severity'], row['timestamp'], row['details']))
-                logger.info(f"['batch': {epoch_id}] Alert {row['alert_type']} for {vid} 写入 MySQL 成功")
+                # 告警由后端 AlertBatchWriter 批量写入 alarm_log（alerts.persist-from-kafka），这里不再逐条插入
+                pass
 
         except Exception as e:
             logger.error(f"['batch': {epoch_id}] 写入失败: {e}")
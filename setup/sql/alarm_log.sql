@@ -0,0 +1,33 @@
+-- 告警日志表及 /alerts 查询依赖的索引（MySQL 5.7）
+-- 列表按 (timestamp DESC, alarm_id DESC) 做游标分页，每个过滤条件各有一个以它开头、
+-- 以 (timestamp, alarm_id) 结尾的联合索引，这样过滤 + 排序 + LIMIT 都能在索引上完成，不需要 filesort。
+
+CREATE TABLE IF NOT EXISTS alarm_log (
+    alarm_id   BIGINT       NOT NULL AUTO_INCREMENT,
+    vehicle_id VARCHAR(64)  NOT NULL,
+    type       VARCHAR(64)  NOT NULL,
+    severity   VARCHAR(16)  NOT NULL,
+    timestamp  DATETIME     NOT NULL,
+    detail     VARCHAR(1024)         DEFAULT NULL,
+    status     VARCHAR(16)  NOT NULL DEFAULT 'NEW',
+    -- Kafka 告警的消息位置 {topic}-{partition}@{offset}，批次重投时据此去重；REST 写入的告警为 NULL
+    source_key VARCHAR(160)          DEFAULT NULL,
+    PRIMARY KEY (alarm_id),
+    UNIQUE KEY uk_alarm_source (source_key),
+    KEY idx_alarm_ts (timestamp, alarm_id),
+    KEY idx_alarm_vehicle_ts (vehicle_id, timestamp, alarm_id),
+    KEY idx_alarm_severity_ts (severity, timestamp, alarm_id),
+    KEY idx_alarm_status_ts (status, timestamp, alarm_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+-- 已有的 alarm_log 表只需补索引：
+-- ALTER TABLE alarm_log
+--     ADD KEY idx_alarm_ts (timestamp, alarm_id),
+--     ADD KEY idx_alarm_vehicle_ts (vehicle_id, timestamp, alarm_id),
+--     ADD KEY idx_alarm_severity_ts (severity, timestamp, alarm_id),
+--     ADD KEY idx_alarm_status_ts (status, timestamp, alarm_id);
+
+-- 已有的 alarm_log 表补去重列：
+-- ALTER TABLE alarm_log
+--     ADD COLUMN source_key VARCHAR(160) DEFAULT NULL,
+--     ADD UNIQUE KEY uk_alarm_source (source_key);
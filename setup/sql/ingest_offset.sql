@@ -0,0 +1,10 @@
+-- distribute-ingest 写入 MySQL 的主题（logistics-data、alerts）各分区已写入到的位点，
+-- 与订单 / 告警行在同一事务里更新，批次重投时据此跳过已写入的记录。服务首次写入时也会自动建表。
+
+CREATE TABLE IF NOT EXISTS ingest_offset (
+    consumer_group VARCHAR(64)  NOT NULL,
+    topic          VARCHAR(128) NOT NULL,
+    partition_id   INT          NOT NULL,
+    next_offset    BIGINT       NOT NULL,
+    PRIMARY KEY (consumer_group, topic, partition_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
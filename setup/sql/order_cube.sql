@@ -0,0 +1,14 @@
+-- 订单 OLAP 立方体，/analysis/trends 和 /analysis/regions 只读这张表
+-- grain: m=分钟 h=小时 d=天（UTC），bucket_ts 为桶起始秒；平均温度 = temp_sum / temp_cnt
+-- 后端在 logistics-data 事件到达时增量累加；历史数据用 --orders.rollup.rebuild=true 重建
+
+CREATE TABLE IF NOT EXISTS order_cube (
+    grain     CHAR(1)     NOT NULL,
+    bucket_ts BIGINT      NOT NULL,
+    province  VARCHAR(32) NOT NULL,
+    status    VARCHAR(32) NOT NULL,
+    cnt       BIGINT      NOT NULL,
+    temp_sum  DOUBLE      NOT NULL,
+    temp_cnt  BIGINT      NOT NULL,
+    PRIMARY KEY (grain, bucket_ts, province, status)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
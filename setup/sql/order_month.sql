@@ -0,0 +1,22 @@
+-- 订单月表 order_YYYYMM 的结构（入库端按 event_time 所在月份写入，每月一张，以 order_202506 为例）
+-- 原始表查询（source=raw、type=orders 导出）都按 event_time 范围过滤和排序，依赖 idx_order_event_time
+
+CREATE TABLE IF NOT EXISTS order_202506 (
+    id          BIGINT      NOT NULL AUTO_INCREMENT,
+    order_id    VARCHAR(64) NOT NULL,
+    user_id     VARCHAR(64)          DEFAULT NULL,
+    vehicle_id  VARCHAR(64)          DEFAULT NULL,
+    province    VARCHAR(32)          DEFAULT NULL,
+    start_time  DATETIME             DEFAULT NULL,
+    end_time    DATETIME             DEFAULT NULL,
+    status      VARCHAR(32)          DEFAULT NULL,
+    temperature DOUBLE               DEFAULT NULL,
+    humidity    DOUBLE               DEFAULT NULL,
+    event_time  DATETIME    NOT NULL,
+    PRIMARY KEY (id),
+    KEY idx_order_event_time (event_time),
+    KEY idx_order_start_time (start_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+-- 已有月表只需补索引：
+-- ALTER TABLE order_202506 ADD KEY idx_order_event_time (event_time);
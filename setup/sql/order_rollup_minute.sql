@@ -0,0 +1,9 @@
+-- 订单按分钟、按状态的计数汇总，/metrics/overview 和 /analysis/summary 只读这张表
+-- 后端在 logistics-data 事件到达时以 cnt = cnt + ? 增量写入；历史数据用 --orders.rollup.rebuild=true 重建
+
+CREATE TABLE IF NOT EXISTS order_rollup_minute (
+    minute_ts BIGINT      NOT NULL COMMENT '分钟起始秒',
+    status    VARCHAR(32) NOT NULL,
+    cnt       BIGINT      NOT NULL,
+    PRIMARY KEY (minute_ts, status)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;